@@ -1,12 +1,19 @@
 package com.teste.cqrs_bank;
 
+import com.teste.cqrs_bank.config.CommandProperties;
 import com.teste.cqrs_bank.config.JwtProperties;
+import com.teste.cqrs_bank.config.LoginProperties;
+import com.teste.cqrs_bank.config.PasswordProperties;
+import com.teste.cqrs_bank.config.ProjectionProperties;
+import com.teste.cqrs_bank.config.QueryProperties;
+import com.teste.cqrs_bank.config.RoleProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
-@EnableConfigurationProperties(JwtProperties.class)
+@EnableConfigurationProperties({JwtProperties.class, ProjectionProperties.class, CommandProperties.class, QueryProperties.class,
+        PasswordProperties.class, LoginProperties.class, RoleProperties.class})
 public class CqrsBankApplication {
 
     public static void main(String[] args) {
@@ -1,6 +1,10 @@
 package com.teste.cqrs_bank.api;
 
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -13,6 +17,8 @@ import java.util.stream.Collectors;
  * Converte erros de validação/negócio em respostas HTTP JSON consistentes (400).
  * - Bean Validation (MethodArgumentNotValidException / ConstraintViolationException)
  * - IllegalArgumentException (regra de negócio)
+ * - ConcurrencyFailureException (conflito de concorrência esgotado → 409)
+ * - TaskRejectedException (pool saturado, ex.: hash de senha → 503 com Retry-After)
  *
  * @since 1.0
  */
@@ -37,6 +43,24 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
     }
 
+    /**
+     * Mapeia conflito de concorrência (tentativas otimistas esgotadas) para 409.
+     */
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<?> handleConcurrency(ConcurrencyFailureException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", ex.getMessage()));
+    }
+
+    /**
+     * Mapeia recusa por pool saturado para 503, sugerindo nova tentativa em 1s.
+     */
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<?> handleRejected(TaskRejectedException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", ex.getMessage()));
+    }
+
     /**
      * Mapeia ConstraintViolationException (parâmetros) para 400 com JSON de erros.
      */
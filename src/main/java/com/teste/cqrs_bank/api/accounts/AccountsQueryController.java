@@ -1,23 +1,33 @@
 package com.teste.cqrs_bank.api.accounts;
 
-import com.teste.cqrs_bank.domain.account.AccountRepository;
-import com.teste.cqrs_bank.read.view.AccountView;
-import com.teste.cqrs_bank.read.view.AccountViewRepository;
+import com.teste.cqrs_bank.read.AccountStreamHub;
+import com.teste.cqrs_bank.read.AccountViewCache;
+import com.teste.cqrs_bank.read.ProjectionVersionWaiter;
+import com.teste.cqrs_bank.read.TransactionHistoryQuery;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Controlador de consulta (Query Side). Lê somente o Read Model (Mongo)
  * e retorna o resumo da conta já no formato exigido pela UI.
  *
- * <p>Se o usuário ainda não tem projeção no Mongo, retorna:
+ * <p>O documento é localizado pelo <code>userId</code> indexado (uma leitura no Mongo, sem
+ * depender do MySQL), passando antes pelo {@link com.teste.cqrs_bank.read.AccountViewCache}. Se o usuário ainda não tem projeção no Mongo, retorna:
  * <code>{"SaldoTotal":"0.00","Historico":[]}</code>.</p>
  *
  * @since 1.0
@@ -26,12 +36,22 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/accounts")
 public class AccountsQueryController {
 
-    private final AccountRepository accountRepo;
-    private final AccountViewRepository viewRepo;
+    /**
+     * Versão de evento da conta: devolvida pelos comandos e pelo resumo (ver <code>minVersion</code>).
+     */
+    public static final String PROJECTION_VERSION = "X-Projection-Version";
+
+    private final AccountViewCache views;
+    private final TransactionHistoryQuery history;
+    private final AccountStreamHub streams;
+    private final ProjectionVersionWaiter versions;
 
-    public AccountsQueryController(AccountRepository accountRepo, AccountViewRepository viewRepo) {
-        this.accountRepo = accountRepo;
-        this.viewRepo = viewRepo;
+    public AccountsQueryController(AccountViewCache views, TransactionHistoryQuery history, AccountStreamHub streams,
+                                   ProjectionVersionWaiter versions) {
+        this.views = views;
+        this.history = history;
+        this.streams = streams;
+        this.versions = versions;
     }
 
     /**
@@ -43,6 +63,10 @@ public class AccountsQueryController {
      * { "type": "deposito"|"saque", "valor": "0.00", "data": "dd-MM-yyyy HH:mm:ss" }
      * ]
      * }
+     * Responde com ETag forte derivado dos bytes do corpo ({@link AccountViewCache.Summary#etag()}), inclusive no
+     * resumo vazio de quem ainda não tem projeção ({@link AccountViewCache#empty()});
+     * um <code>If-None-Match</code> com a mesma tag recebe <b>304</b> sem corpo (o Spring MVC compara o
+     * ETag do <code>ResponseEntity</code> antes de escrever).
      * Rota: GET /accounts/me/summary
      */
     @GetMapping("/me/summary")
@@ -66,23 +90,78 @@ public class AccountsQueryController {
                                             }
                                             """)
                             )
-                    )
+                    ),
+                    @ApiResponse(responseCode = "304", description = "Snapshot inalterado (If-None-Match)")
             }
     )
     public ResponseEntity<?> getSummary(Authentication auth) {
-        String userId = (String) auth.getPrincipal();
-        var acc = accountRepo.findByUserId(userId).orElseThrow();
-        AccountView view = viewRepo.findById(acc.getId()).orElse(null);
-        if (view == null) {
+        return toResponse(views.summary((String) auth.getPrincipal()));
+    }
+
+    /**
+     * Variante "ler a própria escrita": <code>minVersion</code> é o <code>X-Projection-Version</code> devolvido pelo
+     * comando. Espera (sem polling e sem prender a thread) a projeção chegar nessa versão por até
+     * <code>app.query.consistency.max-wait</code>; depois monta o snapshot direto do MySQL.
+     * A versão servida volta em <code>X-Projection-Version</code>.
+     * Rota: GET /accounts/me/summary?minVersion=N
+     */
+    @GetMapping(path = "/me/summary", params = "minVersion")
+    @Operation(
+            summary = "Resumo da conta em versão mínima",
+            description = "Aguarda a projeção alcançar minVersion (ou lê do Write Model) antes de responder"
+    )
+    public CompletableFuture<ResponseEntity<?>> getSummaryAtLeast(Authentication auth, @RequestParam long minVersion) {
+        return versions.summaryAtLeast((String) auth.getPrincipal(), minVersion).thenApply(this::toResponse);
+    }
+
+    private ResponseEntity<?> toResponse(AccountViewCache.Summary summary) {
+        if (summary == null) summary = views.empty();
+        // JSON já serializado quando a projeção mudou: só copia os bytes para a resposta
+        var response = ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(summary.etag());
+        var view = summary.view();
+        if (view.getVersion() != null) {
+            response.header(PROJECTION_VERSION, String.valueOf(view.getVersion()));
+        }
+        return response.body(summary.json());
+    }
+
+    /**
+     * Histórico completo do usuário, paginado por cursor (keyset em occurred_at/id), do mais
+     * recente para o mais antigo:
+     * { "Historico": [ ... ], "next": "&lt;cursor&gt;"|null }
+     * Para a próxima página, repetir a chamada com <code>cursor=next</code>.
+     * Rota: GET /accounts/me/transactions?cursor=&amp;limit=
+     */
+    @GetMapping("/me/transactions")
+    @Operation(
+            summary = "Histórico paginado",
+            description = "Página do histórico completo; limit padrão 50, máximo 200"
+    )
+    public TransactionHistoryQuery.Page getTransactions(Authentication auth,
+                                                        @RequestParam(required = false) String cursor,
+                                                        @RequestParam(required = false) Integer limit) {
+        return history.page((String) auth.getPrincipal(), cursor, limit);
+    }
 
-            return ResponseEntity.ok(java.util.Map.of(
-                    "SaldoTotal", "0.00",
-                    "Historico", java.util.List.of()
-            ));
+    /**
+     * Stream SSE com as atualizações do resumo do usuário, em vez de polling:
+     * <code>summary</code> ao conectar, <code>update</code> (novo SaldoTotal + itens novos do histórico)
+     * a cada evento aplicado na projeção e <code>refresh</code> após rebuild.
+     * Rota: GET /accounts/me/stream (text/event-stream)
+     */
+    @GetMapping(path = "/me/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Stream de atualizações (SSE)",
+            description = "Eventos summary/update/refresh; 429 acima do limite de conexões por usuário"
+    )
+    public SseEmitter stream(Authentication auth) {
+        var emitter = streams.subscribe((String) auth.getPrincipal());
+        if (emitter == null) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Limite de conexões de stream atingido.");
         }
-        return ResponseEntity.ok(java.util.Map.of(
-                "SaldoTotal", view.getSaldoTotal(),
-                "Historico", view.getHistorico()
-        ));
+        return emitter;
     }
 }
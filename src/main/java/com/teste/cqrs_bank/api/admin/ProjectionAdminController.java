@@ -0,0 +1,70 @@
+package com.teste.cqrs_bank.api.admin;
+
+import com.teste.cqrs_bank.read.ProjectionRebuildJob;
+import com.teste.cqrs_bank.read.view.RebuildCheckpoint;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Operação administrativa da projeção (exige <code>ROLE_ADMIN</code>).
+ *
+ * <ul>
+ *   <li><b>POST /admin/projection/rebuild?resume=</b>: inicia a reconstrução completa do Read Model (202).</li>
+ *   <li><b>GET /admin/projection/rebuild</b>: progresso (contas, falhas, contas/s, checkpoint).</li>
+ *   <li><b>DELETE /admin/projection/rebuild</b>: interrompe; pode ser retomado com <code>resume=true</code>.</li>
+ * </ul>
+ *
+ * @since 1.0
+ */
+@RestController
+@RequestMapping("/admin/projection")
+public class ProjectionAdminController {
+
+    private final ProjectionRebuildJob rebuild;
+
+    public ProjectionAdminController(ProjectionRebuildJob rebuild) {
+        this.rebuild = rebuild;
+    }
+
+    /**
+     * Inicia o rebuild em segundo plano. Rota: POST /admin/projection/rebuild
+     */
+    @PostMapping("/rebuild")
+    @Operation(
+            summary = "Reconstrução completa da projeção",
+            description = "Regrava account_views (e account_history) a partir do MySQL; 409 se já estiver rodando"
+    )
+    public ResponseEntity<RebuildCheckpoint> start(@RequestParam(defaultValue = "false") boolean resume) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(rebuild.start(resume));
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    /**
+     * Progresso do rebuild atual ou do último executado. Rota: GET /admin/projection/rebuild
+     */
+    @GetMapping("/rebuild")
+    public ResponseEntity<RebuildCheckpoint> status() {
+        var status = rebuild.status();
+        return status == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(status);
+    }
+
+    /**
+     * Interrompe o rebuild. Rota: DELETE /admin/projection/rebuild
+     */
+    @DeleteMapping("/rebuild")
+    public ResponseEntity<Void> cancel() {
+        rebuild.cancel();
+        return ResponseEntity.accepted().build();
+    }
+}
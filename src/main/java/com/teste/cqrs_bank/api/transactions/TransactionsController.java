@@ -1,21 +1,45 @@
 package com.teste.cqrs_bank.api.transactions;
 
+import com.teste.cqrs_bank.api.accounts.AccountsQueryController;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.teste.cqrs_bank.api.transactions.dto.AmountRequest;
-import com.teste.cqrs_bank.service.TransactionService;
+import com.teste.cqrs_bank.api.transactions.dto.BatchItemResponse;
+import com.teste.cqrs_bank.api.transactions.dto.BatchRequest;
+import com.teste.cqrs_bank.security.JwtAuthFilter;
+import com.teste.cqrs_bank.service.BulkCommandService;
+import com.teste.cqrs_bank.service.TransactionCommandGateway;
+import io.swagger.v3.oas.annotations.Operation;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
 
 /**
  * Controlador de comandos financeiros (Write Model).
  *
- * <p>Encaminha a operação para o {@link com.teste.cqrs_bank.service.TransactionService}
+ * <p>Encaminha a operação para o {@link com.teste.cqrs_bank.service.TransactionCommandGateway}
  * e retorna o saldo numérico atualizado (<code>{"balance": ...}</code>).
- * O resumo final é obtido no Read Model via <code>/accounts/me/summary</code>.</p>
+ * O resumo final é obtido no Read Model via <code>/accounts/me/summary</code>; o cabeçalho
+ * <code>X-Projection-Version</code> traz a versão da conta após o comando, para ser enviada como
+ * <code>minVersion</code> no resumo (ler a própria escrita sem polling).</p>
+ *
+ * <p>O cabeçalho opcional <code>Idempotency-Key</code> torna a chamada repetível: a mesma chave devolve a
+ * resposta original sem lançar de novo.</p>
+ *
+ * <p><code>POST /transactions/batch</code> aplica um lote de operações via {@link BulkCommandService} e devolve
+ * o resultado de cada uma em NDJSON, à medida que as transações do lote são confirmadas.</p>
  *
  * @since 1.0
  */
@@ -23,10 +47,16 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/transactions")
 public class TransactionsController {
 
-    private final TransactionService svc;
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
 
-    public TransactionsController(TransactionService svc) {
+    private final TransactionCommandGateway svc;
+    private final BulkCommandService bulk;
+    private final ObjectMapper json;
+
+    public TransactionsController(TransactionCommandGateway svc, BulkCommandService bulk, ObjectMapper json) {
         this.svc = svc;
+        this.bulk = bulk;
+        this.json = json;
     }
 
     /**
@@ -36,9 +66,13 @@ public class TransactionsController {
      * Rota: POST /transactions/deposit
      */
     @PostMapping("/deposit")
-    public ResponseEntity<?> deposit(Authentication auth, @Valid @RequestBody AmountRequest req) {
-        var acc = svc.deposit((String) auth.getPrincipal(), req.amount());
-        return ResponseEntity.ok().body(java.util.Map.of("balance", acc.getBalance()));
+    public ResponseEntity<?> deposit(Authentication auth,
+                                     @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                     @Valid @RequestBody AmountRequest req) {
+        var res = svc.deposit((String) auth.getPrincipal(), req.amount(), idempotencyKey);
+        return ResponseEntity.ok()
+                .header(AccountsQueryController.PROJECTION_VERSION, String.valueOf(res.version()))
+                .body(java.util.Map.of("balance", res.balance()));
     }
 
     /**
@@ -46,8 +80,53 @@ public class TransactionsController {
      * Rota: POST /transactions/pay-bill
      */
     @PostMapping("/pay-bill")
-    public ResponseEntity<?> payBill(Authentication auth, @Valid @RequestBody AmountRequest req) {
-        var acc = svc.payBill((String) auth.getPrincipal(), req.amount());
-        return ResponseEntity.ok().body(java.util.Map.of("balance", acc.getBalance()));
+    public ResponseEntity<?> payBill(Authentication auth,
+                                     @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                     @Valid @RequestBody AmountRequest req) {
+        var res = svc.payBill((String) auth.getPrincipal(), req.amount(), idempotencyKey);
+        return ResponseEntity.ok()
+                .header(AccountsQueryController.PROJECTION_VERSION, String.valueOf(res.version()))
+                .body(java.util.Map.of("balance", res.balance()));
+    }
+
+    /**
+     * Lote de depósitos/pagamentos. Operações sem <code>userId</code> são da conta do chamador; em outras contas
+     * exige <code>ROLE_SERVICE</code>. Responde uma linha JSON por operação (<code>index</code>, <code>status</code>
+     * OK/FAILED, saldo e versão ou <code>error</code>), em ordem de conta, logo após cada commit. Operações são
+     * validadas como em <code>/deposit</code> (400 no lote inteiro); <code>idempotencyKey</code> por operação
+     * torna o reenvio do lote seguro.
+     * Rota: POST /transactions/batch (application/x-ndjson)
+     */
+    @PostMapping(path = "/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(
+            summary = "Lote de depósitos/pagamentos",
+            description = "Ordena por conta e aplica em transações de várias contas; 403 em outras contas sem ROLE_SERVICE"
+    )
+    public ResponseEntity<StreamingResponseBody> batch(Authentication auth, @Valid @RequestBody BatchRequest req) {
+        String userId = (String) auth.getPrincipal();
+        var operations = req.operations() == null ? List.<BulkCommandService.Operation>of() : req.operations().stream()
+                .map(op -> op == null ? null : new BulkCommandService.Operation(op.userId(), op.type(), op.amount(), op.idempotencyKey()))
+                .toList();
+
+        boolean service = auth.getAuthorities().stream()
+                .anyMatch(a -> JwtAuthFilter.ROLE_SERVICE.equals(a.getAuthority()));
+        if (!service && operations.stream().anyMatch(op -> op != null && op.userId() != null && !op.userId().equals(userId))) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Operações em outras contas exigem ROLE_SERVICE.");
+        }
+
+        var plan = bulk.prepare(userId, operations);
+        StreamingResponseBody body = out -> bulk.execute(plan, outcomes -> {
+            try {
+                for (var outcome : outcomes) {
+                    out.write(json.writeValueAsBytes(BatchItemResponse.of(outcome)));
+                    out.write('\n');
+                }
+                out.flush();
+            } catch (IOException e) {
+                // cliente desconectou: as transações seguintes do lote não são aplicadas
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 }
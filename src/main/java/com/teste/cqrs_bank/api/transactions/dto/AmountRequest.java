@@ -1,11 +1,12 @@
 package com.teste.cqrs_bank.api.transactions.dto;
 
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotNull;
 
 import java.math.BigDecimal;
 
 public record AmountRequest(
-        @NotNull @DecimalMin(value = "0.01") BigDecimal amount
+        @NotNull @DecimalMin(value = "0.01") @Digits(integer = 17, fraction = 2) BigDecimal amount
 ) {
 }
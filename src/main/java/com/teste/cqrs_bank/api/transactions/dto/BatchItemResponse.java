@@ -0,0 +1,24 @@
+package com.teste.cqrs_bank.api.transactions.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.teste.cqrs_bank.service.BulkCommandService;
+
+import java.math.BigDecimal;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchItemResponse(
+        int index,
+        String status,
+        String accountId,
+        BigDecimal balance,
+        Long version,
+        String error
+) {
+
+    public static BatchItemResponse of(BulkCommandService.Outcome outcome) {
+        var res = outcome.result();
+        return res == null
+                ? new BatchItemResponse(outcome.index(), "FAILED", null, null, null, outcome.error())
+                : new BatchItemResponse(outcome.index(), "OK", res.accountId(), res.balance(), res.version(), null);
+    }
+}
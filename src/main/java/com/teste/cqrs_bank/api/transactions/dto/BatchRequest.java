@@ -0,0 +1,23 @@
+package com.teste.cqrs_bank.api.transactions.dto;
+
+import com.teste.cqrs_bank.domain.transaction.TxType;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.NotNull;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public record BatchRequest(
+        List<@Valid @NotNull Operation> operations
+) {
+
+    public record Operation(
+            String userId,
+            @NotNull TxType type,
+            @NotNull @DecimalMin(value = "0.01") @Digits(integer = 17, fraction = 2) BigDecimal amount,
+            String idempotencyKey
+    ) {
+    }
+}
@@ -0,0 +1,86 @@
+package com.teste.cqrs_bank.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Propriedades do caminho de comandos (Write Model) carregadas de app.commands.*
+ *
+ * <ul>
+ *   <li><b>locking</b>: <code>pessimistic</code> (SELECT ... FOR UPDATE, padrão) ou <code>optimistic</code>
+ *       (coluna <code>@Version</code> + nova tentativa em caso de conflito).</li>
+ *   <li><b>optimistic.maxAttempts</b>/<b>optimistic.backoff</b>: limite de tentativas e base do backoff
+ *       (exponencial com jitter) no modo otimista.</li>
+ *   <li><b>atomicPayBill</b>: pagamento via um único <code>UPDATE ... SET balance = balance - ?</code>,
+ *       sem carregar a entidade nem travar antes (padrão <code>true</code>).</li>
+ *   <li><b>batching.enabled</b>/<b>batching.window</b>/<b>batching.maxCommands</b>: group commit por conta —
+ *       comandos que chegam dentro da janela são aplicados juntos sob um lock e um commit (padrão desligado).</li>
+ *   <li><b>idempotency.maxSize</b>/<b>idempotency.ttl</b>: cache em memória dos resultados por <code>Idempotency-Key</code>;
+ *       <b>idempotency.retention</b>/<b>idempotency.purgeInterval</b>: por quanto tempo a tabela
+ *       <code>idempotency_keys</code> guarda cada chave e de quanto em quanto tempo as vencidas são removidas.</li>
+ *   <li><b>bulk.maxItems</b>/<b>bulk.accountsPerCommit</b>: limite de operações por chamada de
+ *       <code>/transactions/batch</code> e quantas contas entram em cada transação do lote.</li>
+ * </ul>
+ *
+ * @since 1.0
+ */
+@ConfigurationProperties(prefix = "app.commands")
+public record CommandProperties(
+        Locking locking,
+        Optimistic optimistic,
+        Boolean atomicPayBill,
+        Batching batching,
+        Idempotency idempotency,
+        Bulk bulk
+) {
+
+    public CommandProperties {
+        if (locking == null) locking = Locking.PESSIMISTIC;
+        if (optimistic == null) optimistic = new Optimistic(null, null);
+        if (atomicPayBill == null) atomicPayBill = true;
+        if (batching == null) batching = new Batching(null, null, null);
+        if (idempotency == null) idempotency = new Idempotency(null, null, null, null);
+        if (bulk == null) bulk = new Bulk(null, null);
+    }
+
+    public enum Locking {
+        PESSIMISTIC,
+        OPTIMISTIC
+    }
+
+    public record Optimistic(Integer maxAttempts, Duration backoff) {
+
+        public Optimistic {
+            if (maxAttempts == null || maxAttempts < 1) maxAttempts = 5;
+            if (backoff == null || backoff.isNegative()) backoff = Duration.ofMillis(5);
+        }
+    }
+
+    public record Batching(Boolean enabled, Duration window, Integer maxCommands) {
+
+        public Batching {
+            if (enabled == null) enabled = false;
+            if (window == null || window.isNegative()) window = Duration.ofMillis(2);
+            if (maxCommands == null || maxCommands < 1) maxCommands = 64;
+        }
+    }
+
+    public record Idempotency(Long maxSize, Duration ttl, Duration retention, Duration purgeInterval) {
+
+        public Idempotency {
+            if (maxSize == null || maxSize < 0) maxSize = 100_000L;
+            if (ttl == null || ttl.isNegative() || ttl.isZero()) ttl = Duration.ofMinutes(10);
+            if (retention == null || retention.isNegative() || retention.isZero()) retention = Duration.ofHours(24);
+            if (purgeInterval == null || purgeInterval.isNegative() || purgeInterval.isZero()) purgeInterval = Duration.ofMinutes(10);
+        }
+    }
+
+    public record Bulk(Integer maxItems, Integer accountsPerCommit) {
+
+        public Bulk {
+            if (maxItems == null || maxItems < 1) maxItems = 10_000;
+            if (accountsPerCommit == null || accountsPerCommit < 1) accountsPerCommit = 100;
+        }
+    }
+}
@@ -3,11 +3,30 @@ package com.teste.cqrs_bank.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
- * Propriedades do JWT (secret, expirationMinutes) carregadas de app.security.jwt.* @since 1.0
+ * Propriedades do JWT (secret, expirationMinutes) carregadas de app.security.jwt.*
+ *
+ * <ul>
+ *   <li><b>tokenCache.maxSize</b>: limite de tokens já validados mantidos em memória
+ *       (padrão 100000; cada entrada expira junto com o <code>exp</code> do token).</li>
+ * </ul>
+ *
+ * @since 1.0
  */
 @ConfigurationProperties(prefix = "app.security.jwt")
 public record JwtProperties(
         String secret,
-        Integer expirationMinutes
+        Integer expirationMinutes,
+        TokenCache tokenCache
 ) {
+
+    public JwtProperties {
+        if (tokenCache == null) tokenCache = new TokenCache(null);
+    }
+
+    public record TokenCache(Long maxSize) {
+
+        public TokenCache {
+            if (maxSize == null || maxSize < 0) maxSize = 100_000L;
+        }
+    }
 }
@@ -0,0 +1,45 @@
+package com.teste.cqrs_bank.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Propriedades do cache de logins (signup/login) carregadas de app.security.logins.*
+ *
+ * <ul>
+ *   <li><b>maxSize</b>: logins mantidos em memória, existentes ou não (padrão 100000).</li>
+ *   <li><b>ttl</b>: validade de um login encontrado (padrão 10m).</li>
+ *   <li><b>negativeTtl</b>: validade de um "login não existe" (padrão 30s); é o limite de defasagem para um
+ *       cadastro feito em outra instância.</li>
+ *   <li><b>bloom.enabled</b>/<b>bloom.expectedInsertions</b>/<b>bloom.fpp</b>: filtro de Bloom do
+ *       "login certamente livre" no signup; dimensionado para <code>expectedInsertions</code> logins com
+ *       taxa de falso positivo <code>fpp</code> (padrão ligado, 1.000.000, 0.01).</li>
+ * </ul>
+ *
+ * @since 1.0
+ */
+@ConfigurationProperties(prefix = "app.security.logins")
+public record LoginProperties(
+        Long maxSize,
+        Duration ttl,
+        Duration negativeTtl,
+        Bloom bloom
+) {
+
+    public LoginProperties {
+        if (maxSize == null || maxSize < 0) maxSize = 100_000L;
+        if (ttl == null || ttl.isNegative()) ttl = Duration.ofMinutes(10);
+        if (negativeTtl == null || negativeTtl.isNegative()) negativeTtl = Duration.ofSeconds(30);
+        if (bloom == null) bloom = new Bloom(null, null, null);
+    }
+
+    public record Bloom(Boolean enabled, Long expectedInsertions, Double fpp) {
+
+        public Bloom {
+            if (enabled == null) enabled = true;
+            if (expectedInsertions == null || expectedInsertions < 1) expectedInsertions = 1_000_000L;
+            if (fpp == null || fpp <= 0 || fpp >= 1) fpp = 0.01;
+        }
+    }
+}
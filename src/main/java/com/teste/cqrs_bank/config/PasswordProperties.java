@@ -0,0 +1,30 @@
+package com.teste.cqrs_bank.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Propriedades do pool de hash de senha (BCrypt) carregadas de app.security.password.*
+ *
+ * <ul>
+ *   <li><b>threads</b>: threads dedicadas ao BCrypt (padrão: metade dos núcleos, mínimo 1).</li>
+ *   <li><b>queueCapacity</b>: hashes aguardando thread; acima disso o pedido é recusado com 503 (padrão 64).</li>
+ *   <li><b>timeout</b>: espera máxima do chamador (fila + hash) antes de desistir com 503 (padrão 5s).</li>
+ * </ul>
+ *
+ * @since 1.0
+ */
+@ConfigurationProperties(prefix = "app.security.password")
+public record PasswordProperties(
+        Integer threads,
+        Integer queueCapacity,
+        Duration timeout
+) {
+
+    public PasswordProperties {
+        if (threads == null || threads < 1) threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        if (queueCapacity == null || queueCapacity < 1) queueCapacity = 64;
+        if (timeout == null || timeout.isNegative() || timeout.isZero()) timeout = Duration.ofSeconds(5);
+    }
+}
@@ -0,0 +1,131 @@
+package com.teste.cqrs_bank.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Propriedades do pipeline assíncrono de projeção carregadas de app.projection.*
+ *
+ * <ul>
+ *   <li><b>partitions</b>: número de filas/virtual threads; cada accountId cai sempre na mesma partição.</li>
+ *   <li><b>queueCapacity</b>: capacidade de cada fila (limitada).</li>
+ *   <li><b>backpressure</b>: o que fazer com a fila cheia (<code>block</code>, <code>drop-to-rebuild</code>,
+ *       <code>caller-runs</code>).</li>
+ *   <li><b>coalesceWindow</b>: janela em que eventos pendentes da mesma conta são agrupados numa única
+ *       escrita (ex.: 5ms–50ms; <code>0</code> agrupa só o que já está na fila).</li>
+ *   <li><b>coalesceMaxEvents</b>: teto de eventos por janela de agrupamento da partição.</li>
+ *   <li><b>bulk</b>: escrita em lote no Mongo (<code>bulkOps(UNORDERED)</code>) disparada por tamanho
+ *       (<code>maxOps</code>) ou tempo (<code>flushInterval</code>), com até <code>maxRetries</code> novas tentativas
+ *       por operação que falhar.</li>
+ *   <li><b>outbox</b>: entrega via tabela <code>projection_outbox</code> (gravada na mesma transação do
+ *       comando) drenada em lotes pelo relay, em vez do evento em memória; linha que falha
+ *       <code>maxAttempts</code> vezes é estacionada e a conta vai para rebuild.</li>
+ *   <li><b>historyBuckets</b>: grava também o histórico completo em buckets por conta/dia
+ *       (<code>account_history</code>) além da janela recente do resumo (padrão <code>true</code>).</li>
+ *   <li><b>rebuild</b>: job administrativo de reconstrução completa — contas por lote (<code>chunkSize</code>),
+ *       lotes em paralelo (<code>parallelism</code>) e teto de contas por segundo (<code>maxAccountsPerSecond</code>,
+ *       <code>0</code> = sem limite).</li>
+ *   <li><b>consistency</b>: verificador contínuo MySQL × Mongo (desligado por padrão) — contas por lote,
+ *       teto de contas por segundo, pausa entre varreduras completas e tolerância (<code>staleAfter</code>)
+ *       para uma projeção atrasada antes de ser considerada divergente.</li>
+ * </ul>
+ *
+ * @since 1.0
+ */
+@ConfigurationProperties(prefix = "app.projection")
+public record ProjectionProperties(
+        Integer partitions,
+        Integer queueCapacity,
+        Backpressure backpressure,
+        Duration coalesceWindow,
+        Integer coalesceMaxEvents,
+        Bulk bulk,
+        Outbox outbox,
+        Boolean historyBuckets,
+        Rebuild rebuild,
+        Consistency consistency
+) {
+
+    public ProjectionProperties {
+        if (partitions == null || partitions < 1) partitions = 8;
+        if (queueCapacity == null || queueCapacity < 1) queueCapacity = 1024;
+        if (backpressure == null) backpressure = Backpressure.BLOCK;
+        if (coalesceWindow == null || coalesceWindow.isNegative()) coalesceWindow = Duration.ofMillis(10);
+        if (coalesceMaxEvents == null || coalesceMaxEvents < 1) coalesceMaxEvents = 256;
+        if (bulk == null) bulk = new Bulk(null, null, null);
+        if (outbox == null) outbox = new Outbox(null, null, null, null);
+        if (historyBuckets == null) historyBuckets = true;
+        if (rebuild == null) rebuild = new Rebuild(null, null, null);
+        if (consistency == null) consistency = new Consistency(null, null, null, null, null);
+    }
+
+    /**
+     * Escrita em lote da projeção por partição.
+     */
+    public record Bulk(Integer maxOps, Duration flushInterval, Integer maxRetries) {
+
+        public Bulk {
+            if (maxOps == null || maxOps < 1) maxOps = 500;
+            if (flushInterval == null || flushInterval.isNegative()) flushInterval = Duration.ofMillis(20);
+            if (maxRetries == null || maxRetries < 0) maxRetries = 3;
+        }
+    }
+
+    /**
+     * Outbox transacional: <code>enabled</code>, tamanho do lote do relay, intervalo de polling
+     * quando a tabela está vazia e rodadas com falha antes de estacionar a linha (<code>maxAttempts</code>).
+     */
+    public record Outbox(Boolean enabled, Integer batchSize, Duration pollInterval, Integer maxAttempts) {
+
+        public Outbox {
+            if (enabled == null) enabled = false;
+            if (batchSize == null || batchSize < 1) batchSize = 500;
+            if (pollInterval == null || pollInterval.isNegative() || pollInterval.isZero()) pollInterval = Duration.ofMillis(200);
+            if (maxAttempts == null || maxAttempts < 1) maxAttempts = 5;
+        }
+    }
+
+    /**
+     * Reconstrução completa da projeção (varredura por keyset de <code>accounts</code>).
+     */
+    public record Rebuild(Integer chunkSize, Integer parallelism, Integer maxAccountsPerSecond) {
+
+        public Rebuild {
+            if (chunkSize == null || chunkSize < 1) chunkSize = 1000;
+            if (parallelism == null || parallelism < 1) parallelism = 4;
+            if (maxAccountsPerSecond == null || maxAccountsPerSecond < 0) maxAccountsPerSecond = 0;
+        }
+    }
+
+    /**
+     * Verificador de consistência entre o Write Model e a projeção.
+     */
+    public record Consistency(Boolean enabled, Integer chunkSize, Integer maxAccountsPerSecond,
+                              Duration passInterval, Duration staleAfter) {
+
+        public Consistency {
+            if (enabled == null) enabled = false;
+            if (chunkSize == null || chunkSize < 1) chunkSize = 200;
+            if (maxAccountsPerSecond == null || maxAccountsPerSecond < 1) maxAccountsPerSecond = 200;
+            if (passInterval == null || passInterval.isNegative()) passInterval = Duration.ofMinutes(5);
+            if (staleAfter == null || staleAfter.isNegative()) staleAfter = Duration.ofMinutes(1);
+        }
+    }
+
+    /**
+     * Política aplicada quando a fila da partição está cheia.
+     */
+    public enum Backpressure {
+        /** Bloqueia o chamador (thread do comando, pós-commit) até haver espaço. */
+        BLOCK,
+        /** Descarta o evento e marca a conta para rebuild completo pela própria partição. */
+        DROP_TO_REBUILD,
+        /**
+         * Bloqueia o chamador até haver espaço e até a partição aplicar o evento (hand-off síncrono, limitado a 1s):
+         * o chamador absorve o custo, mas a escrita continua na partição da conta, preservando a ordem. Esgotado o
+         * prazo, o chamador é liberado e a conta vai para rebuild completo.
+         */
+        CALLER_RUNS
+    }
+}
@@ -0,0 +1,67 @@
+package com.teste.cqrs_bank.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Propriedades do lado de consulta (Read Model) carregadas de app.query.*
+ *
+ * <ul>
+ *   <li><b>summaryCache.maxSize</b>: máximo de {@code AccountView} mantidos em memória.</li>
+ *   <li><b>summaryCache.ttl</b>: validade de cada entrada desde a escrita; como a invalidação feita
+ *       pelo {@code ProjectionUpdater} é local, é o limite de defasagem entre instâncias.</li>
+ *   <li><b>consistency.maxWait</b>: quanto o resumo com <code>minVersion</code> espera a projeção alcançar a
+ *       versão pedida antes de montar a resposta direto do MySQL (padrão 500ms).</li>
+ *   <li><b>consistency.maxConcurrentFallbacks</b>: leituras simultâneas no MySQL por esse caminho; acima disso
+ *       responde o snapshot atual (padrão 16).</li>
+ * </ul>
+ *
+ * @since 1.0
+ */
+@ConfigurationProperties(prefix = "app.query")
+public record QueryProperties(
+        SummaryCache summaryCache,
+        HistorySource historySource,
+        Stream stream,
+        Consistency consistency
+) {
+
+    public QueryProperties {
+        if (summaryCache == null) summaryCache = new SummaryCache(null, null);
+        if (historySource == null) historySource = HistorySource.MYSQL;
+        if (stream == null) stream = new Stream(null, null, null, null);
+        if (consistency == null) consistency = new Consistency(null, null);
+    }
+
+    public enum HistorySource {
+        MYSQL,
+        BUCKETS
+    }
+
+    public record SummaryCache(Long maxSize, Duration ttl) {
+
+        public SummaryCache {
+            if (maxSize == null || maxSize < 0) maxSize = 100_000L;
+            if (ttl == null || ttl.isNegative()) ttl = Duration.ofSeconds(10);
+        }
+    }
+
+    public record Stream(Duration timeout, Duration heartbeat, Integer maxPerUser, Integer queueCapacity) {
+
+        public Stream {
+            if (timeout == null || timeout.isNegative()) timeout = Duration.ofMinutes(30);
+            if (heartbeat == null || heartbeat.isNegative() || heartbeat.isZero()) heartbeat = Duration.ofSeconds(25);
+            if (maxPerUser == null || maxPerUser < 1) maxPerUser = 5;
+            if (queueCapacity == null || queueCapacity < 1) queueCapacity = 64;
+        }
+    }
+
+    public record Consistency(Duration maxWait, Integer maxConcurrentFallbacks) {
+
+        public Consistency {
+            if (maxWait == null || maxWait.isNegative()) maxWait = Duration.ofMillis(500);
+            if (maxConcurrentFallbacks == null || maxConcurrentFallbacks < 0) maxConcurrentFallbacks = 16;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.teste.cqrs_bank.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+/**
+ * Papéis concedidos por login, carregados de app.security.*
+ *
+ * <ul>
+ *   <li><b>adminLogins</b>: logins que recebem <code>ROLE_ADMIN</code> (rotas <code>/admin/**</code>).</li>
+ *   <li><b>serviceLogins</b>: integrações confiáveis que recebem <code>ROLE_SERVICE</code> (lote de comandos
+ *       em contas de outros usuários).</li>
+ * </ul>
+ *
+ * <p>O papel é resolvido a cada requisição pelo filtro JWT; alterar a lista não exige reemitir tokens.</p>
+ *
+ * @since 1.0
+ */
+@ConfigurationProperties(prefix = "app.security")
+public record RoleProperties(
+        List<String> adminLogins,
+        List<String> serviceLogins
+) {
+
+    public RoleProperties {
+        if (adminLogins == null) adminLogins = List.of();
+        if (serviceLogins == null) serviceLogins = List.of();
+    }
+}
@@ -0,0 +1,32 @@
+package com.teste.cqrs_bank.domain;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Geração de ids ordenados por tempo (UUIDv7, RFC 9562) para chaves primárias <code>char(36)</code>.
+ *
+ * <p>Os 48 bits mais altos são o epoch em milissegundos, então ids novos caem no fim do índice
+ * clusterizado do InnoDB (sem page splits aleatórios) e a forma textual continua ordenável.</p>
+ *
+ * @since 1.0
+ */
+public final class Ids {
+
+    private Ids() {
+    }
+
+    public static String newId() {
+        return uuidV7(System.currentTimeMillis()).toString();
+    }
+
+    static UUID uuidV7(long epochMillis) {
+        var rnd = ThreadLocalRandom.current();
+        long msb = (epochMillis & 0xFFFF_FFFF_FFFFL) << 16
+                | 0x7000L                          // versão 7
+                | (rnd.nextLong() & 0x0FFFL);      // rand_a (12 bits)
+        long lsb = (rnd.nextLong() & 0x3FFF_FFFF_FFFF_FFFFL)
+                | 0x8000_0000_0000_0000L;          // variante IETF
+        return new UUID(msb, lsb);
+    }
+}
@@ -1,5 +1,6 @@
 package com.teste.cqrs_bank.domain.account;
 
+import com.teste.cqrs_bank.domain.Ids;
 import com.teste.cqrs_bank.domain.user.User;
 import jakarta.persistence.*;
 import lombok.*;
@@ -8,7 +9,6 @@ import org.hibernate.annotations.UpdateTimestamp;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 /**
  * Entidade de conta (Write Model / JPA).
@@ -16,6 +16,12 @@ import java.util.UUID;
  *
  * <p>Campos de auditoria: createdAt / updatedAt (timestamps).</p>
  *
+ * <p><code>eventVersion</code> é a sequência por conta dos eventos publicados para a projeção;
+ * é incrementada na mesma transação do comando que altera o saldo.</p>
+ *
+ * <p><code>lockVersion</code> é a versão JPA (<code>@Version</code>) usada no modo de concorrência
+ * otimista dos comandos.</p>
+ *
  * @since 1.0
  */
 @Getter
@@ -45,6 +51,13 @@ public class Account {
     @Column(name = "balance", nullable = false, precision = 19, scale = 2)
     private BigDecimal balance;
 
+    @Column(name = "event_version", nullable = false, columnDefinition = "bigint default 0")
+    private Long eventVersion;
+
+    @Version
+    @Column(name = "lock_version", nullable = false, columnDefinition = "bigint default 0")
+    private Long lockVersion;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, columnDefinition = "datetime(6)")
     private LocalDateTime createdAt;
@@ -55,7 +68,16 @@ public class Account {
 
     @PrePersist
     void prePersist() {
-        if (this.id == null) this.id = UUID.randomUUID().toString();
+        if (this.id == null) this.id = Ids.newId();
         if (this.balance == null) this.balance = BigDecimal.ZERO;
+        if (this.eventVersion == null) this.eventVersion = 0L;
+    }
+
+    /**
+     * Avança e devolve a próxima versão de evento da conta.
+     */
+    public long nextEventVersion() {
+        this.eventVersion = (this.eventVersion == null ? 0L : this.eventVersion) + 1;
+        return this.eventVersion;
     }
 }
@@ -1,15 +1,24 @@
 package com.teste.cqrs_bank.domain.account;
 
 import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
  * Repositório JPA de Account.
- * Inclui busca por usuário e variante com lock PESSIMISTIC_WRITE para atualização segura.
+ * Inclui busca por usuário, variante com lock PESSIMISTIC_WRITE para atualização segura
+ * (também para várias contas de uma vez, no lote de comandos)
+ * e débito atômico em um único UPDATE (caminho rápido do pagamento), além da varredura por keyset
+ * usada pela reconstrução completa da projeção.
  *
  * @since 1.0
  */
@@ -20,4 +29,74 @@ public interface AccountRepository extends JpaRepository<Account, String> {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("select a from Account a where a.user.id = :userId")
     Optional<Account> findByUserIdForUpdate(String userId);
+
+    /**
+     * Contas de vários usuários (modo otimista do lote de comandos).
+     */
+    @Query("select a from Account a where a.user.id in :userIds")
+    List<Account> findAllByUserIdIn(Collection<String> userIds);
+
+    /**
+     * Contas de vários usuários com lock PESSIMISTIC_WRITE, travadas em ordem de <code>user_id</code>:
+     * lotes concorrentes tomam os locks na mesma ordem e não entram em deadlock entre si.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Account a where a.user.id in :userIds order by a.user.id")
+    List<Account> findAllByUserIdInForUpdate(Collection<String> userIds);
+
+    /**
+     * Debita o saldo e avança <code>event_version</code>/<code>lock_version</code> num único UPDATE
+     * (o lock de linha é tomado aqui e vale até o commit). Retorna as linhas afetadas (0 = conta inexistente).
+     */
+    @Modifying
+    @Query(value = """
+            update accounts
+               set balance = balance - :amount,
+                   event_version = event_version + 1,
+                   lock_version = lock_version + 1,
+                   updated_at = :now
+             where user_id = :userId
+            """, nativeQuery = true)
+    int debitByUserId(String userId, BigDecimal amount, LocalDateTime now);
+
+    /**
+     * Estado atual da conta sem carregar a entidade (na mesma transação, enxerga o próprio UPDATE).
+     */
+    @Query("select a.id as id, a.user.id as userId, a.balance as balance, a.eventVersion as eventVersion "
+            + "from Account a where a.user.id = :userId")
+    Optional<BalanceView> findBalanceByUserId(String userId);
+
+    /**
+     * Ids após <code>after</code> (exclusivo), em ordem: varredura por keyset sobre a chave primária.
+     */
+    @Query("select a.id from Account a where a.id > :after order by a.id")
+    List<String> findIdsAfter(String after, Limit limit);
+
+    /**
+     * Estado atual das contas após <code>after</code> (exclusivo), em ordem de id: keyset sobre a chave primária.
+     */
+    @Query("select a.id as id, a.user.id as userId, a.balance as balance, a.eventVersion as eventVersion "
+            + "from Account a where a.id > :after order by a.id")
+    List<BalanceView> findBalancesAfter(String after, Limit limit);
+
+    /**
+     * Estado atual de várias contas, sem carregar as entidades.
+     */
+    @Query("select a.id as id, a.user.id as userId, a.balance as balance, a.eventVersion as eventVersion "
+            + "from Account a where a.id in :ids")
+    List<BalanceView> findBalancesByIdIn(Collection<String> ids);
+
+    /**
+     * Projeção de {@link #findBalanceByUserId(String)}, {@link #findBalancesAfter(String, Limit)} e
+     * {@link #findBalancesByIdIn(Collection)}.
+     */
+    interface BalanceView {
+        String getId();
+
+        String getUserId();
+
+        BigDecimal getBalance();
+
+        Long getEventVersion();
+    }
 }
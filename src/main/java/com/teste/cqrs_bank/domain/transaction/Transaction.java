@@ -1,14 +1,14 @@
 package com.teste.cqrs_bank.domain.transaction;
 
+import com.teste.cqrs_bank.domain.Ids;
 import com.teste.cqrs_bank.domain.account.Account;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Positive;
 import lombok.*;
-import org.hibernate.annotations.CreationTimestamp;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.UUID;
+import java.time.temporal.ChronoUnit;
 
 /**
  * Lançamento financeiro atômico no Write Model.
@@ -16,6 +16,11 @@ import java.util.UUID;
  *
  * <p>O histórico “pronto para UI” é montado no Read Model (Mongo) a partir dos eventos.</p>
  *
+ * <p><code>occurredAt</code> é atribuído ao construir o lançamento (não no INSERT), porque o evento da projeção
+ * é montado antes do flush e precisa da data; fica em microssegundos, a precisão de <code>datetime(6)</code>.</p>
+ *
+ * <p>O id é um UUIDv7 ({@link com.teste.cqrs_bank.domain.Ids}): inserts em ordem no índice clusterizado.</p>
+ *
  * @since 1.0
  */
 @Getter
@@ -50,13 +55,20 @@ public class Transaction {
     @Column(name = "amount", nullable = false, precision = 19, scale = 2)
     private BigDecimal amount;
 
-    @CreationTimestamp
     @Column(name = "occurred_at", nullable = false, columnDefinition = "datetime(6)")
     private LocalDateTime occurredAt;
 
     @PrePersist
     void prePersist() {
-        if (this.id == null) this.id = UUID.randomUUID().toString();
+        if (this.id == null) this.id = Ids.newId();
+        if (this.occurredAt == null) this.occurredAt = now();
         if (this.amount != null) this.amount = this.amount.setScale(2);
     }
+
+    /**
+     * Instante atual na precisão da coluna <code>occurred_at</code>.
+     */
+    public static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
 }
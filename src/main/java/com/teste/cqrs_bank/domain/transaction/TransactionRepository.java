@@ -1,13 +1,19 @@
 package com.teste.cqrs_bank.domain.transaction;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
  * Repositório JPA de Transaction.
- * Exposição de consultas ordenadas por data (desc) com paginação para projeções/relatórios.
+ * Exposição de consultas ordenadas por data (desc) com paginação para projeções/relatórios,
+ * incluindo paginação por keyset em <code>(occurred_at, id)</code> sobre <code>idx_transactions_account_date</code>.
  *
  * @since 1.0
  */
@@ -16,4 +22,49 @@ public interface TransactionRepository extends JpaRepository<Transaction, String
     List<Transaction> findByAccountIdOrderByOccurredAtDesc(String accountId);
 
     List<Transaction> findByAccountIdOrderByOccurredAtDesc(String accountId, Pageable pageable);
+
+    /**
+     * Primeira página do histórico completo do usuário, do mais recente para o mais antigo.
+     */
+    @Query("select t from Transaction t where t.account.user.id = :userId order by t.occurredAt desc, t.id desc")
+    List<Transaction> findHistory(String userId, Limit limit);
+
+    /**
+     * Página seguinte ao cursor <code>(occurredAt, id)</code> (exclusivo): range no índice, sem OFFSET.
+     */
+    @Query("select t from Transaction t where t.account.user.id = :userId "
+            + "and (t.occurredAt < :occurredAt or (t.occurredAt = :occurredAt and t.id < :id)) "
+            + "order by t.occurredAt desc, t.id desc")
+    List<Transaction> findHistoryBefore(String userId, LocalDateTime occurredAt, String id, Limit limit);
+
+    /**
+     * Últimas <code>perAccount</code> transações de cada conta, numa única consulta (<code>row_number()</code>
+     * por conta), agrupadas por conta e do mais recente para o mais antigo. Usada pela reconstrução em lote.
+     */
+    @Query(value = """
+            select id, accountId, type, amount, occurredAt
+              from (select t.id as id, t.account_id as accountId, t.type as type, t.amount as amount,
+                           t.occurred_at as occurredAt,
+                           row_number() over (partition by t.account_id order by t.occurred_at desc, t.id desc) as rn
+                      from transactions t
+                     where t.account_id in (:accountIds)) ranked
+             where rn <= :perAccount
+             order by accountId, occurredAt desc, id desc
+            """, nativeQuery = true)
+    List<RecentTransaction> findRecentByAccountIds(Collection<String> accountIds, int perAccount);
+
+    /**
+     * Projeção de {@link #findRecentByAccountIds(Collection, int)}.
+     */
+    interface RecentTransaction {
+        String getId();
+
+        String getAccountId();
+
+        TxType getType();
+
+        BigDecimal getAmount();
+
+        LocalDateTime getOccurredAt();
+    }
 }
@@ -1,7 +1,10 @@
 package com.teste.cqrs_bank.domain.user;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -13,4 +16,9 @@ public interface UserRepository extends JpaRepository<User, String> {
 
     boolean existsByLogin(String login);
 
+    /**
+     * Logins após <code>after</code> (exclusivo), em ordem: varredura por keyset sobre <code>uq_users_login</code>.
+     */
+    @Query("select u.login from User u where u.login > :after order by u.login")
+    List<String> findLoginsAfter(String after, Limit limit);
 }
@@ -0,0 +1,209 @@
+package com.teste.cqrs_bank.read;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.teste.cqrs_bank.config.QueryProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Push das atualizações da projeção via Server-Sent Events (<code>/accounts/me/stream</code>).
+ *
+ * <ul>
+ *   <li>Cada conexão é um {@link SseEmitter} (requisição assíncrona, sem thread de servlet presa) com uma
+ *       fila própria limitada e uma virtual thread que a drena: envios na ordem dos eventos, sem que um
+ *       cliente lento atrase os demais ou a partição da projeção. Dezenas de milhares de conexões ociosas
+ *       custam só memória.</li>
+ *   <li>Ao conectar recebe <code>summary</code> (o mesmo JSON de <code>/accounts/me/summary</code>); a cada
+ *       {@link ProjectionApplied} recebe <code>update</code> (<code>{"SaldoTotal", "Historico": [novos], "version"}</code>,
+ *       com <code>id</code> = versão) ou, após rebuild, <code>refresh</code> (reler o resumo).</li>
+ *   <li>A conexão é registrada <b>antes</b> de ler o resumo, para não perder eventos entre a leitura e o registro; o
+ *       <code>summary</code> é sempre o primeiro envio, e os <code>update</code> enfileirados nesse intervalo com
+ *       versão menor ou igual à do resumo (já contidos nele) são descartados.</li>
+ *   <li>O JSON de cada evento é serializado uma vez e reaproveitado por todas as conexões do usuário.</li>
+ *   <li>Sem eventos, envia um comentário de keep-alive a cada <code>heartbeat</code>; fila cheia encerra a
+ *       conexão (o cliente reconecta e recebe o <code>summary</code> atual).</li>
+ * </ul>
+ *
+ * <p>Métricas: <code>sse.connections</code>, <code>sse.events.sent</code>, <code>sse.dropped</code>.</p>
+ *
+ * @since 1.0
+ */
+@Component
+public class AccountStreamHub {
+
+    private final AccountViewCache views;
+    private final ObjectMapper json;
+    private final long timeoutMs;
+    private final long heartbeatMs;
+    private final int maxPerUser;
+    private final int queueCapacity;
+
+    private final ConcurrentHashMap<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Counter sent;
+    private final Counter dropped;
+
+    public AccountStreamHub(AccountViewCache views, ObjectMapper json, QueryProperties props, MeterRegistry meters) {
+        this.views = views;
+        this.json = json;
+        this.timeoutMs = props.stream().timeout().toMillis();
+        this.heartbeatMs = props.stream().heartbeat().toMillis();
+        this.maxPerUser = props.stream().maxPerUser();
+        this.queueCapacity = props.stream().queueCapacity();
+        this.sent = meters.counter("sse.events.sent");
+        this.dropped = meters.counter("sse.dropped");
+        meters.gauge("sse.connections", connections);
+    }
+
+    /**
+     * Abre o stream do usuário; <code>null</code> se ele já tem <code>maxPerUser</code> conexões.
+     */
+    public SseEmitter subscribe(String userId) {
+        var sub = new Subscription(userId, newEmitter());
+        var added = new boolean[1];
+        subscriptions.compute(userId, (k, subs) -> {
+            if (subs == null) subs = ConcurrentHashMap.newKeySet();
+            if (subs.size() < maxPerUser) added[0] = subs.add(sub);
+            return subs;
+        });
+        if (!added[0]) return null;
+        connections.incrementAndGet();
+        sub.emitter.onCompletion(sub::close);
+        sub.emitter.onTimeout(sub::close);
+        sub.emitter.onError(e -> sub.close());
+
+        var summary = views.summary(userId);
+        if (summary == null) summary = views.empty();
+        sub.initial = SseEmitter.event().name("summary")
+                .data(new String(summary.json(), StandardCharsets.UTF_8), MediaType.APPLICATION_JSON).build();
+        sub.floor = summary.view().getVersion() == null ? Long.MIN_VALUE : summary.view().getVersion();
+
+        sub.worker = Thread.ofVirtual().name("sse-" + userId).start(sub::run);
+        return sub.emitter;
+    }
+
+    SseEmitter newEmitter() {
+        return new SseEmitter(timeoutMs);
+    }
+
+    @EventListener
+    public void on(ProjectionApplied evt) {
+        var subs = evt.userId() == null ? null : subscriptions.get(evt.userId());
+        if (subs == null || subs.isEmpty()) return;
+
+        Outgoing event;
+        if (evt.rebuilt()) {
+            event = new Outgoing(evt.version(), false, SseEmitter.event().name("refresh").id(Long.toString(evt.version()))
+                    .data("{\"version\":" + evt.version() + "}", MediaType.APPLICATION_JSON).build());
+        } else {
+            var body = new LinkedHashMap<String, Object>();
+            body.put("SaldoTotal", evt.saldoTotal());
+            body.put("Historico", evt.novos());
+            body.put("version", evt.version());
+            event = new Outgoing(evt.version(), true, SseEmitter.event().name("update").id(Long.toString(evt.version()))
+                    .data(write(body), MediaType.APPLICATION_JSON).build());
+        }
+        for (var sub : subs) sub.offer(event);
+    }
+
+    int connections() {
+        return connections.get();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscriptions.values().forEach(subs -> subs.forEach(sub -> sub.emitter.complete()));
+    }
+
+    private String write(Object body) {
+        try {
+            return json.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Falha ao serializar evento SSE.", e);
+        }
+    }
+
+    /**
+     * Evento pronto para envio; <code>update</code> pode ser descartado se o <code>summary</code> já o contém.
+     */
+    private record Outgoing(long version, boolean update, Set<ResponseBodyEmitter.DataWithMediaType> data) {
+    }
+
+    private final class Subscription {
+
+        final String userId;
+        final SseEmitter emitter;
+        final BlockingQueue<Outgoing> queue = new ArrayBlockingQueue<>(queueCapacity);
+        volatile boolean open = true;
+        volatile boolean overflowed;
+        volatile Thread worker;
+        // definidos antes de iniciar o worker
+        Set<ResponseBodyEmitter.DataWithMediaType> initial;
+        long floor;
+
+        Subscription(String userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        void offer(Outgoing event) {
+            if (open && !queue.offer(event)) {
+                // cliente não acompanha: encerra; ao reconectar recebe o summary atual. Quem conclui o emitter é o
+                // worker, para não disputar o lock do emitter com um send lento
+                dropped.increment();
+                overflowed = true;
+                close();
+            }
+        }
+
+        void run() {
+            try {
+                if (!open) return;
+                emitter.send(initial);
+                sent.increment();
+                while (open) {
+                    var event = queue.poll(heartbeatMs, TimeUnit.MILLISECONDS);
+                    if (!open) return;
+                    if (event != null && event.update() && event.version() <= floor) continue;
+                    emitter.send(event != null ? event.data() : SseEmitter.event().comment("ping").build());
+                    if (event != null) sent.increment();
+                }
+            } catch (InterruptedException e) {
+                // close()
+            } catch (Exception e) {
+                // conexão caiu ou emitter já concluído
+                emitter.completeWithError(e);
+                close();
+            } finally {
+                if (overflowed) emitter.complete();
+            }
+        }
+
+        void close() {
+            if (!open) return;
+            open = false;
+            subscriptions.computeIfPresent(userId, (k, subs) -> {
+                if (subs.remove(this)) connections.decrementAndGet();
+                return subs.isEmpty() ? null : subs;
+            });
+            var w = worker;
+            if (w != null && w != Thread.currentThread()) w.interrupt();
+        }
+    }
+}
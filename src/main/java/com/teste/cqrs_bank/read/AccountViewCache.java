@@ -0,0 +1,138 @@
+package com.teste.cqrs_bank.read;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.teste.cqrs_bank.config.QueryProperties;
+import com.teste.cqrs_bank.read.view.AccountView;
+import com.teste.cqrs_bank.read.view.AccountViewRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Cache local (Caffeine) de {@link AccountView} por <code>userId</code>, na frente do Mongo.
+ *
+ * <ul>
+ *   <li>Limitado por <code>app.query.summary-cache.max-size</code> e expirado após
+ *       <code>app.query.summary-cache.ttl</code> desde a escrita.</li>
+ *   <li>O {@link ProjectionUpdater} avança a entrada em memória quando aplica um incremento sobre a
+ *       versão que está no cache, e a remove em qualquer outro caso (rebuild, falha, versão divergente).</li>
+ *   <li>Cada entrada guarda também o JSON final do resumo (<code>{"SaldoTotal", "Historico"}</code>),
+ *       serializado uma única vez — na carga ou no avanço feito pela projeção — com o mesmo
+ *       {@link ObjectMapper} que o controller usava, em ordem fixa de chaves, e o ETag do resumo (MD5 desses bytes):
+ *       corpo diferente sempre gera tag diferente, mesmo sem mudança de versão (rebuild na mesma versão, leitura
+ *       do MySQL), e o mesmo corpo gera a mesma tag em qualquer instância.</li>
+ *   <li>Usuários sem projeção não são cacheados; para eles o resumo vazio (<code>{"SaldoTotal":"0.00","Historico":[]}</code>)
+ *       é renderizado uma vez ({@link #empty()}), com a mesma ordem de chaves e ETag, e usado pelo GET e pelo SSE.</li>
+ * </ul>
+ *
+ * <p>Métricas: <code>cache.gets{cache=account_views,result=hit|miss}</code>, <code>cache.size</code>,
+ * <code>cache.evictions</code>.</p>
+ *
+ * @since 1.0
+ */
+@Component
+public class AccountViewCache {
+
+    private final AccountViewRepository repo;
+    private final ObjectMapper json;
+    private final Cache<String, Summary> cache;
+    private final Summary empty;
+
+    public AccountViewCache(AccountViewRepository repo, ObjectMapper json, QueryProperties props, MeterRegistry meters) {
+        this.repo = repo;
+        this.json = json;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(props.summaryCache().maxSize())
+                .expireAfterWrite(props.summaryCache().ttl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meters, cache, "account_views");
+        this.empty = render(AccountView.builder().saldoTotal("0.00").historico(List.of()).build());
+    }
+
+    /**
+     * Snapshot do usuário (cache ou uma leitura no Mongo); <code>null</code> se não houver projeção.
+     */
+    public AccountView get(String userId) {
+        var summary = summary(userId);
+        return summary == null ? null : summary.view();
+    }
+
+    /**
+     * Snapshot e JSON pronto do resumo; <code>null</code> se não houver projeção.
+     */
+    public Summary summary(String userId) {
+        return cache.get(userId, k -> repo.findByUserId(k).map(this::render).orElse(null));
+    }
+
+    /**
+     * Resumo de quem ainda não tem projeção (sem versão), já serializado.
+     */
+    public Summary empty() {
+        return empty;
+    }
+
+    /**
+     * Reflete no cache um incremento já gravado no Mongo: só avança se a entrada estiver exatamente
+     * em <code>fromVersion</code>; senão a remove.
+     *
+     * @param newestFirst itens novos do histórico, do mais recente para o mais antigo
+     */
+    void advance(String userId, long fromVersion, long toVersion, String saldoTotal,
+                 List<AccountView.HistoryItem> newestFirst) {
+        if (userId == null) return;
+        cache.asMap().computeIfPresent(userId, (k, cached) -> {
+            var view = cached.view();
+            if (view.getVersion() == null || view.getVersion() != fromVersion) return null;
+
+            var historico = new ArrayList<AccountView.HistoryItem>(ProjectionUpdater.HISTORY_LIMIT);
+            historico.addAll(newestFirst);
+            if (view.getHistorico() != null) historico.addAll(view.getHistorico());
+            return render(AccountView.builder()
+                    .id(view.getId())
+                    .userId(view.getUserId())
+                    .saldoTotal(saldoTotal)
+                    .historico(List.copyOf(historico.subList(0, Math.min(historico.size(), ProjectionUpdater.HISTORY_LIMIT))))
+                    .version(toVersion)
+                    .updatedAt(Instant.now())
+                    .build());
+        });
+    }
+
+    void evict(String userId) {
+        if (userId != null) cache.invalidate(userId);
+    }
+
+    /**
+     * Serializa o resumo de um snapshot, sem passar pelo cache (também usado para snapshots montados do MySQL).
+     */
+    Summary render(AccountView view) {
+        try {
+            var body = new LinkedHashMap<String, Object>(2);
+            body.put("SaldoTotal", view.getSaldoTotal());
+            body.put("Historico", view.getHistorico() == null ? List.of() : view.getHistorico());
+            return new Summary(view, json.writeValueAsBytes(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Falha ao serializar resumo da conta.", e);
+        }
+    }
+
+    /**
+     * Snapshot em cache, o corpo JSON correspondente (não modificar o array) e o ETag derivado desse corpo.
+     */
+    public record Summary(AccountView view, byte[] json, String etag) {
+
+        public Summary(AccountView view, byte[] json) {
+            this(view, json, DigestUtils.md5DigestAsHex(json));
+        }
+    }
+}
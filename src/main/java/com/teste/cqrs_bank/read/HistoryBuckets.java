@@ -0,0 +1,139 @@
+package com.teste.cqrs_bank.read;
+
+import com.teste.cqrs_bank.domain.transaction.TxType;
+import com.teste.cqrs_bank.read.view.HistoryBucket;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Operações de escrita nos buckets de {@link HistoryBucket}, compartilhadas pelo {@link ProjectionUpdater} e pelo
+ * {@link ProjectionRebuildJob}.
+ *
+ * <ul>
+ *   <li>{@link #append}: um <code>$push</code> por dia (em blocos de até {@link HistoryBucket#CAPACITY} itens) no bucket
+ *       com espaço; sem bucket com espaço, o upsert abre um novo. Item já gravado faz a operação falhar com chave
+ *       duplicada (11000), e o chamador reenvia só o que falta ({@link #existing}).</li>
+ *   <li>{@link #backfill}: usado pelo rebuild. Itens já gravados são <b>substituídos</b> no lugar (<code>itens.$</code>),
+ *       e só os que faltam são acrescentados.</li>
+ * </ul>
+ *
+ * @since 1.0
+ */
+final class HistoryBuckets {
+
+    private static final int LOOKUP_CHUNK = 1_000;
+
+    private HistoryBuckets() {
+    }
+
+    static HistoryBucket.Item item(String txId, TxType type, BigDecimal amount, LocalDateTime occurredAt) {
+        var ui = HistoryItems.of(type, amount, occurredAt);
+        return HistoryBucket.Item.builder()
+                .txId(txId)
+                .occurredAt(occurredAt)
+                .type(ui.getType())
+                .valor(ui.getValor())
+                .data(ui.getData())
+                .build();
+    }
+
+    /**
+     * Enfileira no <code>bulk</code> os <code>$push</code> dos itens da conta.
+     *
+     * @return número de operações enfileiradas
+     */
+    static int append(BulkOperations bulk, String accountId, List<HistoryBucket.Item> items) {
+        int ops = 0;
+        for (var day : byDay(items).entrySet()) {
+            var dayItems = day.getValue();
+            for (int from = 0; from < dayItems.size(); from += HistoryBucket.CAPACITY) {
+                var chunk = dayItems.subList(from, Math.min(from + HistoryBucket.CAPACITY, dayItems.size()));
+                bulk.upsert(appendQuery(accountId, day.getKey(), chunk), appendUpdate(chunk));
+                ops++;
+            }
+        }
+        return ops;
+    }
+
+    /**
+     * Enfileira a regravação dos itens: os já existentes (<code>existing</code>) são substituídos pelo formato atual,
+     * os demais são acrescentados.
+     *
+     * @return número de operações enfileiradas
+     */
+    static int backfill(BulkOperations bulk, String accountId, List<HistoryBucket.Item> items, Set<String> existing) {
+        var missing = new ArrayList<HistoryBucket.Item>(items.size());
+        int ops = 0;
+        for (var item : items) {
+            if (!existing.contains(item.getTxId())) {
+                missing.add(item);
+                continue;
+            }
+            bulk.updateOne(Query.query(Criteria.where("itens.txId").is(item.getTxId())),
+                    new Update().set("itens.$", item));
+            ops++;
+        }
+        return ops + append(bulk, accountId, missing);
+    }
+
+    /**
+     * <code>txId</code>s (entre os informados) já gravados em algum bucket, via índice <code>uq_history_tx</code>.
+     */
+    static Set<String> existing(MongoTemplate mongo, Collection<String> txIds) {
+        var ids = new ArrayList<>(txIds);
+        var found = new HashSet<String>();
+        for (int from = 0; from < ids.size(); from += LOOKUP_CHUNK) {
+            var chunk = ids.subList(from, Math.min(from + LOOKUP_CHUNK, ids.size()));
+            var aggregation = Aggregation.newAggregation(
+                    Aggregation.match(Criteria.where("itens.txId").in(chunk)),
+                    Aggregation.unwind("itens"),
+                    Aggregation.match(Criteria.where("itens.txId").in(chunk)),
+                    Aggregation.project().and("itens.txId").as("txId"));
+            for (var doc : mongo.aggregate(aggregation, HistoryBucket.class, Document.class)) {
+                found.add(doc.getString("txId"));
+            }
+        }
+        return found;
+    }
+
+    private static Query appendQuery(String accountId, String day, List<HistoryBucket.Item> chunk) {
+        return Query.query(Criteria.where("accountId").is(accountId)
+                .and("day").is(day)
+                .and("count").lte(HistoryBucket.CAPACITY - chunk.size())
+                .and("itens.txId").nin(chunk.stream().map(HistoryBucket.Item::getTxId).toList()));
+    }
+
+    private static Update appendUpdate(List<HistoryBucket.Item> chunk) {
+        var from = chunk.stream().map(HistoryBucket.Item::getOccurredAt).min(Comparator.naturalOrder()).orElseThrow();
+        var to = chunk.stream().map(HistoryBucket.Item::getOccurredAt).max(Comparator.naturalOrder()).orElseThrow();
+        var update = new Update()
+                .inc("count", chunk.size())
+                .min("from", from)
+                .max("to", to);
+        update.push("itens").each(chunk.toArray());
+        return update;
+    }
+
+    private static LinkedHashMap<String, List<HistoryBucket.Item>> byDay(List<HistoryBucket.Item> items) {
+        var byDay = new LinkedHashMap<String, List<HistoryBucket.Item>>();
+        for (var item : items) {
+            byDay.computeIfAbsent(item.getOccurredAt().toLocalDate().toString(), k -> new ArrayList<>()).add(item);
+        }
+        return byDay;
+    }
+}
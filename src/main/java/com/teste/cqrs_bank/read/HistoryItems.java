@@ -0,0 +1,38 @@
+package com.teste.cqrs_bank.read;
+
+import com.teste.cqrs_bank.domain.transaction.TxType;
+import com.teste.cqrs_bank.read.view.AccountView;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Formato de UI dos itens de histórico, compartilhado pela projeção e pelas consultas:
+ * <code>DEPOSIT → "deposito"</code>, <code>BILL_PAYMENT → "saque"</code>, valor "0.00"
+ * e data "dd-MM-yyyy HH:mm:ss" (UTC).
+ *
+ * @since 1.0
+ */
+public final class HistoryItems {
+
+    private static final DateTimeFormatter FMT = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss", new Locale("pt", "BR")).withZone(ZoneOffset.UTC);
+
+    private HistoryItems() {
+    }
+
+    public static AccountView.HistoryItem of(TxType type, BigDecimal amount, LocalDateTime occurredAt) {
+        String tipo = switch (type) {
+            case DEPOSIT -> "deposito";
+            case BILL_PAYMENT -> "saque";
+        };
+        return AccountView.HistoryItem.builder().type(tipo).valor(format(amount)).data(FMT.format(occurredAt.toInstant(ZoneOffset.UTC))).build();
+    }
+
+    public static String format(BigDecimal value) {
+        return value.setScale(2, RoundingMode.HALF_EVEN).toString();
+    }
+}
@@ -0,0 +1,27 @@
+package com.teste.cqrs_bank.read;
+
+import com.teste.cqrs_bank.read.view.AccountView;
+
+import java.util.List;
+
+/**
+ * Notificação (síncrona, in-process) publicada pelo {@link ProjectionUpdater} depois que uma
+ * escrita na projeção foi aplicada no Mongo.
+ *
+ * <p>Incremento: traz o novo <b>SaldoTotal</b> e só os itens novos do histórico (do mais recente para o
+ * mais antigo). Rebuild (<code>rebuilt = true</code>): o documento foi regravado inteiro; quem precisar
+ * do conteúdo deve reler o resumo.</p>
+ *
+ * @since 1.0
+ */
+public record ProjectionApplied(String accountId,
+                                String userId,
+                                long version,
+                                String saldoTotal,
+                                List<AccountView.HistoryItem> novos,
+                                boolean rebuilt) {
+
+    static ProjectionApplied rebuilt(String accountId, String userId, long version, String saldoTotal) {
+        return new ProjectionApplied(accountId, userId, version, saldoTotal, List.of(), true);
+    }
+}
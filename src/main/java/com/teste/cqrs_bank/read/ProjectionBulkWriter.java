@@ -0,0 +1,128 @@
+package com.teste.cqrs_bank.read;
+
+import com.teste.cqrs_bank.config.ProjectionProperties;
+import com.teste.cqrs_bank.write.events.TransactionEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Acumulador de escritas da projeção de uma partição do {@link ProjectionPipeline}.
+ *
+ * <ul>
+ *   <li>Junta os eventos pendentes por conta (uma operação por conta no bulk); cada evento que entra numa operação
+ *       já pendente conta em <code>projection.events.coalesced</code>.</li>
+ *   <li>Descarrega via {@link ProjectionUpdater#applyAll(java.util.Collection)} quando atinge
+ *       <code>maxOps</code> contas ou quando o pendente mais antigo passa de <code>flushInterval</code>.</li>
+ *   <li>Operações que falham no Mongo são reenviadas (só elas) até <code>maxRetries</code> vezes com
+ *       backoff; esgotadas as tentativas, a conta é entregue ao callback de rebuild.</li>
+ * </ul>
+ *
+ * <p>Não é thread-safe: cada partição usa a sua instância na própria virtual thread.</p>
+ *
+ * @since 1.0
+ */
+class ProjectionBulkWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(ProjectionBulkWriter.class);
+    private static final long RETRY_BACKOFF_MS = 50;
+
+    private final ProjectionUpdater updater;
+    private final Consumer<String> onGiveUp;
+    private final int maxOps;
+    private final long flushIntervalNanos;
+    private final int maxRetries;
+
+    private final Timer flushTimer;
+    private final DistributionSummary opsPerFlush;
+    private final Counter retries;
+    private final Counter coalesced;
+
+    private final Map<String, List<TransactionEvent>> pending = new LinkedHashMap<>();
+    private long oldestNanos;
+
+    ProjectionBulkWriter(ProjectionUpdater updater,
+                         ProjectionProperties.Bulk props,
+                         MeterRegistry meters,
+                         Consumer<String> onGiveUp) {
+        this.updater = updater;
+        this.onGiveUp = onGiveUp;
+        this.maxOps = props.maxOps();
+        this.flushIntervalNanos = props.flushInterval().toNanos();
+        this.maxRetries = props.maxRetries();
+        this.flushTimer = meters.timer("projection.bulk.flush");
+        this.opsPerFlush = meters.summary("projection.bulk.ops");
+        this.retries = meters.counter("projection.bulk.retries");
+        this.coalesced = meters.counter("projection.events.coalesced");
+    }
+
+    void add(TransactionEvent evt) {
+        if (pending.isEmpty()) oldestNanos = System.nanoTime();
+        var group = pending.computeIfAbsent(evt.accountId(), k -> new ArrayList<>());
+        if (!group.isEmpty()) coalesced.increment();
+        group.add(evt);
+    }
+
+    boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * Nanos até o flush por tempo (0 se já venceu).
+     */
+    long nanosUntilDue() {
+        return Math.max(0, oldestNanos + flushIntervalNanos - System.nanoTime());
+    }
+
+    boolean due() {
+        return !pending.isEmpty() && (pending.size() >= maxOps || nanosUntilDue() == 0);
+    }
+
+    /**
+     * Descarrega tudo que está pendente. Retorna o número de eventos enviados.
+     */
+    int flush() {
+        if (pending.isEmpty()) return 0;
+        var groups = new ArrayList<>(pending.values());
+        pending.clear();
+
+        opsPerFlush.record(groups.size());
+        int events = groups.stream().mapToInt(List::size).sum();
+        flushTimer.record(() -> write(groups));
+        return events;
+    }
+
+    private void write(List<List<TransactionEvent>> groups) {
+        List<List<TransactionEvent>> toSend = groups;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                toSend = updater.applyAll(toSend);
+            } catch (RuntimeException e) {
+                log.warn("falha no bulk da projeção ({} contas, tentativa {})", toSend.size(), attempt + 1, e);
+            }
+            if (toSend.isEmpty()) return;
+            if (attempt >= maxRetries) break;
+
+            retries.increment(toSend.size());
+            try {
+                Thread.sleep(RETRY_BACKOFF_MS * (1L << attempt) + ThreadLocalRandom.current().nextLong(RETRY_BACKOFF_MS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (var group : toSend) {
+            onGiveUp.accept(group.get(0).accountId());
+        }
+    }
+}
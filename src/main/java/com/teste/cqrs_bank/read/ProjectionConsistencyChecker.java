@@ -0,0 +1,259 @@
+package com.teste.cqrs_bank.read;
+
+import com.teste.cqrs_bank.config.ProjectionProperties;
+import com.teste.cqrs_bank.domain.account.AccountRepository;
+import com.teste.cqrs_bank.domain.transaction.TransactionRepository;
+import com.teste.cqrs_bank.read.view.AccountView;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verificador contínuo de divergência entre o Write Model e a projeção (<code>account_views</code>).
+ *
+ * <ul>
+ *   <li>Percorre as duas bases na mesma ordem de chave (<code>accounts.id</code> = <code>_id</code>, UUIDs em
+ *       minúsculas, então a ordem do MySQL e a do Mongo coincidem) em lotes de <code>chunk-size</code>:
+ *       merge de duas listas ordenadas, memória constante por lote.</li>
+ *   <li>Lê primeiro o MySQL (saldo, versão e as últimas {@link ProjectionUpdater#HISTORY_LIMIT} transações,
+ *       numa transação de leitura) e depois o Mongo. Com versões iguais compara o <b>SaldoTotal</b> e um hash do
+ *       <b>Historico</b> recente; projeção à frente é corrida com um evento recém-aplicado e é ignorada;
+ *       projeção atrás só conta como divergente se não for atualizada há mais de <code>stale-after</code>.</li>
+ *   <li>Conta divergente ou sem projeção vai para o rebuild individual do {@link ProjectionPipeline}. Divergência
+ *       na mesma versão pede rebuild com <code>overwrite</code>: a guarda de versão comum não regravaria o documento.</li>
+ *   <li>Limitado a <code>max-accounts-per-second</code>, numa única virtual thread, com pausa de
+ *       <code>pass-interval</code> entre varreduras completas.</li>
+ * </ul>
+ *
+ * <p>Ativo com <code>app.projection.consistency.enabled=true</code>. Métricas:
+ * <code>projection.consistency.checked</code>, <code>projection.consistency.mismatch{reason=balance|history|missing|stale}</code>,
+ * <code>projection.consistency.orphans</code> e <code>projection.consistency.passes</code>.</p>
+ *
+ * @since 1.0
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.projection.consistency", name = "enabled", havingValue = "true")
+public class ProjectionConsistencyChecker {
+
+    private static final Logger log = LoggerFactory.getLogger(ProjectionConsistencyChecker.class);
+
+    private final AccountRepository accountRepo;
+    private final TransactionRepository txRepo;
+    private final MongoTemplate mongo;
+    private final ProjectionPipeline pipeline;
+    private final TransactionTemplate readTx;
+    private final int chunkSize;
+    private final long nanosPerAccount;
+    private final long passIntervalMs;
+    private final long staleAfterMs;
+
+    private final Counter checked;
+    private final Counter balanceMismatch;
+    private final Counter historyMismatch;
+    private final Counter missing;
+    private final Counter stale;
+    private final Counter orphans;
+    private final Counter passes;
+
+    private Thread worker;
+    private volatile boolean running = true;
+
+    public ProjectionConsistencyChecker(AccountRepository accountRepo,
+                                        TransactionRepository txRepo,
+                                        MongoTemplate mongo,
+                                        ProjectionPipeline pipeline,
+                                        PlatformTransactionManager txManager,
+                                        ProjectionProperties props,
+                                        MeterRegistry meters) {
+        this.accountRepo = accountRepo;
+        this.txRepo = txRepo;
+        this.mongo = mongo;
+        this.pipeline = pipeline;
+        this.readTx = new TransactionTemplate(txManager);
+        this.readTx.setReadOnly(true);
+        this.readTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        var consistency = props.consistency();
+        this.chunkSize = consistency.chunkSize();
+        this.nanosPerAccount = 1_000_000_000L / consistency.maxAccountsPerSecond();
+        this.passIntervalMs = consistency.passInterval().toMillis();
+        this.staleAfterMs = consistency.staleAfter().toMillis();
+        this.checked = meters.counter("projection.consistency.checked");
+        this.balanceMismatch = meters.counter("projection.consistency.mismatch", "reason", "balance");
+        this.historyMismatch = meters.counter("projection.consistency.mismatch", "reason", "history");
+        this.missing = meters.counter("projection.consistency.mismatch", "reason", "missing");
+        this.stale = meters.counter("projection.consistency.mismatch", "reason", "stale");
+        this.orphans = meters.counter("projection.consistency.orphans");
+        this.passes = meters.counter("projection.consistency.passes");
+    }
+
+    @PostConstruct
+    void start() {
+        worker = Thread.ofVirtual().name("projection-consistency").start(this::run);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        if (worker == null) return;
+        worker.interrupt();
+        worker.join(5_000);
+    }
+
+    private void run() {
+        String after = "";
+        while (running) {
+            long start = System.nanoTime();
+            int accounts = 0;
+            try {
+                var result = checkChunk(after);
+                accounts = result.accounts();
+                after = result.next();
+                if (after == null) {
+                    passes.increment();
+                    after = "";
+                    Thread.sleep(passIntervalMs);
+                }
+            } catch (InterruptedException e) {
+                if (!running) return;
+            } catch (RuntimeException e) {
+                log.warn("falha na verificação de consistência da projeção a partir de '{}'", after, e);
+                accounts = chunkSize; // recua como se tivesse verificado um lote inteiro
+            }
+            try {
+                // ritmo: no máximo max-accounts-per-second
+                long waitNanos = Math.max(nanosPerAccount, (long) accounts * nanosPerAccount) - (System.nanoTime() - start);
+                if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                if (!running) return;
+            }
+        }
+    }
+
+    /**
+     * Verifica um lote de contas após <code>after</code> (exclusivo).
+     *
+     * @return contas verificadas e o cursor do próximo lote (<code>null</code> ao fim da varredura)
+     */
+    ChunkResult checkChunk(String after) {
+        var snapshot = readTx.execute(status -> {
+            var accounts = accountRepo.findBalancesAfter(after, Limit.of(chunkSize));
+            var ids = accounts.stream().map(AccountRepository.BalanceView::getId).toList();
+            return new Snapshot(accounts,
+                    ids.isEmpty() ? List.of() : txRepo.findRecentByAccountIds(ids, ProjectionUpdater.HISTORY_LIMIT));
+        });
+        var accounts = snapshot.accounts();
+        boolean last = accounts.size() < chunkSize;
+        String upTo = accounts.isEmpty() ? null : accounts.get(accounts.size() - 1).getId();
+
+        var criteria = Criteria.where("_id").gt(after);
+        if (!last) criteria = criteria.lte(upTo);
+        var query = Query.query(criteria).with(Sort.by("_id"));
+        query.fields().include("saldoTotal", "historico", "version", "updatedAt");
+        var views = mongo.find(query, AccountView.class);
+
+        var recent = new LinkedHashMap<String, List<TransactionRepository.RecentTransaction>>();
+        for (var tx : snapshot.transactions()) {
+            recent.computeIfAbsent(tx.getAccountId(), k -> new ArrayList<>()).add(tx);
+        }
+
+        // merge das duas listas ordenadas por id
+        Iterator<AccountView> it = views.iterator();
+        AccountView view = it.hasNext() ? it.next() : null;
+        long now = System.currentTimeMillis();
+        for (var acc : accounts) {
+            while (view != null && view.getId().compareTo(acc.getId()) < 0) {
+                orphans.increment();
+                view = it.hasNext() ? it.next() : null;
+            }
+            if (view == null || !view.getId().equals(acc.getId())) {
+                mismatch(acc.getId(), missing, false);
+            } else {
+                compare(acc, view, recent.getOrDefault(acc.getId(), List.of()), now);
+                view = it.hasNext() ? it.next() : null;
+            }
+            checked.increment();
+        }
+        while (view != null) {
+            orphans.increment();
+            view = it.hasNext() ? it.next() : null;
+        }
+        return new ChunkResult(accounts.size(), last ? null : upTo);
+    }
+
+    private void compare(AccountRepository.BalanceView acc, AccountView view,
+                         List<TransactionRepository.RecentTransaction> recent, long nowMs) {
+        long expected = acc.getEventVersion() == null ? 0L : acc.getEventVersion();
+        long actual = view.getVersion() == null ? -1L : view.getVersion();
+        if (actual > expected) return; // evento aplicado depois da leitura do MySQL
+        if (actual < expected) {
+            Instant updatedAt = view.getUpdatedAt();
+            if (updatedAt == null || nowMs - updatedAt.toEpochMilli() > staleAfterMs) mismatch(acc.getId(), stale, false);
+            return;
+        }
+        if (!HistoryItems.format(acc.getBalance()).equals(view.getSaldoTotal())) {
+            mismatch(acc.getId(), balanceMismatch, true);
+            return;
+        }
+        var expectedItems = recent.stream()
+                .map(tx -> HistoryItems.of(tx.getType(), tx.getAmount(), tx.getOccurredAt()))
+                .toList();
+        if (historyHash(expectedItems) != historyHash(view.getHistorico() == null ? List.of() : view.getHistorico())) {
+            mismatch(acc.getId(), historyMismatch, true);
+        }
+    }
+
+    /**
+     * @param overwrite divergência na mesma versão: o rebuild precisa regravar o documento mesmo sem versão nova
+     */
+    private void mismatch(String accountId, Counter reason, boolean overwrite) {
+        reason.increment();
+        log.debug("projeção divergente da conta {} → rebuild", accountId);
+        pipeline.requestRebuild(accountId, overwrite);
+    }
+
+    /**
+     * FNV-1a de 64 bits sobre a sequência <code>type|valor|data</code> dos itens (ordem importa).
+     */
+    static long historyHash(List<AccountView.HistoryItem> items) {
+        long h = 0xcbf29ce484222325L;
+        for (var item : items) {
+            for (String field : new String[]{item.getType(), item.getValor(), item.getData()}) {
+                for (byte b : String.valueOf(field).getBytes(StandardCharsets.UTF_8)) {
+                    h ^= b & 0xff;
+                    h *= 0x100000001b3L;
+                }
+                h ^= '|';
+                h *= 0x100000001b3L;
+            }
+        }
+        return h;
+    }
+
+    record ChunkResult(int accounts, String next) {
+    }
+
+    private record Snapshot(List<AccountRepository.BalanceView> accounts,
+                            List<TransactionRepository.RecentTransaction> transactions) {
+    }
+}
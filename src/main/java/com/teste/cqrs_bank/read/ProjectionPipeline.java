@@ -0,0 +1,320 @@
+package com.teste.cqrs_bank.read;
+
+import com.teste.cqrs_bank.config.ProjectionProperties;
+import com.teste.cqrs_bank.write.events.TransactionEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipeline assíncrono da projeção: desacopla a thread do comando da escrita no Mongo.
+ *
+ * <ul>
+ *   <li>Recebe {@link com.teste.cqrs_bank.write.events.TransactionEvent} após o commit e enfileira
+ *       numa partição escolhida pelo <code>accountId</code> (ordem preservada por conta).</li>
+ *   <li>Cada partição é uma fila limitada drenada por uma única virtual thread que chama o
+ *       {@link com.teste.cqrs_bank.read.ProjectionUpdater}.</li>
+ *   <li>Coalescência: ao receber um evento, a partição espera até <code>coalesceWindow</code> por outros
+ *       e aplica os eventos de cada conta numa única escrita (contas "quentes" viram uma escrita por janela).</li>
+ *   <li>Escrita em lote: as contas pendentes da partição são descarregadas num único
+ *       <code>bulkWrite</code> por {@link ProjectionBulkWriter} (por tamanho ou por tempo, com retry por operação).</li>
+ *   <li>Fila cheia: aplica a política de {@link com.teste.cqrs_bank.config.ProjectionProperties.Backpressure}.
+ *       Todo evento aceito passa pela partição da conta, inclusive em <code>CALLER_RUNS</code> (o chamador espera,
+ *       por no máximo {@value #CALLER_RUNS_MAX_WAIT_MS} ms, a partição aplicá-lo; esgotado o prazo a conta é marcada
+ *       para rebuild); <code>projection.events.blocked</code> conta quem esperou por espaço e
+ *       <code>projection.events.rejected</code> só os eventos realmente descartados para rebuild.</li>
+ *   <li>No shutdown, cada partição aplica o que ainda está na fila e os rebuilds pendentes antes de sair; contas que
+ *       mesmo assim ficarem sem projeção são logadas em WARN (para rebuild manual).</li>
+ *   <li>Métricas: <code>projection.queue.depth</code>, <code>projection.events.*</code>,
+ *       <code>projection.batch.size</code>, <code>projection.bulk.*</code> e <code>projection.apply</code>.</li>
+ * </ul>
+ *
+ * @since 1.0
+ */
+@Component
+public class ProjectionPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(ProjectionPipeline.class);
+    private static final long IDLE_POLL_MS = 100;
+    /** Espera máxima do chamador em CALLER_RUNS (vaga na fila + flush); depois a conta vai para rebuild. */
+    private static final long CALLER_RUNS_MAX_WAIT_MS = 1_000;
+
+    private final ProjectionUpdater updater;
+    private final ProjectionProperties.Backpressure backpressure;
+    private final long coalesceWindowNanos;
+    private final int coalesceMaxEvents;
+    private final List<Partition> partitions;
+
+    private final Counter submitted;
+    private final Counter applied;
+    private final Counter failed;
+    private final Counter blocked;
+    private final Counter rejected;
+    private final DistributionSummary batchSize;
+    private final Timer applyTimer;
+
+    private volatile boolean running = true;
+
+    public ProjectionPipeline(ProjectionUpdater updater, ProjectionProperties props, MeterRegistry meters) {
+        this.updater = updater;
+        this.backpressure = props.backpressure();
+        this.coalesceWindowNanos = props.coalesceWindow().toNanos();
+        this.coalesceMaxEvents = props.coalesceMaxEvents();
+        this.submitted = meters.counter("projection.events.submitted");
+        this.applied = meters.counter("projection.events.applied");
+        this.failed = meters.counter("projection.events.failed");
+        this.blocked = meters.counter("projection.events.blocked", "policy", backpressure.name().toLowerCase());
+        this.rejected = meters.counter("projection.events.rejected", "policy", backpressure.name().toLowerCase());
+        this.batchSize = meters.summary("projection.batch.size");
+        this.applyTimer = meters.timer("projection.apply");
+
+        this.partitions = new ArrayList<>(props.partitions());
+        for (int i = 0; i < props.partitions(); i++) {
+            var p = new Partition(i, props.queueCapacity(), props.bulk(), meters);
+            Gauge.builder("projection.queue.depth", p.queue, BlockingQueue::size)
+                    .tag("partition", String.valueOf(i))
+                    .register(meters);
+            partitions.add(p);
+            p.worker = Thread.ofVirtual().name("projection-" + i).start(p::run);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void on(TransactionEvent evt) {
+        submit(evt);
+    }
+
+    /**
+     * Enfileira o evento na partição da conta aplicando a política de backpressure.
+     */
+    public void submit(TransactionEvent evt) {
+        submitted.increment();
+        var p = partitionOf(evt.accountId());
+        if (p.queue.offer(evt)) return;
+
+        switch (backpressure) {
+            case BLOCK -> put(p, evt);
+            case DROP_TO_REBUILD -> drop(p, evt);
+            case CALLER_RUNS -> handOff(p, evt);
+        }
+    }
+
+    /**
+     * Agenda rebuild completo da conta na partição dela (sem bloquear o chamador).
+     */
+    public void requestRebuild(String accountId) {
+        requestRebuild(accountId, false);
+    }
+
+    /**
+     * Como {@link #requestRebuild(String)}; com <code>overwrite</code> o documento é regravado mesmo na
+     * versão atual (ver {@link ProjectionUpdater#rebuild(String, boolean)}).
+     */
+    public void requestRebuild(String accountId, boolean overwrite) {
+        var p = partitionOf(accountId);
+        if (overwrite) p.overwrite.add(accountId);
+        p.dirty.add(accountId);
+    }
+
+    /**
+     * Total de eventos aguardando nas filas.
+     */
+    public int queued() {
+        return partitions.stream().mapToInt(p -> p.queue.size()).sum();
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        for (var p : partitions) p.worker.interrupt();
+        for (var p : partitions) p.worker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private Partition partitionOf(String accountId) {
+        return partitions.get(Math.floorMod(accountId.hashCode(), partitions.size()));
+    }
+
+    /**
+     * Espera espaço na fila da partição; interrompido, descarta o evento para rebuild.
+     */
+    private boolean put(Partition p, TransactionEvent evt) {
+        blocked.increment();
+        try {
+            p.queue.put(evt);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drop(p, evt);
+            return false;
+        }
+    }
+
+    /**
+     * Hand-off síncrono limitado: a partição aplica o evento (mantendo a ordem da conta) e o chamador espera o
+     * flush por até {@link #CALLER_RUNS_MAX_WAIT_MS}. Sem vaga no prazo o evento é descartado para rebuild; sem
+     * flush no prazo o evento segue na fila e a conta também é marcada para rebuild (o evento chega depois como
+     * antigo e é ignorado).
+     */
+    private void handOff(Partition p, TransactionEvent evt) {
+        blocked.increment();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CALLER_RUNS_MAX_WAIT_MS);
+        var done = new CountDownLatch(1);
+        p.handoffs.put(evt, done);
+        boolean queued = false;
+        try {
+            queued = p.queue.offer(evt, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (queued && done.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        p.handoffs.remove(evt);
+        if (queued) p.dirty.add(evt.accountId());
+        else drop(p, evt);
+    }
+
+    private void drop(Partition p, TransactionEvent evt) {
+        rejected.increment();
+        p.dirty.add(evt.accountId());
+    }
+
+    private void rebuild(String accountId, boolean overwrite) {
+        try {
+            applyTimer.record(() -> updater.rebuild(accountId, overwrite));
+        } catch (RuntimeException e) {
+            failed.increment();
+            log.error("falha ao reconstruir projeção da conta {}", accountId, e);
+        }
+    }
+
+    private final class Partition {
+        final int index;
+        final BlockingQueue<TransactionEvent> queue;
+        final Set<String> dirty = ConcurrentHashMap.newKeySet();
+        final Set<String> overwrite = ConcurrentHashMap.newKeySet();
+        /** Chamadores de CALLER_RUNS aguardando o evento (por identidade) ser descarregado. */
+        final Map<TransactionEvent, CountDownLatch> handoffs = Collections.synchronizedMap(new IdentityHashMap<>());
+        final List<CountDownLatch> staged = new ArrayList<>();
+        final ProjectionBulkWriter writer;
+        Thread worker;
+
+        Partition(int index, int capacity, ProjectionProperties.Bulk bulk, MeterRegistry meters) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.writer = new ProjectionBulkWriter(updater, bulk, meters, dirty::add);
+        }
+
+        void run() {
+            while (running) {
+                try {
+                    long wait = writer.isEmpty() ? TimeUnit.MILLISECONDS.toNanos(IDLE_POLL_MS) : writer.nanosUntilDue();
+                    var evt = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (evt != null) stage(collect(evt));
+                } catch (InterruptedException e) {
+                    if (!running) break;
+                }
+                if (writer.due()) flush();
+                drainDirty();
+            }
+            flush();
+            finish();
+            synchronized (handoffs) {
+                handoffs.values().forEach(CountDownLatch::countDown);
+                handoffs.clear();
+            }
+        }
+
+        /**
+         * Shutdown: aplica os eventos já commitados que ficaram na fila e os rebuilds pendentes; o que ainda sobrar
+         * (eventos que chegaram depois) vai para o log em WARN.
+         */
+        void finish() {
+            var rest = new ArrayList<TransactionEvent>();
+            queue.drainTo(rest);
+            if (!rest.isEmpty()) {
+                stage(rest);
+                flush();
+            }
+            drainDirty();
+
+            var lost = new TreeSet<String>(dirty);
+            queue.forEach(evt -> lost.add(evt.accountId()));
+            if (!lost.isEmpty()) {
+                log.warn("partição {} de projeção encerrada sem projetar as contas {}; rode o rebuild delas", index, lost);
+            }
+        }
+
+        /**
+         * Junta ao primeiro evento os que chegarem dentro da janela de coalescência.
+         */
+        List<TransactionEvent> collect(TransactionEvent first) throws InterruptedException {
+            var batch = new ArrayList<TransactionEvent>();
+            batch.add(first);
+            long deadline = System.nanoTime() + coalesceWindowNanos;
+            while (batch.size() < coalesceMaxEvents) {
+                queue.drainTo(batch, coalesceMaxEvents - batch.size());
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || batch.size() >= coalesceMaxEvents) break;
+                var next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) break;
+                batch.add(next);
+            }
+            return batch;
+        }
+
+        /**
+         * Acumula o lote no writer; eventos da mesma conta viram uma única operação no bulk.
+         */
+        void stage(List<TransactionEvent> batch) {
+            batchSize.record(batch.size());
+            for (var evt : batch) {
+                writer.add(evt);
+                if (handoffs.isEmpty()) continue;
+                var done = handoffs.remove(evt);
+                if (done != null) staged.add(done);
+            }
+        }
+
+        void flush() {
+            try {
+                int events = writer.flush();
+                applied.increment(events);
+            } catch (RuntimeException e) {
+                failed.increment();
+                log.error("falha ao descarregar lote da partição {} de projeção", index, e);
+            } finally {
+                staged.forEach(CountDownLatch::countDown);
+                staged.clear();
+            }
+        }
+
+        void drainDirty() {
+            if (dirty.isEmpty()) return;
+            for (var it = dirty.iterator(); it.hasNext(); ) {
+                var accountId = it.next();
+                it.remove();
+                rebuild(accountId, overwrite.remove(accountId));
+            }
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.teste.cqrs_bank.read;
+
+import com.teste.cqrs_bank.config.ProjectionProperties;
+import com.teste.cqrs_bank.domain.account.AccountRepository;
+import com.teste.cqrs_bank.domain.transaction.TransactionRepository;
+import com.teste.cqrs_bank.read.view.AccountView;
+import com.teste.cqrs_bank.read.view.HistoryBucket;
+import com.teste.cqrs_bank.read.view.RebuildCheckpoint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reconstrução completa do Read Model (<code>account_views</code> e, se ativo, <code>account_history</code>)
+ * a partir do MySQL, disparada pelo administrador.
+ *
+ * <ul>
+ *   <li>Varre <code>accounts</code> por keyset na chave primária em lotes de <code>app.projection.rebuild.chunk-size</code>;
+ *       até <code>parallelism</code> lotes são processados ao mesmo tempo, cada um numa virtual thread.</li>
+ *   <li>Cada lote lê saldo/versão das contas e as últimas {@link ProjectionUpdater#HISTORY_LIMIT} transações de todas
+ *       elas (uma consulta com <code>row_number()</code>) na mesma transação de leitura, e grava tudo com um
+ *       <code>bulkWrite</code> não ordenado, com o mesmo documento de {@link ProjectionUpdater#rebuild(String)}.
+ *       Regrava contas na mesma versão (corrige documentos divergentes), mas nunca uma conta que os eventos já
+ *       levaram adiante. Os itens já presentes em <code>account_history</code> são substituídos no lugar.</li>
+ *   <li>Só as contas efetivamente regravadas têm o cache invalidado, recebem {@link ProjectionApplied} e entram
+ *       em <code>projection.rebuild.accounts</code>.</li>
+ *   <li>Contas cuja operação falhar no Mongo vão para o rebuild individual do {@link ProjectionPipeline}.</li>
+ *   <li>Progresso em {@link RebuildCheckpoint} (Mongo) a cada lote concluído; <code>start(true)</code> retoma do
+ *       último lote contíguo gravado. Erro de leitura/escrita de um lote inteiro interrompe o job (estado
+ *       <code>FAILED</code>), que pode ser retomado.</li>
+ *   <li><code>maxAccountsPerSecond</code> limita o ritmo de despacho dos lotes para não saturar MySQL/Mongo.</li>
+ * </ul>
+ *
+ * <p>Um job por instância. Métricas: <code>projection.rebuild.accounts</code>,
+ * <code>projection.rebuild.failed</code> e <code>projection.rebuild.chunk</code>.</p>
+ *
+ * @since 1.0
+ */
+@Component
+public class ProjectionRebuildJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ProjectionRebuildJob.class);
+    static final String JOB_ID = "account_views";
+
+    private final AccountRepository accountRepo;
+    private final TransactionRepository txRepo;
+    private final MongoTemplate mongo;
+    private final AccountViewCache views;
+    private final ApplicationEventPublisher publisher;
+    private final ProjectionPipeline pipeline;
+    private final TransactionTemplate readTx;
+    private final boolean historyBuckets;
+    private final int chunkSize;
+    private final int parallelism;
+    private final int maxAccountsPerSecond;
+
+    private final Counter accounts;
+    private final Counter failures;
+    private final Timer chunkTimer;
+
+    private RebuildCheckpoint checkpoint;
+    private Thread worker;
+    private volatile boolean cancelled;
+    private volatile RuntimeException chunkError;
+
+    public ProjectionRebuildJob(AccountRepository accountRepo,
+                                TransactionRepository txRepo,
+                                MongoTemplate mongo,
+                                AccountViewCache views,
+                                ApplicationEventPublisher publisher,
+                                ProjectionPipeline pipeline,
+                                PlatformTransactionManager txManager,
+                                ProjectionProperties props,
+                                MeterRegistry meters) {
+        this.accountRepo = accountRepo;
+        this.txRepo = txRepo;
+        this.mongo = mongo;
+        this.views = views;
+        this.publisher = publisher;
+        this.pipeline = pipeline;
+        this.readTx = new TransactionTemplate(txManager);
+        this.readTx.setReadOnly(true);
+        this.readTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.historyBuckets = props.historyBuckets();
+        this.chunkSize = props.rebuild().chunkSize();
+        this.parallelism = props.rebuild().parallelism();
+        this.maxAccountsPerSecond = props.rebuild().maxAccountsPerSecond();
+        this.accounts = meters.counter("projection.rebuild.accounts");
+        this.failures = meters.counter("projection.rebuild.failed");
+        this.chunkTimer = meters.timer("projection.rebuild.chunk");
+    }
+
+    /**
+     * Inicia o job em segundo plano.
+     *
+     * @param resume continua do checkpoint de um job anterior não concluído; senão começa do zero
+     * @throws IllegalStateException se já houver um job rodando nesta instância
+     */
+    public synchronized RebuildCheckpoint start(boolean resume) {
+        if (worker != null && worker.isAlive()) throw new IllegalStateException("Rebuild já em andamento.");
+
+        var previous = mongo.findById(JOB_ID, RebuildCheckpoint.class);
+        boolean resuming = resume && previous != null && previous.getState() != RebuildCheckpoint.State.COMPLETED;
+        var now = Instant.now();
+        checkpoint = RebuildCheckpoint.builder()
+                .id(JOB_ID)
+                .state(RebuildCheckpoint.State.RUNNING)
+                .lastAccountId(resuming ? previous.getLastAccountId() : "")
+                .processed(resuming ? previous.getProcessed() : 0)
+                .failed(resuming ? previous.getFailed() : 0)
+                .startedAt(now)
+                .updatedAt(now)
+                .build();
+        mongo.save(checkpoint);
+
+        cancelled = false;
+        String from = checkpoint.getLastAccountId();
+        worker = Thread.ofVirtual().name("projection-rebuild").start(() -> run(from));
+        return checkpoint;
+    }
+
+    /**
+     * Pede a interrupção do job; os lotes em andamento terminam e o checkpoint fica no último lote contíguo.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Progresso do job atual desta instância ou, se não houver, o último gravado no Mongo.
+     */
+    public synchronized RebuildCheckpoint status() {
+        return checkpoint != null ? checkpoint : mongo.findById(JOB_ID, RebuildCheckpoint.class);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        Thread w;
+        synchronized (this) {
+            w = worker;
+        }
+        if (w == null) return;
+        cancel();
+        w.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    private void run(String from) {
+        var permits = new Semaphore(parallelism);
+        var inFlight = new ArrayDeque<Chunk>();
+        chunkError = null;
+        long startNanos = System.nanoTime();
+        long dispatched = 0;
+        String after = from;
+        String error = null;
+
+        try {
+            while (!cancelled) {
+                var ids = accountRepo.findIdsAfter(after, Limit.of(chunkSize));
+                if (ids.isEmpty()) break;
+
+                throttle(startNanos, dispatched);
+                permits.acquire();
+                var chunk = new Chunk(ids);
+                synchronized (inFlight) {
+                    inFlight.add(chunk);
+                }
+                Thread.ofVirtual().name("projection-rebuild-chunk").start(() -> {
+                    try {
+                        chunk.failed = chunkTimer.record(() -> process(chunk.ids));
+                    } catch (RuntimeException e) {
+                        chunk.error = e;
+                        if (chunkError == null) chunkError = e;
+                        cancelled = true;
+                    } finally {
+                        complete(inFlight, chunk, startNanos);
+                        permits.release();
+                    }
+                });
+                dispatched += ids.size();
+                after = ids.get(ids.size() - 1);
+            }
+            permits.acquire(parallelism);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "Interrompido.";
+        } catch (RuntimeException e) {
+            log.error("falha ao varrer contas para o rebuild da projeção", e);
+            error = e.toString();
+        }
+
+        synchronized (this) {
+            if (error == null && chunkError != null) error = chunkError.toString();
+            checkpoint.setState(error != null ? RebuildCheckpoint.State.FAILED
+                    : cancelled ? RebuildCheckpoint.State.CANCELLED
+                    : RebuildCheckpoint.State.COMPLETED);
+            checkpoint.setError(error);
+            checkpoint.setUpdatedAt(Instant.now());
+            mongo.save(checkpoint);
+        }
+        log.info("rebuild da projeção terminou: {} ({} contas, {} falhas)",
+                checkpoint.getState(), checkpoint.getProcessed(), checkpoint.getFailed());
+    }
+
+    /**
+     * Marca o lote como concluído e avança o checkpoint sobre o prefixo contíguo de lotes concluídos sem erro.
+     */
+    private void complete(ArrayDeque<Chunk> inFlight, Chunk chunk, long startNanos) {
+        if (chunk.error != null) {
+            log.error("falha no lote do rebuild iniciado em {}; job será interrompido", chunk.ids.get(0), chunk.error);
+        }
+        synchronized (inFlight) {
+            chunk.done = true;
+            boolean advanced = false;
+            synchronized (this) {
+                while (!inFlight.isEmpty() && inFlight.peek().done && inFlight.peek().error == null) {
+                    var head = inFlight.poll();
+                    checkpoint.setLastAccountId(head.ids.get(head.ids.size() - 1));
+                    checkpoint.setProcessed(checkpoint.getProcessed() + head.ids.size());
+                    checkpoint.setFailed(checkpoint.getFailed() + head.failed);
+                    advanced = true;
+                }
+                if (!advanced) return;
+                double seconds = Math.max(1e-3, (System.nanoTime() - startNanos) / 1e9);
+                checkpoint.setAccountsPerSecond(checkpoint.getProcessed() / seconds);
+                checkpoint.setUpdatedAt(Instant.now());
+                mongo.save(checkpoint);
+            }
+        }
+    }
+
+    /**
+     * Regrava as contas do lote. Retorna quantas foram delegadas ao rebuild individual por falha no Mongo.
+     */
+    private int process(List<String> ids) {
+        var snapshot = readTx.execute(status -> new Snapshot(
+                accountRepo.findBalancesByIdIn(ids),
+                txRepo.findRecentByAccountIds(ids, ProjectionUpdater.HISTORY_LIMIT)));
+
+        var recent = new LinkedHashMap<String, List<TransactionRepository.RecentTransaction>>();
+        for (var tx : snapshot.transactions()) {
+            recent.computeIfAbsent(tx.getAccountId(), k -> new ArrayList<>()).add(tx);
+        }
+
+        var failed = new HashSet<String>();
+        if (historyBuckets && !recent.isEmpty()) {
+            var existing = HistoryBuckets.existing(mongo, snapshot.transactions().stream()
+                    .map(TransactionRepository.RecentTransaction::getId)
+                    .toList());
+            var bulk = mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, HistoryBucket.class);
+            var owner = new ArrayList<String>(); // índice da operação no bulk → conta
+            recent.forEach((accountId, txs) -> {
+                var items = txs.stream()
+                        .map(tx -> HistoryBuckets.item(tx.getId(), tx.getType(), tx.getAmount(), tx.getOccurredAt()))
+                        .toList();
+                int ops = HistoryBuckets.backfill(bulk, accountId, items, existing);
+                for (int i = 0; i < ops; i++) owner.add(accountId);
+            });
+            try {
+                bulk.execute();
+            } catch (BulkOperationException e) {
+                for (var err : e.getErrors()) failed.add(owner.get(err.getIndex()));
+            }
+        }
+
+        var accountsInBulk = new ArrayList<AccountRepository.BalanceView>(snapshot.accounts().size());
+        var bulk = mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, AccountView.class);
+        for (var acc : snapshot.accounts()) {
+            long version = acc.getEventVersion() == null ? 0L : acc.getEventVersion();
+            var itens = recent.getOrDefault(acc.getId(), List.of()).stream()
+                    .map(tx -> HistoryItems.of(tx.getType(), tx.getAmount(), tx.getOccurredAt()))
+                    .toList();
+            bulk.upsert(ProjectionUpdater.snapshotGuard(acc.getId(), version, true),
+                    ProjectionUpdater.snapshotUpdate(acc.getUserId(), acc.getBalance(), version, itens));
+            accountsInBulk.add(acc);
+        }
+        var skipped = new HashSet<String>();
+        if (!accountsInBulk.isEmpty()) {
+            try {
+                bulk.execute();
+            } catch (BulkOperationException e) {
+                for (var err : e.getErrors()) {
+                    var accountId = accountsInBulk.get(err.getIndex()).getId();
+                    // 11000: o upsert não casou porque os eventos já levaram o documento a uma versão mais nova
+                    (err.getCode() == 11000 ? skipped : failed).add(accountId);
+                }
+            }
+        }
+
+        int written = 0;
+        for (var acc : accountsInBulk) {
+            if (failed.contains(acc.getId()) || skipped.contains(acc.getId())) continue;
+            long version = acc.getEventVersion() == null ? 0L : acc.getEventVersion();
+            views.evict(acc.getUserId());
+            publisher.publishEvent(ProjectionApplied.rebuilt(acc.getId(), acc.getUserId(), version,
+                    HistoryItems.format(acc.getBalance())));
+            written++;
+        }
+        failed.forEach(pipeline::requestRebuild);
+
+        accounts.increment(written);
+        failures.increment(failed.size());
+        return failed.size();
+    }
+
+    private void throttle(long startNanos, long dispatched) throws InterruptedException {
+        if (maxAccountsPerSecond <= 0) return;
+        long dueNanos = startNanos + dispatched * 1_000_000_000L / maxAccountsPerSecond;
+        long waitNanos = dueNanos - System.nanoTime();
+        if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+
+    private record Snapshot(List<AccountRepository.BalanceView> accounts,
+                            List<TransactionRepository.RecentTransaction> transactions) {
+    }
+
+    private static final class Chunk {
+        final List<String> ids;
+        volatile boolean done;
+        volatile int failed;
+        volatile RuntimeException error;
+
+        Chunk(List<String> ids) {
+            this.ids = ids;
+        }
+    }
+}
@@ -1,65 +1,438 @@
 package com.teste.cqrs_bank.read;
 
+import com.teste.cqrs_bank.config.ProjectionProperties;
 import com.teste.cqrs_bank.domain.account.AccountRepository;
 import com.teste.cqrs_bank.domain.transaction.Transaction;
 import com.teste.cqrs_bank.domain.transaction.TransactionRepository;
+import com.teste.cqrs_bank.domain.transaction.TxType;
 import com.teste.cqrs_bank.read.view.AccountView;
-import com.teste.cqrs_bank.read.view.AccountViewRepository;
+import com.teste.cqrs_bank.read.view.HistoryBucket;
 import com.teste.cqrs_bank.write.events.TransactionEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.event.TransactionPhase;
-import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.RoundingMode;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
-import java.util.Locale;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * Atualiza a projeção (Mongo) a partir dos eventos do Write Model.
  *
  * <ul>
- *   <li>Carrega a Account e as últimas transações; recalcula <b>SaldoTotal</b> como string.</li>
+ *   <li><b>Incremental</b> (padrão): aplica as transações do evento com um único update atômico
+ *       (<code>$push</code> + <code>$position: 0</code> + <code>$slice</code> no <b>Historico</b> e
+ *       <code>$set</code> do <b>SaldoTotal</b>/<code>version</code>), sem reler o MySQL. O update só casa
+ *       se o documento estiver exatamente na versão anterior à do evento.</li>
+ *   <li><b>Idempotência</b>: evento com versão já aplicada é descartado sem escrita.</li>
+ *   <li><b>Rebuild</b>: quando o evento não traz payload, há lacuna de versão ou a projeção ainda
+ *       não existe, carrega a Account e as últimas transações e regrava o documento inteiro
+ *       (nunca sobrescreve um documento com versão mais nova). Com <code>overwrite</code> regrava também
+ *       na mesma versão, para corrigir conteúdo divergente.</li>
+ *   <li><b>Em lote</b>: {@link #applyAll(java.util.Collection)} envia os updates de várias contas num
+ *       único <code>bulkWrite</code> não ordenado (usado pelo pipeline e pelo relay do outbox).</li>
  *   <li>Monta <b>Historico</b> do mais recente para o mais antigo, convertendo:
  *       <code>DEPOSIT → "deposito"</code> e <code>BILL_PAYMENT → "saque"</code>.</li>
  *   <li>Formata <b>valor</b> como "0.00" e <b>data</b> como "dd-MM-yyyy HH:mm:ss".</li>
- *   <li>Atualiza/salva o documento <code>AccountView</code>.</li>
+ *   <li><b>Histórico completo</b> (<code>app.projection.history-buckets</code>): antes de avançar o
+ *       {@link AccountView}, acrescenta os lançamentos nos buckets de
+ *       {@link com.teste.cqrs_bank.read.view.HistoryBucket} (limitados por quantidade de itens, sem duplicar
+ *       <code>txId</code>); o documento do resumo mantém só a janela de {@link #HISTORY_LIMIT} itens.</li>
+ *   <li>Mantém o {@link AccountViewCache} coerente: incrementos gravados avançam a entrada em memória;
+ *       rebuilds, falhas e versões divergentes a removem.</li>
+ *   <li>A cada escrita aplicada publica {@link ProjectionApplied} (ex.: push via SSE).</li>
  * </ul>
  *
- * <p>Dispara via {@link org.springframework.context.event.EventListener}
- * e/ou {@link org.springframework.transaction.event.TransactionalEventListener}
- * em resposta a {@link com.teste.cqrs_bank.write.events.TransactionEvent}.</p>
+ * <p>É chamado pelas partições do {@link com.teste.cqrs_bank.read.ProjectionPipeline}, que recebe
+ * {@link com.teste.cqrs_bank.write.events.TransactionEvent} após o commit, fora da thread do comando.</p>
  *
  * @since 1.0
  */
 @Component
 public class ProjectionUpdater {
 
-    private static final DateTimeFormatter FMT = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss", new Locale("pt", "BR")).withZone(ZoneOffset.UTC);
+    static final int HISTORY_LIMIT = 100;
 
     private final AccountRepository accountRepo;
     private final TransactionRepository txRepo;
-    private final AccountViewRepository viewRepo;
+    private final MongoTemplate mongo;
+    private final AccountViewCache views;
+    private final ApplicationEventPublisher publisher;
+    private final TransactionTemplate readTx;
+    private final boolean historyBuckets;
 
-    public ProjectionUpdater(AccountRepository accountRepo, TransactionRepository txRepo, AccountViewRepository viewRepo) {
+    public ProjectionUpdater(AccountRepository accountRepo,
+                             TransactionRepository txRepo,
+                             MongoTemplate mongo,
+                             AccountViewCache views,
+                             ApplicationEventPublisher publisher,
+                             PlatformTransactionManager txManager,
+                             ProjectionProperties props) {
         this.accountRepo = accountRepo;
         this.txRepo = txRepo;
-        this.viewRepo = viewRepo;
+        this.mongo = mongo;
+        this.views = views;
+        this.publisher = publisher;
+        // saldo/versão e últimas transações lidos no mesmo snapshot (um commit entre as leituras duplicaria itens)
+        this.readTx = new TransactionTemplate(txManager);
+        this.readTx.setReadOnly(true);
+        this.readTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.historyBuckets = props.historyBuckets();
     }
 
-    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
     public void on(TransactionEvent evt) {
-        var acc = accountRepo.findById(evt.accountId()).orElse(null);
-        if (acc == null) return;
+        apply(List.of(evt));
+    }
+
+    /**
+     * Aplica um lote de eventos <b>da mesma conta</b> com uma única escrita no Mongo
+     * (coalescência). Se algum evento pedir rebuild, ou as versões tiverem lacuna, reconstrói uma vez.
+     */
+    public void apply(List<TransactionEvent> events) {
+        if (events.isEmpty()) return;
+        String accountId = events.get(0).accountId();
+
+        var pending = contiguous(events);
+        if (pending != null && historyBuckets
+                && appendHistory(List.of(pending), new ArrayList<>()).isEmpty()) {
+            throw new IllegalStateException("Falha ao gravar o histórico da conta " + accountId);
+        }
+        if (pending == null || !applyIncremental(accountId, pending)) {
+            rebuild(accountId);
+        }
+    }
+
+    /**
+     * Aplica lotes de várias contas (um lote por conta) num único <code>bulkWrite</code>
+     * não ordenado. Lotes que não casarem com a versão esperada são reconciliados um a um
+     * pelo caminho de {@link #apply(List)}.
+     *
+     * @return lotes cuja operação falhou no Mongo (para nova tentativa pelo chamador)
+     */
+    public List<List<TransactionEvent>> applyAll(Collection<List<TransactionEvent>> groups) {
+        List<List<TransactionEvent>> written = new ArrayList<>(groups.size());
+        var rebuilds = new ArrayList<String>();
+
+        for (var group : groups) {
+            if (group.isEmpty()) continue;
+            var pending = contiguous(group);
+            if (pending == null) {
+                rebuilds.add(group.get(0).accountId());
+                continue;
+            }
+            written.add(pending);
+        }
+
+        var failed = new ArrayList<List<TransactionEvent>>();
+        if (historyBuckets && !written.isEmpty()) {
+            written = appendHistory(written, failed);
+        }
+        if (!written.isEmpty()) {
+            var bulk = mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, AccountView.class);
+            for (var pending : written) {
+                bulk.updateOne(expectedVersion(pending), mergedUpdate(pending));
+            }
+            int matched;
+            try {
+                matched = bulk.execute().getMatchedCount();
+            } catch (BulkOperationException e) {
+                // UNORDERED: as demais operações foram aplicadas; separa só as que falharam
+                matched = e.getResult().getMatchedCount();
+                var failedIdx = new HashSet<Integer>();
+                for (var error : e.getErrors()) failedIdx.add(error.getIndex());
+                var ok = new ArrayList<List<TransactionEvent>>(written.size());
+                for (int i = 0; i < written.size(); i++) {
+                    (failedIdx.contains(i) ? failed : ok).add(written.get(i));
+                }
+                written = ok;
+            }
+            var reapplied = matched < written.size() ? reconcile(written) : Set.<String>of();
+            for (var group : written) {
+                if (!reapplied.contains(group.get(0).accountId())) applied(group);
+            }
+            failed.forEach(group -> views.evict(group.get(0).userId()));
+        }
+        rebuilds.forEach(this::rebuild);
+        return failed;
+    }
+
+    /**
+     * Aplica eventos de versões contíguas sobre o documento na versão imediatamente anterior à
+     * primeira. Retorna <code>false</code> quando a projeção precisa ser reconstruída (documento
+     * inexistente ou lacuna de versão); versões já aplicadas são descartadas sem escrita.
+     */
+    boolean applyIncremental(String accountId, List<TransactionEvent> events) {
+        var first = events.get(0);
+        var last = events.get(events.size() - 1);
+
+        if (mongo.updateFirst(expectedVersion(events), mergedUpdate(events), AccountView.class).getMatchedCount() > 0) {
+            applied(events);
+            return true;
+        }
+        views.evict(first.userId());
+
+        Long current = currentVersion(accountId);
+        if (current == null || current < first.version()) return false;
+        if (current >= last.version()) return true;
+        // parte do lote já aplicada: aplica só o restante
+        return applyIncremental(accountId, events.stream().filter(e -> e.version() > current).toList());
+    }
+
+    /**
+     * Ordena por versão e remove duplicados; <code>null</code> quando o lote pede rebuild
+     * (evento sem payload ou lacuna entre versões).
+     */
+    private static List<TransactionEvent> contiguous(List<TransactionEvent> events) {
+        var pending = new TreeMap<Long, TransactionEvent>();
+        for (var evt : events) {
+            if (!evt.incremental()) return null;
+            pending.putIfAbsent(evt.version(), evt);
+        }
+        if (pending.lastKey() - pending.firstKey() != pending.size() - 1) return null;
+        return new ArrayList<>(pending.values());
+    }
+
+    private static Query expectedVersion(List<TransactionEvent> events) {
+        var first = events.get(0);
+        return Query.query(Criteria.where("_id").is(first.accountId()).and("version").is(first.version() - 1));
+    }
+
+    private Update mergedUpdate(List<TransactionEvent> events) {
+        var last = events.get(events.size() - 1);
+        var update = new Update()
+                .set("saldoTotal", format(last.balance()))
+                .set("version", last.version())
+                .set("updatedAt", Instant.now());
+        update.push("historico").atPosition(0).slice(HISTORY_LIMIT).each(newestFirst(events).toArray());
+        return update;
+    }
+
+    /**
+     * Itens de histórico dos eventos: eventos vêm em ordem de persistência; histórico é do mais
+     * recente para o mais antigo.
+     */
+    private List<AccountView.HistoryItem> newestFirst(List<TransactionEvent> events) {
+        var itens = new ArrayList<AccountView.HistoryItem>();
+        for (var evt : events) {
+            for (var e : evt.transactions()) {
+                itens.add(toItem(e.type(), e.amount(), e.occurredAt()));
+            }
+        }
+        Collections.reverse(itens);
+        return itens;
+    }
+
+    /**
+     * Acrescenta os lançamentos dos lotes nos buckets de histórico ({@link HistoryBuckets#append}, num único
+     * <code>bulkWrite</code> não ordenado). Lote reentregue (chave duplicada em <code>itens.txId</code>) é
+     * reenviado só com os itens que faltam. Lotes com bucket que falhou vão para <code>failed</code> e não
+     * seguem para o update do {@link AccountView}: a versão do resumo nunca passa à frente do histórico.
+     *
+     * @return lotes cujo histórico foi gravado
+     */
+    private List<List<TransactionEvent>> appendHistory(List<List<TransactionEvent>> groups,
+                                                       List<List<TransactionEvent>> failed) {
+        var bulk = mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, HistoryBucket.class);
+        var owner = new ArrayList<Integer>(); // índice da operação no bulk → índice do lote
+        for (int g = 0; g < groups.size(); g++) {
+            int ops = HistoryBuckets.append(bulk, groups.get(g).get(0).accountId(), bucketItems(groups.get(g)));
+            for (int i = 0; i < ops; i++) owner.add(g);
+        }
+        if (owner.isEmpty()) return groups;
+
+        try {
+            bulk.execute();
+            return groups;
+        } catch (BulkOperationException e) {
+            var failedIdx = new HashSet<Integer>();
+            var redelivered = new TreeSet<Integer>();
+            for (var error : e.getErrors()) {
+                (error.getCode() == 11000 ? redelivered : failedIdx).add(owner.get(error.getIndex()));
+            }
+            redelivered.removeAll(failedIdx);
+            for (int g : redelivered) {
+                if (!appendMissing(groups.get(g))) failedIdx.add(g);
+            }
+            var ok = new ArrayList<List<TransactionEvent>>(groups.size());
+            for (int g = 0; g < groups.size(); g++) {
+                (failedIdx.contains(g) ? failed : ok).add(groups.get(g));
+            }
+            return ok;
+        }
+    }
+
+    /**
+     * Acrescenta só os itens do lote que ainda não estão em nenhum bucket.
+     *
+     * @return <code>false</code> se a escrita falhou
+     */
+    private boolean appendMissing(List<TransactionEvent> group) {
+        var items = bucketItems(group);
+        var existing = HistoryBuckets.existing(mongo, items.stream().map(HistoryBucket.Item::getTxId).toList());
+        var missing = items.stream().filter(item -> !existing.contains(item.getTxId())).toList();
+        if (missing.isEmpty()) return true;
+
+        var bulk = mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, HistoryBucket.class);
+        HistoryBuckets.append(bulk, group.get(0).accountId(), missing);
+        try {
+            bulk.execute();
+            return true;
+        } catch (BulkOperationException e) {
+            return false;
+        }
+    }
+
+    private static List<HistoryBucket.Item> bucketItems(List<TransactionEvent> events) {
+        var items = new ArrayList<HistoryBucket.Item>();
+        for (var evt : events) {
+            for (var e : evt.transactions()) {
+                items.add(HistoryBuckets.item(e.id(), e.type(), e.amount(), e.occurredAt()));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Incremento gravado: avança o cache e notifica os interessados.
+     */
+    private void applied(List<TransactionEvent> events) {
+        var first = events.get(0);
+        var last = events.get(events.size() - 1);
+        var saldo = format(last.balance());
+        var novos = newestFirst(events);
+        views.advance(first.userId(), first.version() - 1, last.version(), saldo, novos);
+        publisher.publishEvent(new ProjectionApplied(first.accountId(), first.userId(), last.version(), saldo, novos, false));
+    }
+
+    /**
+     * Após um bulk com updates que não casaram, relê as versões das contas envolvidas
+     * (uma consulta) e reaplica individualmente só os lotes ainda não refletidos.
+     *
+     * @return contas reaplicadas
+     */
+    private Set<String> reconcile(List<List<TransactionEvent>> written) {
+        var ids = written.stream().map(g -> g.get(0).accountId()).toList();
+        var query = Query.query(Criteria.where("_id").in(ids));
+        query.fields().include("version");
+        var versions = new HashMap<String, Long>();
+        for (var view : mongo.find(query, AccountView.class)) {
+            versions.put(view.getId(), view.getVersion());
+        }
+        var reapplied = new HashSet<String>();
+        for (var group : written) {
+            Long current = versions.get(group.get(0).accountId());
+            if (current == null || current < group.get(group.size() - 1).version()) {
+                apply(group);
+                reapplied.add(group.get(0).accountId());
+            }
+        }
+        return reapplied;
+    }
+
+    /**
+     * Reconstrói o snapshot completo a partir do Write Model (sem regravar documento na mesma versão).
+     */
+    public void rebuild(String accountId) {
+        rebuild(accountId, false);
+    }
 
-        var txs = txRepo.findByAccountIdOrderByOccurredAtDesc(evt.accountId(), PageRequest.of(0, 100));
+    /**
+     * Reconstrói o snapshot completo a partir do Write Model.
+     *
+     * @param overwrite regrava também o documento na mesma versão (conteúdo divergente apontado pelo
+     *                  {@link ProjectionConsistencyChecker}); versão mais nova nunca é sobrescrita
+     */
+    public void rebuild(String accountId, boolean overwrite) {
+        var snapshot = readTx.execute(status -> accountRepo.findById(accountId)
+                .map(acc -> new Snapshot(acc.getUser().getId(), acc.getBalance(),
+                        acc.getEventVersion() == null ? 0L : acc.getEventVersion(),
+                        txRepo.findByAccountIdOrderByOccurredAtDesc(accountId, PageRequest.of(0, HISTORY_LIMIT))))
+                .orElse(null));
+        if (snapshot == null) return;
 
+        var txs = snapshot.txs();
         var itens = txs.stream().map(this::toItem).toList();
+        long version = snapshot.version();
 
-        var view = AccountView.builder().id(acc.getId()).userId(acc.getUser().getId()).saldoTotal(acc.getBalance().setScale(2, RoundingMode.HALF_EVEN).toString()).historico(itens).updatedAt(java.time.Instant.now()).build();
+        try {
+            mongo.upsert(snapshotGuard(accountId, version, overwrite),
+                    snapshotUpdate(snapshot.userId(), snapshot.balance(), version, itens), AccountView.class);
+        } catch (DuplicateKeyException e) {
+            // documento já está em versão mais nova (ou igual, sem overwrite): nada foi gravado
+            views.evict(snapshot.userId());
+            return;
+        }
+        views.evict(snapshot.userId());
+        publisher.publishEvent(ProjectionApplied.rebuilt(accountId, snapshot.userId(), version, format(snapshot.balance())));
 
-        viewRepo.save(view); // upsert por _id
+        if (historyBuckets && !txs.isEmpty()) {
+            // repõe nos buckets o que eventos perdidos (drop-to-rebuild, lacunas) não trouxeram e regrava os já existentes
+            var items = txs.stream()
+                    .map(tx -> HistoryBuckets.item(tx.getId(), tx.getType(), tx.getAmount(), tx.getOccurredAt()))
+                    .toList();
+            var bulk = mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, HistoryBucket.class);
+            HistoryBuckets.backfill(bulk, accountId, items,
+                    HistoryBuckets.existing(mongo, items.stream().map(HistoryBucket.Item::getTxId).toList()));
+            bulk.execute();
+        }
+    }
+
+    /**
+     * Filtro do upsert de snapshot por <code>_id</code>: só casa se o documento não estiver em versão
+     * igual ou mais nova (nesse caso o upsert tenta inserir e falha com chave duplicada).
+     */
+    static Query snapshotGuard(String accountId, long version) {
+        return snapshotGuard(accountId, version, false);
+    }
+
+    /**
+     * Como {@link #snapshotGuard(String, long)}; com <code>overwrite</code> também casa na mesma versão, para
+     * regravar um documento cujo conteúdo divergiu do Write Model sem que a versão mudasse.
+     */
+    static Query snapshotGuard(String accountId, long version, boolean overwrite) {
+        return Query.query(Criteria.where("_id").is(accountId).orOperator(
+                overwrite ? Criteria.where("version").lte(version) : Criteria.where("version").lt(version),
+                Criteria.where("version").exists(false)));
+    }
+
+    /**
+     * Documento inteiro do resumo (usado pelo rebuild de uma conta e pelo {@link ProjectionRebuildJob}).
+     *
+     * @param itens histórico do mais recente para o mais antigo (até {@link #HISTORY_LIMIT})
+     */
+    static Update snapshotUpdate(String userId, BigDecimal balance, long version, List<AccountView.HistoryItem> itens) {
+        return new Update()
+                .set("userId", userId)
+                .set("saldoTotal", format(balance))
+                .set("historico", itens)
+                .set("version", version)
+                .set("updatedAt", Instant.now());
+    }
+
+    private Long currentVersion(String accountId) {
+        var query = Query.query(Criteria.where("_id").is(accountId));
+        query.fields().include("version");
+        var view = mongo.findOne(query, AccountView.class);
+        return view == null ? null : view.getVersion();
     }
 
     /**
@@ -67,10 +440,20 @@ public class ProjectionUpdater {
      * do Read Model, com rótulo de negócio ("deposito"/"saque"), valor "0.00" e data "dd-MM-yyyy HH:mm:ss".
      */
     private AccountView.HistoryItem toItem(Transaction tx) {
-        String tipo = switch (tx.getType()) {
-            case DEPOSIT -> "deposito";
-            case BILL_PAYMENT -> "saque";
-        };
-        return AccountView.HistoryItem.builder().type(tipo).valor(tx.getAmount().setScale(2, RoundingMode.HALF_EVEN).toString()).data(FMT.format(tx.getOccurredAt().toInstant(ZoneOffset.UTC))).build();
+        return toItem(tx.getType(), tx.getAmount(), tx.getOccurredAt());
+    }
+
+    private AccountView.HistoryItem toItem(TxType type, BigDecimal amount, LocalDateTime occurredAt) {
+        return HistoryItems.of(type, amount, occurredAt);
+    }
+
+    private static String format(BigDecimal value) {
+        return HistoryItems.format(value);
+    }
+
+    /**
+     * Conta e últimas transações lidas na mesma transação de leitura.
+     */
+    private record Snapshot(String userId, BigDecimal balance, long version, List<Transaction> txs) {
     }
 }
@@ -0,0 +1,175 @@
+package com.teste.cqrs_bank.read;
+
+import com.teste.cqrs_bank.config.QueryProperties;
+import com.teste.cqrs_bank.domain.account.AccountRepository;
+import com.teste.cqrs_bank.domain.transaction.TransactionRepository;
+import com.teste.cqrs_bank.read.view.AccountView;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leitura do resumo com garantia de "ler a própria escrita": o comando devolve a versão da conta
+ * (<code>X-Projection-Version</code>) e o resumo pedido com <code>minVersion</code> só responde um snapshot
+ * nessa versão ou mais nova.
+ *
+ * <ul>
+ *   <li>Se o {@link AccountViewCache} já está na versão, responde na hora.</li>
+ *   <li>Senão registra um waiter por usuário, completado pelo próprio {@link ProjectionApplied} que avança a
+ *       projeção — sem polling no Mongo e sem thread presa (o controller devolve um {@link CompletableFuture}).</li>
+ *   <li>Após <code>app.query.consistency.max-wait</code> sem a versão, monta o snapshot direto do MySQL (saldo e
+ *       últimas transações numa transação de leitura), limitado a <code>max-concurrent-fallbacks</code> leituras
+ *       simultâneas; sem vaga, responde o snapshot atual, e a versão servida vai no cabeçalho.</li>
+ * </ul>
+ *
+ * <p>Os waiters são locais: se a projeção for aplicada em outra instância, a espera termina pelo timeout e cai no
+ * MySQL. Métricas: <code>query.consistency{result=immediate|notified|fallback|stale}</code>.</p>
+ *
+ * @since 1.0
+ */
+@Component
+public class ProjectionVersionWaiter {
+
+    private final AccountViewCache views;
+    private final AccountRepository accountRepo;
+    private final TransactionRepository txRepo;
+    private final TransactionTemplate readTx;
+    private final long maxWaitMs;
+    private final Semaphore fallbacks;
+    private final Executor executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ConcurrentHashMap<String, List<Waiter>> waiters = new ConcurrentHashMap<>();
+    private final Counter immediate;
+    private final Counter notified;
+    private final Counter fromMysql;
+    private final Counter stale;
+
+    public ProjectionVersionWaiter(AccountViewCache views,
+                                   AccountRepository accountRepo,
+                                   TransactionRepository txRepo,
+                                   PlatformTransactionManager txManager,
+                                   QueryProperties props,
+                                   MeterRegistry meters) {
+        this.views = views;
+        this.accountRepo = accountRepo;
+        this.txRepo = txRepo;
+        this.readTx = new TransactionTemplate(txManager);
+        this.readTx.setReadOnly(true);
+        this.readTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.maxWaitMs = props.consistency().maxWait().toMillis();
+        this.fallbacks = new Semaphore(props.consistency().maxConcurrentFallbacks());
+        this.immediate = meters.counter("query.consistency", "result", "immediate");
+        this.notified = meters.counter("query.consistency", "result", "notified");
+        this.fromMysql = meters.counter("query.consistency", "result", "fallback");
+        this.stale = meters.counter("query.consistency", "result", "stale");
+    }
+
+    /**
+     * Resumo do usuário na versão <code>minVersion</code> ou mais nova (ver regras acima);
+     * completa com <code>null</code> se o usuário não tem conta.
+     */
+    public CompletableFuture<AccountViewCache.Summary> summaryAtLeast(String userId, long minVersion) {
+        var current = views.summary(userId);
+        if (reached(current, minVersion)) {
+            immediate.increment();
+            return CompletableFuture.completedFuture(current);
+        }
+
+        var waiter = new Waiter(minVersion, new CompletableFuture<>());
+        waiters.compute(userId, (k, list) -> {
+            if (list == null) list = new ArrayList<>(1);
+            synchronized (list) {
+                list.add(waiter);
+            }
+            return list;
+        });
+        // o evento pode ter chegado entre a leitura acima e o registro
+        if (reached(views.summary(userId), minVersion)) waiter.signal().complete(true);
+
+        CompletableFuture.delayedExecutor(maxWaitMs, TimeUnit.MILLISECONDS, executor)
+                .execute(() -> waiter.signal().complete(false));
+
+        return waiter.signal().thenApplyAsync(reached -> {
+            remove(userId, waiter);
+            if (reached) {
+                notified.increment();
+                return views.summary(userId);
+            }
+            return fallback(userId);
+        }, executor);
+    }
+
+    @EventListener
+    public void on(ProjectionApplied evt) {
+        if (evt.userId() == null || waiters.isEmpty()) return;
+        var list = waiters.get(evt.userId());
+        if (list == null) return;
+        synchronized (list) {
+            for (var waiter : list) {
+                if (waiter.minVersion() <= evt.version()) waiter.signal().complete(true);
+            }
+        }
+    }
+
+    /**
+     * Waiters pendentes (para testes/diagnóstico).
+     */
+    int pending() {
+        return waiters.values().stream().mapToInt(List::size).sum();
+    }
+
+    private void remove(String userId, Waiter waiter) {
+        waiters.computeIfPresent(userId, (k, list) -> {
+            synchronized (list) {
+                list.remove(waiter);
+                return list.isEmpty() ? null : list;
+            }
+        });
+    }
+
+    private AccountViewCache.Summary fallback(String userId) {
+        if (!fallbacks.tryAcquire()) {
+            stale.increment();
+            return views.summary(userId);
+        }
+        try {
+            fromMysql.increment();
+            return readTx.execute(status -> accountRepo.findByUserId(userId).map(acc -> {
+                var txs = txRepo.findByAccountIdOrderByOccurredAtDesc(acc.getId(),
+                        PageRequest.of(0, ProjectionUpdater.HISTORY_LIMIT));
+                return views.render(AccountView.builder()
+                        .id(acc.getId())
+                        .userId(userId)
+                        .saldoTotal(HistoryItems.format(acc.getBalance()))
+                        .historico(txs.stream().map(tx -> HistoryItems.of(tx.getType(), tx.getAmount(), tx.getOccurredAt())).toList())
+                        .version(acc.getEventVersion() == null ? 0L : acc.getEventVersion())
+                        .updatedAt(Instant.now())
+                        .build());
+            }).orElse(null));
+        } finally {
+            fallbacks.release();
+        }
+    }
+
+    private static boolean reached(AccountViewCache.Summary summary, long minVersion) {
+        return summary != null && summary.view().getVersion() != null && summary.view().getVersion() >= minVersion;
+    }
+
+    private record Waiter(long minVersion, CompletableFuture<Boolean> signal) {
+    }
+}
@@ -0,0 +1,191 @@
+package com.teste.cqrs_bank.read;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.teste.cqrs_bank.config.QueryProperties;
+import com.teste.cqrs_bank.domain.transaction.Transaction;
+import com.teste.cqrs_bank.domain.transaction.TransactionRepository;
+import com.teste.cqrs_bank.read.view.AccountView;
+import com.teste.cqrs_bank.read.view.HistoryBucket;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Consulta paginada do histórico completo (além da janela de {@link ProjectionUpdater#HISTORY_LIMIT}
+ * itens do resumo).
+ *
+ * <ul>
+ *   <li>Keyset em <code>(occurred_at, id)</code> decrescente: cada página é um range em
+ *       <code>idx_transactions_account_date</code> (o InnoDB anexa o <code>id</code> ao índice
+ *       secundário), custo proporcional ao tamanho da página, sem OFFSET.</li>
+ *   <li>Com <code>app.query.history-source=buckets</code> lê os buckets de
+ *       {@link HistoryBucket} (só Mongo), também por keyset: buckets por <code>to</code> decrescente a partir
+ *       do cursor, ordenando só os itens dos buckets lidos.</li>
+ *   <li>O cursor é opaco para o cliente: <code>base64url("&lt;occurredAt ISO&gt;|&lt;id&gt;")</code> do
+ *       último item devolvido; cursor inválido vira {@link IllegalArgumentException} (400).</li>
+ *   <li>Itens no mesmo formato do <b>Historico</b> do resumo.</li>
+ * </ul>
+ *
+ * @since 1.0
+ */
+@Component
+public class TransactionHistoryQuery {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 200;
+
+    private static final int BUCKETS_PER_READ = 8;
+    private static final Comparator<HistoryBucket.Item> NEWEST_FIRST = Comparator
+            .comparing(HistoryBucket.Item::getOccurredAt)
+            .thenComparing(HistoryBucket.Item::getTxId)
+            .reversed();
+
+    private final TransactionRepository txRepo;
+    private final MongoTemplate mongo;
+    private final AccountViewCache views;
+    private final boolean buckets;
+
+    public TransactionHistoryQuery(TransactionRepository txRepo,
+                                   MongoTemplate mongo,
+                                   AccountViewCache views,
+                                   QueryProperties props) {
+        this.txRepo = txRepo;
+        this.mongo = mongo;
+        this.views = views;
+        this.buckets = props.historySource() == QueryProperties.HistorySource.BUCKETS;
+    }
+
+    public Page page(String userId, String cursor, Integer limit) {
+        int size = limit == null ? DEFAULT_LIMIT : Math.max(1, Math.min(limit, MAX_LIMIT));
+        var after = cursor == null || cursor.isBlank() ? null : Cursor.decode(cursor);
+        return buckets ? fromBuckets(userId, after, size) : fromMysql(userId, after, size);
+    }
+
+    private Page fromMysql(String userId, Cursor after, int size) {
+        // busca um a mais para saber se há próxima página
+        var rows = after == null
+                ? txRepo.findHistory(userId, Limit.of(size + 1))
+                : txRepo.findHistoryBefore(userId, after.occurredAt(), after.id(), Limit.of(size + 1));
+
+        boolean hasNext = rows.size() > size;
+        var pageRows = hasNext ? rows.subList(0, size) : rows;
+        var itens = pageRows.stream()
+                .map(t -> HistoryItems.of(t.getType(), t.getAmount(), t.getOccurredAt()))
+                .toList();
+        return new Page(itens, hasNext ? encode(pageRows.get(size - 1)) : null);
+    }
+
+    /**
+     * Lê os buckets por <code>to</code> decrescente e mantém só os <code>size + 1</code> itens mais novos vistos.
+     * Para quando esses itens já são todos mais novos que o <code>to</code> do próximo bucket: nenhum bucket
+     * seguinte pode ter item que entre na página.
+     */
+    private Page fromBuckets(String userId, Cursor after, int size) {
+        var view = views.get(userId);
+        if (view == null) return new Page(List.of(), null);
+
+        var rows = new TreeSet<>(NEWEST_FIRST);
+        HistoryBucket last = null;
+        boolean complete = false;
+        while (!complete) {
+            var criteria = Criteria.where("accountId").is(view.getId());
+            if (after != null) criteria = criteria.and("from").lte(after.occurredAt());
+            if (last != null) {
+                criteria = criteria.orOperator(
+                        Criteria.where("to").lt(last.getTo()),
+                        Criteria.where("to").is(last.getTo()).and("_id").lt(last.getId()));
+            }
+            var query = Query.query(criteria)
+                    .with(Sort.by(Sort.Direction.DESC, "to", "_id"))
+                    .limit(BUCKETS_PER_READ);
+
+            var page = mongo.find(query, HistoryBucket.class);
+            for (var bucket : page) {
+                if (newerThan(rows, bucket.getTo()) > size) {
+                    complete = true;
+                    break;
+                }
+                for (var item : bucket.getItens()) {
+                    if (after != null && !after.isAfter(item)) continue;
+                    rows.add(item);
+                    if (rows.size() > size + 1) rows.pollLast();
+                }
+            }
+            if (page.size() < BUCKETS_PER_READ) break;
+            last = page.get(page.size() - 1);
+        }
+
+        boolean hasNext = rows.size() > size;
+        var pageRows = new ArrayList<>(rows).subList(0, Math.min(size, rows.size()));
+        var itens = pageRows.stream()
+                .map(i -> AccountView.HistoryItem.builder().type(i.getType()).valor(i.getValor()).data(i.getData()).build())
+                .toList();
+        var lastRow = hasNext ? pageRows.get(size - 1) : null;
+        return new Page(itens, lastRow == null ? null : new Cursor(lastRow.getOccurredAt(), lastRow.getTxId()).encode());
+    }
+
+    /**
+     * Quantos itens de <code>rows</code> são estritamente mais novos que <code>at</code>.
+     */
+    private static int newerThan(TreeSet<HistoryBucket.Item> rows, LocalDateTime at) {
+        var probe = HistoryBucket.Item.builder().occurredAt(at).txId("\uffff").build();
+        return rows.headSet(probe).size();
+    }
+
+    static String encode(Transaction last) {
+        return new Cursor(last.getOccurredAt(), last.getId()).encode();
+    }
+
+    /**
+     * Página do histórico; <code>next</code> é <code>null</code> na última página.
+     */
+    public record Page(@JsonProperty("Historico") List<AccountView.HistoryItem> historico, String next) {
+    }
+
+    /**
+     * Posição <code>(occurredAt, id)</code> do último item entregue (exclusiva).
+     */
+    record Cursor(LocalDateTime occurredAt, String id) {
+
+        static Cursor decode(String cursor) {
+            String decoded;
+            try {
+                decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Cursor inválido.");
+            }
+            int sep = decoded.indexOf('|');
+            if (sep <= 0 || sep == decoded.length() - 1) throw new IllegalArgumentException("Cursor inválido.");
+            try {
+                return new Cursor(LocalDateTime.parse(decoded.substring(0, sep)), decoded.substring(sep + 1));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Cursor inválido.");
+            }
+        }
+
+        String encode() {
+            var raw = occurredAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * O item vem depois do cursor na ordem decrescente (é mais antigo).
+         */
+        boolean isAfter(HistoryBucket.Item item) {
+            int cmp = item.getOccurredAt().compareTo(occurredAt);
+            return cmp < 0 || (cmp == 0 && item.getTxId().compareTo(id) < 0);
+        }
+    }
+}
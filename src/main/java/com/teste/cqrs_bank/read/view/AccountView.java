@@ -2,6 +2,7 @@ package com.teste.cqrs_bank.read.view;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
@@ -19,6 +20,11 @@ import java.util.List;
  *
  * <p>Os valores ficam como <b>strings formatadas</b>; cálculo numérico permanece no Write Model.</p>
  *
+ * <p><code>version</code> é a última versão de evento da conta já refletida no documento.</p>
+ *
+ * <p><code>userId</code> é indexado: a consulta do resumo resolve o documento direto pelo usuário,
+ * sem passar pelo Write Model.</p>
+ *
  * @since 1.0
  */
 @Getter
@@ -31,9 +37,11 @@ public class AccountView {
 
     @Id
     private String id;
+    @Indexed
     private String userId;
     private String saldoTotal;
     private List<HistoryItem> historico;
+    private Long version;
     private Instant updatedAt;
 
     @Getter
@@ -2,8 +2,12 @@ package com.teste.cqrs_bank.read.view;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
 
+import java.util.Optional;
+
 /**
  * Repositório Mongo de AccountView. @since 1.0
  */
 public interface AccountViewRepository extends MongoRepository<AccountView, String> {
+
+    Optional<AccountView> findByUserId(String userId);
 }
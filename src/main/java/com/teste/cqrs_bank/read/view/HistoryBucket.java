@@ -0,0 +1,73 @@
+package com.teste.cqrs_bank.read.view;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Bucket do histórico completo da conta no Read Model (collection: account_history):
+ * por conta e dia (UTC), com no máximo {@link #CAPACITY} itens. O bucket do dia que enche dá lugar a
+ * um novo, então o documento nunca se aproxima do limite de 16 MB do Mongo.
+ *
+ * <ul>
+ *   <li>Novos lançamentos entram com <code>$push</code> + <code>$each</code> no bucket do dia que ainda tem espaço
+ *       (<code>count</code>), com custo constante, independente do histórico da conta.</li>
+ *   <li>O índice único <code>uq_history_tx</code> em <code>itens.txId</code> impede que a reentrega de um evento
+ *       duplique o lançamento em outro bucket. O filtro do <code>$push</code> (<code>itens.txId $nin</code>)
+ *       cobre o próprio bucket.</li>
+ *   <li><code>from</code>/<code>to</code> guardam o intervalo de <code>occurredAt</code> dos itens. A paginação
+ *       percorre os buckets por <code>to</code> decrescente e ordena só os itens dos buckets lidos.</li>
+ * </ul>
+ *
+ * <p>O {@link AccountView} guarda só a janela recente do resumo.</p>
+ *
+ * @since 1.0
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "account_history")
+@CompoundIndexes({
+        @CompoundIndex(name = "uq_history_tx", def = "{'itens.txId': 1}", unique = true),
+        @CompoundIndex(name = "idx_history_account_day", def = "{'accountId': 1, 'day': 1, 'count': 1}"),
+        @CompoundIndex(name = "idx_history_account_to", def = "{'accountId': 1, 'to': -1, '_id': -1}")
+})
+public class HistoryBucket {
+
+    /**
+     * Máximo de itens por bucket.
+     */
+    public static final int CAPACITY = 200;
+
+    @Id
+    private String id;
+    private String accountId;
+    private String day;
+    private Integer count;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private List<Item> itens;
+
+    /**
+     * Item do bucket: formato de UI do histórico + chave de ordenação/cursor (<code>occurredAt</code>, <code>txId</code>).
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Item {
+        private String txId;
+        private LocalDateTime occurredAt;
+        private String type;
+        private String valor;
+        private String data;
+    }
+}
@@ -0,0 +1,42 @@
+package com.teste.cqrs_bank.read.view;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Progresso da reconstrução completa da projeção (collection: projection_rebuilds), um documento por job.
+ *
+ * <p><code>lastAccountId</code> é o maior id de conta tal que ela e todas as anteriores (na ordem da
+ * varredura) já foram regravadas; retomar um job continua a partir dele.</p>
+ *
+ * @since 1.0
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "projection_rebuilds")
+public class RebuildCheckpoint {
+
+    @Id
+    private String id;
+    private State state;
+    private String lastAccountId;
+    private long processed;
+    private long failed;
+    private double accountsPerSecond;
+    private String error;
+    private Instant startedAt;
+    private Instant updatedAt;
+
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        CANCELLED,
+        FAILED
+    }
+}
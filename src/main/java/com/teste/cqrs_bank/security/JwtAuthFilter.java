@@ -1,7 +1,5 @@
 package com.teste.cqrs_bank.security;
 
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jws;
 import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -9,16 +7,22 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Filtro que processa <code>Authorization: Bearer &lt;token&gt;</code>,
- * valida o JWT via {@link com.teste.cqrs_bank.security.JwtTokenProvider}
+ * valida o JWT via {@link com.teste.cqrs_bank.security.JwtTokenProvider#verify(String)}
+ * (tokens já vistos saem do cache, sem refazer o HMAC)
  * e povoa o contexto de segurança com o userId como principal.
+ * Logins listados em <code>app.security.admin-logins</code> recebem <code>ROLE_ADMIN</code> e os de
+ * <code>app.security.service-logins</code>, <code>ROLE_SERVICE</code>.
  *
  * <p>Em caso de token inválido/expirado, segue sem autenticação e a segurança
  * bloqueia as rotas protegidas.</p>
@@ -27,10 +31,20 @@ import java.io.IOException;
  */
 public class JwtAuthFilter extends OncePerRequestFilter {
 
+    public static final String ROLE_SERVICE = "ROLE_SERVICE";
+
+    private static final List<GrantedAuthority> ADMIN = AuthorityUtils.createAuthorityList("ROLE_ADMIN");
+    private static final List<GrantedAuthority> SERVICE = AuthorityUtils.createAuthorityList(ROLE_SERVICE);
+    private static final List<GrantedAuthority> ADMIN_SERVICE = AuthorityUtils.createAuthorityList("ROLE_ADMIN", ROLE_SERVICE);
+
     private final JwtTokenProvider jwt;
+    private final Set<String> adminLogins;
+    private final Set<String> serviceLogins;
 
-    public JwtAuthFilter(JwtTokenProvider jwt) {
+    public JwtAuthFilter(JwtTokenProvider jwt, Set<String> adminLogins, Set<String> serviceLogins) {
         this.jwt = jwt;
+        this.adminLogins = adminLogins;
+        this.serviceLogins = serviceLogins;
     }
 
     @Override
@@ -41,12 +55,12 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         if (header != null && header.startsWith("Bearer ")) {
             String token = header.substring(7);
             try {
-                Jws<Claims> jws = jwt.parse(token);
-                String userId = jws.getBody().getSubject();
-                String login = (String) jws.getBody().get("login");
+                var verified = jwt.verify(token);
+                String userId = verified.userId();
+                String login = verified.login();
 
                 AbstractAuthenticationToken auth =
-                        new AbstractAuthenticationToken(AuthorityUtils.NO_AUTHORITIES) {
+                        new AbstractAuthenticationToken(authorities(login)) {
                             @Override
                             public Object getCredentials() {
                                 return token;
@@ -67,4 +81,11 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         }
         chain.doFilter(req, res);
     }
+
+    private List<GrantedAuthority> authorities(String login) {
+        boolean admin = adminLogins.contains(login);
+        boolean service = serviceLogins.contains(login);
+        if (admin) return service ? ADMIN_SERVICE : ADMIN;
+        return service ? SERVICE : AuthorityUtils.NO_AUTHORITIES;
+    }
 }
@@ -1,20 +1,38 @@
-// (substitua pelo abaixo se o seu não tiver parse/validate)
 package com.teste.cqrs_bank.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.teste.cqrs_bank.config.JwtProperties;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Base64;
 import java.util.Date;
 
 /**
  * Geração e validação de JWT (HS256), usando segredo e expiração de {@link com.teste.cqrs_bank.config.JwtProperties}.
- * Exponde <code>generateToken(userId, login)</code> e <code>parse(token)</code>.
+ * Exponde <code>generateToken(userId, login)</code>, <code>parse(token)</code> e <code>verify(token)</code>.
+ *
+ * <ul>
+ *   <li>O {@link JwtParser} é montado uma vez no construtor (é imutável e thread-safe).</li>
+ *   <li><code>verify</code> guarda os tokens já validados num cache Caffeine indexado pelo SHA-256 do token
+ *       (o token em si não fica em memória), limitado por <code>app.security.jwt.token-cache.max-size</code>;
+ *       cada entrada expira no <code>exp</code> do próprio token, então um token vencido nunca é aceito pelo cache.</li>
+ * </ul>
+ *
+ * <p>Métricas: <code>cache.gets{cache=jwt_tokens,result=hit|miss}</code>, <code>cache.size</code>,
+ * <code>cache.evictions</code>.</p>
  *
  * @since 1.0
  */
@@ -23,10 +41,20 @@ public class JwtTokenProvider {
 
     private final SecretKey key;
     private final int expirationMinutes;
+    private final JwtParser parser;
+    private final Cache<String, VerifiedToken> verified;
 
-    public JwtTokenProvider(JwtProperties props) {
+    public JwtTokenProvider(JwtProperties props, MeterRegistry meters) {
         this.key = Keys.hmacShaKeyFor(props.secret().getBytes(StandardCharsets.UTF_8));
         this.expirationMinutes = props.expirationMinutes();
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(props.tokenCache().maxSize())
+                .expireAfter(Expiry.<String, VerifiedToken>creating(
+                        (k, v) -> Duration.between(Instant.now(), v.expiresAt())))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meters, verified, "jwt_tokens");
     }
 
     public String generateToken(String userId, String login) {
@@ -43,6 +71,39 @@ public class JwtTokenProvider {
     }
 
     public Jws<Claims> parse(String token) throws JwtException {
-        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
+        return parser.parseClaimsJws(token);
+    }
+
+    /**
+     * Valida o token (cache ou parse completo) e devolve o principal.
+     *
+     * @throws JwtException se o token for inválido, expirado ou não tiver <code>exp</code>
+     */
+    public VerifiedToken verify(String token) throws JwtException {
+        String hash = sha256(token);
+        var cached = verified.getIfPresent(hash);
+        if (cached != null && cached.expiresAt().isAfter(Instant.now())) return cached;
+
+        Claims claims = parse(token).getBody();
+        if (claims.getExpiration() == null) throw new MalformedJwtException("Token sem expiração.");
+        var result = new VerifiedToken(claims.getSubject(), claims.get("login", String.class),
+                claims.getExpiration().toInstant());
+        verified.put(hash, result);
+        return result;
+    }
+
+    private static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Principal de um token já validado.
+     */
+    public record VerifiedToken(String userId, String login, Instant expiresAt) {
     }
 }
@@ -0,0 +1,102 @@
+package com.teste.cqrs_bank.security;
+
+import com.teste.cqrs_bank.config.PasswordProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executa o {@link PasswordEncoder} (BCrypt) num pool próprio e limitado, fora das threads de requisição.
+ *
+ * <ul>
+ *   <li><code>app.security.password.threads</code> threads de plataforma (o BCrypt é CPU puro) e fila de
+ *       <code>queue-capacity</code>; com a fila cheia o pedido é recusado na hora.</li>
+ *   <li>O chamador espera no máximo <code>timeout</code> (fila + hash); ao estourar, a tarefa é cancelada.</li>
+ *   <li>Recusa e timeout viram {@link TaskRejectedException}, mapeada para 503 com <code>Retry-After</code>.</li>
+ * </ul>
+ *
+ * <p>Assim uma rajada de logins fica presa a este pool e não consome as threads de
+ * <code>/transactions</code> e <code>/accounts</code>.</p>
+ *
+ * <p>Métricas: <code>executor.*{name=password_hashing}</code>, <code>auth.password.hash</code> (espera total)
+ * e <code>auth.password.rejected</code>.</p>
+ *
+ * @since 1.0
+ */
+@Component
+public class PasswordHasher {
+
+    private final PasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutNanos;
+
+    private final Timer latency;
+    private final Counter rejected;
+
+    public PasswordHasher(PasswordEncoder encoder, PasswordProperties props, MeterRegistry meters) {
+        this.encoder = encoder;
+        this.timeoutNanos = props.timeout().toNanos();
+        this.executor = new ThreadPoolExecutor(
+                props.threads(), props.threads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(props.queueCapacity()),
+                Thread.ofPlatform().name("password-hash-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.latency = meters.timer("auth.password.hash");
+        this.rejected = meters.counter("auth.password.rejected");
+        ExecutorServiceMetrics.monitor(meters, executor, "password_hashing");
+    }
+
+    public String encode(CharSequence rawPassword) {
+        return run(() -> encoder.encode(rawPassword));
+    }
+
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T run(Callable<T> task) {
+        long start = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new TaskRejectedException("Serviço de autenticação sobrecarregado; tente novamente.", e);
+        }
+        try {
+            return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new TaskRejectedException("Serviço de autenticação sobrecarregado; tente novamente.", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new TaskRejectedException("Autenticação interrompida.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
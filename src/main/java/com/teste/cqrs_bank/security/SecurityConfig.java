@@ -1,5 +1,7 @@
 package com.teste.cqrs_bank.security;
 
+import com.teste.cqrs_bank.config.RoleProperties;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -8,12 +10,17 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.util.Set;
+
 /**
  * Configuração do Spring Security.
  *
  * <ul>
  *   <li>Stateless (JWT); desabilita sessão.</li>
  *   <li>Libera /auth/** e endpoints do Swagger/actuator citados no código.</li>
+ *   <li><code>/admin/**</code> exige <code>ROLE_ADMIN</code> (logins de <code>app.security.admin-logins</code>).</li>
+ *   <li><code>ROLE_SERVICE</code> (logins de <code>app.security.service-logins</code>) libera o lote de comandos
+ *       em contas de outros usuários (verificado em <code>/transactions/batch</code>).</li>
  *   <li>Protege demais rotas; adiciona {@link com.teste.cqrs_bank.security.JwtAuthFilter} antes do UsernamePasswordAuthenticationFilter.</li>
  * </ul>
  *
@@ -23,9 +30,11 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 public class SecurityConfig {
 
     private final JwtTokenProvider jwt;
+    private final RoleProperties roles;
 
-    public SecurityConfig(JwtTokenProvider jwt) {
+    public SecurityConfig(JwtTokenProvider jwt, RoleProperties roles) {
         this.jwt = jwt;
+        this.roles = roles;
     }
 
     @Bean
@@ -34,19 +43,25 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // despacho assíncrono (SSE) reaproveita a autorização da requisição original
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                         .requestMatchers(
                                 "/auth/**",
                                 "/swagger-ui/**",
                                 "/v3/api-docs/**",
                                 "/actuator/health"
                         ).permitAll()
+                        .requestMatchers("/admin/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
-                .addFilterBefore(new JwtAuthFilter(jwt), UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(new JwtAuthFilter(jwt, Set.copyOf(roles.adminLogins()), Set.copyOf(roles.serviceLogins())), UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
     }
 
+    /**
+     * Encoder usado pelo {@link PasswordHasher} (que o executa no pool dedicado).
+     */
     @Bean
     public BCryptPasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
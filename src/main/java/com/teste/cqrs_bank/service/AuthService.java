@@ -5,9 +5,11 @@ import com.teste.cqrs_bank.domain.account.AccountRepository;
 import com.teste.cqrs_bank.domain.user.User;
 import com.teste.cqrs_bank.domain.user.UserRepository;
 import com.teste.cqrs_bank.security.JwtTokenProvider;
-import jakarta.transaction.Transactional;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import com.teste.cqrs_bank.security.PasswordHasher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Objects;
 
@@ -16,6 +18,12 @@ import java.util.Objects;
  * - signup: cria User/Account e retorna JWT
  * - login: valida credenciais e retorna JWT
  *
+ * <p>O BCrypt roda no {@link PasswordHasher} (pool limitado, 503 quando saturado) e fora de transação,
+ * para não prender conexão do banco enquanto o hash é calculado.</p>
+ *
+ * <p>As consultas por login passam pelo {@link LoginDirectory} (cache positivo/negativo + filtro de Bloom
+ * no pré-check do signup); a constraint <code>uq_users_login</code> segue sendo a garantia de unicidade.</p>
+ *
  * @since 1.0
  */
 @Service
@@ -23,44 +31,63 @@ public class AuthService {
 
     private final UserRepository userRepository;
     private final AccountRepository accountRepository;
+    private final LoginDirectory logins;
     private final JwtTokenProvider jwt;
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final PasswordHasher passwordHasher;
+    private final TransactionTemplate tx;
 
     public AuthService(UserRepository userRepository,
                        AccountRepository accountRepository,
-                       JwtTokenProvider jwt) {
+                       LoginDirectory logins,
+                       JwtTokenProvider jwt,
+                       PasswordHasher passwordHasher,
+                       PlatformTransactionManager txManager) {
         this.userRepository = userRepository;
         this.accountRepository = accountRepository;
+        this.logins = logins;
         this.jwt = jwt;
+        this.passwordHasher = passwordHasher;
+        this.tx = new TransactionTemplate(txManager);
     }
 
     /**
-     * Cria usuário/conta e retorna JWT.
+     * Cria usuário/conta e retorna JWT. O hash é calculado antes de abrir a transação de User/Account.
      */
-    @Transactional
     public String signup(String fullName, String document, String login, String rawPassword) {
         Objects.requireNonNull(fullName);
         Objects.requireNonNull(document);
         Objects.requireNonNull(login);
         Objects.requireNonNull(rawPassword);
 
-        if (userRepository.existsByLogin(login)) {
+        if (logins.isTaken(login)) {
             throw new IllegalArgumentException("Login já utilizado.");
         }
 
-        var user = User.builder()
-                .fullName(fullName)
-                .document(document)
-                .login(login)
-                .passwordHash(passwordEncoder.encode(rawPassword))
-                .build();
+        String passwordHash = passwordHasher.encode(rawPassword);
 
-        user = userRepository.save(user);
+        User user;
+        try {
+            user = tx.execute(status -> {
+                var saved = userRepository.save(User.builder()
+                        .fullName(fullName)
+                        .document(document)
+                        .login(login)
+                        .passwordHash(passwordHash)
+                        .build());
 
-        var account = Account.builder()
-                .user(user)
-                .build(); // balance = 0 no @PrePersist
-        accountRepository.save(account);
+                var account = Account.builder()
+                        .user(saved)
+                        .build(); // balance = 0 no @PrePersist
+                accountRepository.save(account);
+                return saved;
+            });
+        } catch (DataIntegrityViolationException e) {
+            // pré-check local desatualizado (ex.: cadastro simultâneo ou em outra instância)
+            logins.evict(login);
+            if (userRepository.existsByLogin(login)) throw new IllegalArgumentException("Login já utilizado.");
+            throw e;
+        }
+        logins.registered(user);
 
         return jwt.generateToken(user.getId(), user.getLogin());
     }
@@ -68,15 +95,14 @@ public class AuthService {
     /**
      * Autentica usuário e retorna JWT.
      */
-    @Transactional
     public String login(String login, String rawPassword) {
-        var user = userRepository.findByLogin(login)
+        var user = logins.find(login)
                 .orElseThrow(() -> new IllegalArgumentException("Credenciais inválidas."));
 
-        if (!passwordEncoder.matches(rawPassword, user.getPasswordHash())) {
+        if (!passwordHasher.matches(rawPassword, user.passwordHash())) {
             throw new IllegalArgumentException("Credenciais inválidas.");
         }
 
-        return jwt.generateToken(user.getId(), user.getLogin());
+        return jwt.generateToken(user.userId(), user.login());
     }
 }
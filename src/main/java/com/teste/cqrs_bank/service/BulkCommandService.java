@@ -0,0 +1,224 @@
+package com.teste.cqrs_bank.service;
+
+import com.teste.cqrs_bank.config.CommandProperties;
+import com.teste.cqrs_bank.domain.transaction.TxType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Lote de depósitos/pagamentos de uma ou várias contas (integrações de folha e de cobrança).
+ *
+ * <ul>
+ *   <li>{@link #prepare} valida cada operação (inválidas já viram resultado com erro) e agrupa as demais por
+ *       usuário em ordem de <code>userId</code>, mantendo a ordem de envio dentro de cada conta.</li>
+ *   <li>Operação com <code>idempotencyKey</code> usa a mesma chave dos comandos avulsos (por usuário da conta):
+ *       chave já usada devolve o resultado original sem lançar de novo; chave nova é gravada na transação
+ *       do lançamento ({@link IdempotencyStore#recordBulk}).</li>
+ *   <li>{@link #execute} aplica <code>app.commands.bulk.accounts-per-commit</code> contas por transação via
+ *       {@link TransactionCommandGateway#applyBulk(Map)}: um lock por conta, tomado em ordem (sem deadlock entre
+ *       lotes concorrentes), um commit e inserts em lote por transação.</li>
+ *   <li>Os resultados saem por transação, logo após o commit; uma transação que falha marca só as suas operações.</li>
+ * </ul>
+ *
+ * <p>Métricas: <code>commands.bulk.items{result=ok|failed}</code> e <code>commands.bulk.commit</code>
+ * (tempo de cada transação).</p>
+ *
+ * @since 1.0
+ */
+@Service
+public class BulkCommandService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkCommandService.class);
+
+    private final TransactionCommandGateway gateway;
+    private final int maxItems;
+    private final int accountsPerCommit;
+
+    private final Counter ok;
+    private final Counter failed;
+    private final Timer commit;
+
+    public BulkCommandService(TransactionCommandGateway gateway, CommandProperties props, MeterRegistry meters) {
+        this.gateway = gateway;
+        this.maxItems = props.bulk().maxItems();
+        this.accountsPerCommit = props.bulk().accountsPerCommit();
+        this.ok = meters.counter("commands.bulk.items", "result", "ok");
+        this.failed = meters.counter("commands.bulk.items", "result", "failed");
+        this.commit = meters.timer("commands.bulk.commit");
+    }
+
+    /**
+     * Valida e ordena o lote. Operações sem <code>userId</code> são do próprio chamador.
+     *
+     * @throws IllegalArgumentException lote vazio ou acima de <code>max-items</code>
+     */
+    public Plan prepare(String callerId, List<Operation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            throw new IllegalArgumentException("Lote sem operações.");
+        }
+        if (operations.size() > maxItems) {
+            throw new IllegalArgumentException("Lote acima do limite de " + maxItems + " operações.");
+        }
+        var byUser = new TreeMap<String, List<Item>>();
+        var rejected = new ArrayList<Outcome>();
+        var keys = new HashSet<String>();
+        for (int i = 0; i < operations.size(); i++) {
+            var op = operations.get(i);
+            try {
+                var cmd = command(op);
+                String userId = op.userId() == null ? callerId : op.userId();
+                if (op.idempotencyKey() != null && !keys.add(IdempotencyStore.id(userId, op.idempotencyKey()))) {
+                    throw new IllegalArgumentException("Idempotency-Key repetida no lote.");
+                }
+                byUser.computeIfAbsent(userId, k -> new ArrayList<>()).add(new Item(i, cmd, op.idempotencyKey()));
+            } catch (IllegalArgumentException e) {
+                rejected.add(Outcome.failed(i, e.getMessage()));
+            }
+        }
+        return new Plan(byUser, rejected);
+    }
+
+    /**
+     * Aplica o lote; <code>sink</code> recebe os resultados de cada transação após o commit (fora da ordem de envio,
+     * identificados pelo índice).
+     */
+    public void execute(Plan plan, Consumer<List<Outcome>> sink) {
+        if (!plan.rejected().isEmpty()) {
+            failed.increment(plan.rejected().size());
+            sink.accept(plan.rejected());
+        }
+        var accounts = new ArrayList<>(plan.byUser().entrySet());
+        for (int from = 0; from < accounts.size(); from += accountsPerCommit) {
+            sink.accept(applyChunk(accounts.subList(from, Math.min(from + accountsPerCommit, accounts.size()))));
+        }
+    }
+
+    private List<Outcome> applyChunk(List<Map.Entry<String, List<Item>>> accounts) {
+        var outcomes = new ArrayList<Outcome>();
+        var chunk = replayed(accounts, outcomes);
+        if (chunk.isEmpty()) return outcomes;
+
+        var commands = new TreeMap<String, List<TransactionCommand>>();
+        var keys = new TreeMap<String, List<String>>();
+        int items = 0;
+        for (var e : chunk) {
+            commands.put(e.getKey(), e.getValue().stream().map(Item::command).toList());
+            if (e.getValue().stream().anyMatch(it -> it.idempotencyKey() != null)) {
+                keys.put(e.getKey(), e.getValue().stream().map(Item::idempotencyKey).toList());
+            }
+            items += e.getValue().size();
+        }
+
+        Map<String, List<CommandResult>> results;
+        try {
+            results = commit.record(() -> gateway.applyBulk(commands, keys));
+        } catch (IllegalArgumentException | ConcurrencyFailureException e) {
+            chunk.forEach(entry -> entry.getValue().forEach(it -> outcomes.add(Outcome.failed(it.index(), e.getMessage()))));
+            failed.increment(items);
+            return outcomes;
+        } catch (RuntimeException e) {
+            log.warn("falha ao aplicar lote de {} contas a partir de {}", chunk.size(), chunk.get(0).getKey(), e);
+            chunk.forEach(entry -> entry.getValue().forEach(it -> outcomes.add(Outcome.failed(it.index(), "Falha ao aplicar a operação."))));
+            failed.increment(items);
+            return outcomes;
+        }
+
+        for (var e : chunk) {
+            var accountResults = results.get(e.getKey());
+            var accountItems = e.getValue();
+            for (int i = 0; i < accountItems.size(); i++) {
+                int index = accountItems.get(i).index();
+                if (accountResults == null) {
+                    outcomes.add(Outcome.failed(index, "Conta não encontrada para o usuário."));
+                    failed.increment();
+                } else {
+                    outcomes.add(new Outcome(index, accountResults.get(i), null));
+                    ok.increment();
+                }
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Separa as operações cuja <code>Idempotency-Key</code> já foi usada: viram resultado (original ou erro de
+     * chave usada em outro comando) sem entrar na transação.
+     *
+     * @return as operações que ainda precisam ser aplicadas
+     */
+    private List<Map.Entry<String, List<Item>>> replayed(List<Map.Entry<String, List<Item>>> chunk, List<Outcome> outcomes) {
+        var pending = new ArrayList<Map.Entry<String, List<Item>>>(chunk.size());
+        for (var e : chunk) {
+            var toApply = new ArrayList<Item>(e.getValue().size());
+            for (var it : e.getValue()) {
+                if (it.idempotencyKey() == null) {
+                    toApply.add(it);
+                    continue;
+                }
+                try {
+                    var previous = gateway.replay(e.getKey(), it.idempotencyKey(), it.command());
+                    if (previous == null) {
+                        toApply.add(it);
+                        continue;
+                    }
+                    outcomes.add(new Outcome(it.index(), previous, null));
+                    ok.increment();
+                } catch (IllegalArgumentException ex) {
+                    outcomes.add(Outcome.failed(it.index(), ex.getMessage()));
+                    failed.increment();
+                }
+            }
+            if (!toApply.isEmpty()) pending.add(Map.entry(e.getKey(), toApply));
+        }
+        return pending;
+    }
+
+    private static TransactionCommand command(Operation op) {
+        if (op == null || op.type() == null) throw new IllegalArgumentException("Tipo da operação é obrigatório.");
+        return switch (op.type()) {
+            case DEPOSIT -> TransactionCommand.deposit(op.amount());
+            case BILL_PAYMENT -> TransactionCommand.payBill(op.amount());
+        };
+    }
+
+    /**
+     * Operação do lote (<code>userId</code> nulo = conta do chamador; <code>idempotencyKey</code> opcional).
+     */
+    public record Operation(String userId, TxType type, BigDecimal amount, String idempotencyKey) {
+    }
+
+    /**
+     * Resultado de uma operação, pelo índice no lote: <code>result</code> ou <code>error</code>.
+     */
+    public record Outcome(int index, CommandResult result, String error) {
+
+        static Outcome failed(int index, String error) {
+            return new Outcome(index, null, error);
+        }
+    }
+
+    /**
+     * Lote validado: operações por usuário (em ordem de <code>userId</code>) e as já recusadas.
+     */
+    public record Plan(TreeMap<String, List<Item>> byUser, List<Outcome> rejected) {
+    }
+
+    /**
+     * Operação já validada, seu índice no lote e a <code>Idempotency-Key</code> (ou <code>null</code>).
+     */
+    public record Item(int index, TransactionCommand command, String idempotencyKey) {
+    }
+}
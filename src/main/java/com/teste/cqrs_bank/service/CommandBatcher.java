@@ -0,0 +1,128 @@
+package com.teste.cqrs_bank.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * Group commit de comandos por usuário/conta.
+ *
+ * <ul>
+ *   <li>O primeiro comando de uma conta abre um lote e vira o líder: espera até <code>window</code>
+ *       (ou até o lote atingir <code>maxCommands</code>) e então executa o lote inteiro.</li>
+ *   <li>Comandos da mesma conta que chegam nesse intervalo entram no lote e só aguardam o resultado;
+ *       cada um recebe o seu {@link CommandResult} (mesma ordem de chegada).</li>
+ *   <li>Se o lote falhar, todos os comandos dele recebem a mesma exceção (nada foi commitado).</li>
+ * </ul>
+ *
+ * <p>Métrica: <code>commands.batch.size</code>.</p>
+ *
+ * @since 1.0
+ */
+class CommandBatcher {
+
+    private final ConcurrentHashMap<String, Batch> open = new ConcurrentHashMap<>();
+    private final BiFunction<String, List<TransactionCommand>, List<CommandResult>> executor;
+    private final long windowNanos;
+    private final int maxCommands;
+    private final DistributionSummary batchSize;
+
+    CommandBatcher(BiFunction<String, List<TransactionCommand>, List<CommandResult>> executor,
+                   long windowNanos,
+                   int maxCommands,
+                   MeterRegistry meters) {
+        this.executor = executor;
+        this.windowNanos = windowNanos;
+        this.maxCommands = maxCommands;
+        this.batchSize = meters.summary("commands.batch.size");
+    }
+
+    CommandResult submit(String userId, TransactionCommand cmd) {
+        while (true) {
+            var fresh = new Batch();
+            var batch = open.computeIfAbsent(userId, k -> fresh);
+            int index = batch.add(cmd, maxCommands);
+            if (index < 0) {
+                // lote já fechado (cheio ou em execução): tira do mapa e tenta no próximo
+                open.remove(userId, batch);
+                continue;
+            }
+            if (batch == fresh) lead(userId, batch);
+            return batch.await(index);
+        }
+    }
+
+    private void lead(String userId, Batch batch) {
+        var commands = batch.close(windowNanos);
+        open.remove(userId, batch);
+        batchSize.record(commands.size());
+        try {
+            batch.result.complete(executor.apply(userId, commands));
+        } catch (RuntimeException e) {
+            batch.result.completeExceptionally(e);
+        }
+    }
+
+    private static final class Batch {
+
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition full = lock.newCondition();
+        final List<TransactionCommand> commands = new ArrayList<>();
+        final CompletableFuture<List<CommandResult>> result = new CompletableFuture<>();
+        boolean closed;
+
+        /**
+         * Adiciona o comando e devolve a sua posição no lote, ou -1 se o lote já fechou.
+         */
+        int add(TransactionCommand cmd, int max) {
+            lock.lock();
+            try {
+                if (closed) return -1;
+                commands.add(cmd);
+                if (commands.size() >= max) {
+                    closed = true;
+                    full.signal();
+                }
+                return commands.size() - 1;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Espera a janela (ou o lote encher) e fecha o lote para novas entradas.
+         */
+        List<TransactionCommand> close(long windowNanos) {
+            lock.lock();
+            try {
+                long nanos = windowNanos;
+                while (!closed && nanos > 0) {
+                    nanos = full.awaitNanos(nanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                closed = true;
+                lock.unlock();
+            }
+            return List.copyOf(commands);
+        }
+
+        CommandResult await(int index) {
+            try {
+                return result.join().get(index);
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                throw e;
+            }
+        }
+    }
+}
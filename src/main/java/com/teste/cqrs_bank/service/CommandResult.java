@@ -0,0 +1,17 @@
+package com.teste.cqrs_bank.service;
+
+import com.teste.cqrs_bank.domain.account.Account;
+
+import java.math.BigDecimal;
+
+/**
+ * Resultado de um comando financeiro: conta, saldo resultante e versão de evento atribuída.
+ *
+ * @since 1.0
+ */
+public record CommandResult(String accountId, BigDecimal balance, long version) {
+
+    public static CommandResult of(Account account) {
+        return new CommandResult(account.getId(), account.getBalance(), account.getEventVersion());
+    }
+}
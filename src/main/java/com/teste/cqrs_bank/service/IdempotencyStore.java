@@ -0,0 +1,253 @@
+package com.teste.cqrs_bank.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.teste.cqrs_bank.config.CommandProperties;
+import com.teste.cqrs_bank.write.idempotency.IdempotencyRecord;
+import com.teste.cqrs_bank.write.idempotency.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Resultados de comandos por <code>Idempotency-Key</code>, usados pelo {@link TransactionCommandGateway}.
+ *
+ * <ul>
+ *   <li>{@link #replay} procura a chave num cache Caffeine (<code>app.commands.idempotency.max-size</code>/<code>ttl</code>)
+ *       e depois em <code>idempotency_keys</code>. Se encontrar, devolve o resultado original sem executar o
+ *       comando nem travar a conta.</li>
+ *   <li>{@link #record} executa o comando e grava a chave <b>na mesma transação</b>. Duas execuções concorrentes
+ *       com a mesma chave colidem na chave primária: a segunda tem o lançamento desfeito e recebe o resultado da
+ *       primeira.</li>
+ *   <li>{@link #recordBulk} faz o mesmo para as operações com chave de um lote de várias contas
+ *       (<code>POST /transactions/batch</code>).</li>
+ *   <li>A mesma chave com outro tipo ou valor responde <b>400</b>. Chaves mais antigas que <code>retention</code>
+ *       são removidas em lotes a cada <code>purge-interval</code>.</li>
+ * </ul>
+ *
+ * <p>Métricas: <code>cache.gets{cache=idempotency_keys,result=hit|miss}</code> e
+ * <code>commands.idempotency{result=replayed|recorded|raced}</code>.</p>
+ *
+ * @since 1.0
+ */
+@Component
+public class IdempotencyStore {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+    static final int MAX_KEY_LENGTH = 64;
+    private static final int PURGE_CHUNK = 1_000;
+
+    private final IdempotencyRecordRepository repo;
+    private final TransactionTemplate tx;
+    private final Cache<String, Receipt> cache;
+    private final Duration retention;
+    private final long purgeIntervalMs;
+
+    private final Counter replayed;
+    private final Counter recorded;
+    private final Counter raced;
+
+    private Thread purger;
+    private volatile boolean running = true;
+
+    public IdempotencyStore(IdempotencyRecordRepository repo,
+                            PlatformTransactionManager txManager,
+                            CommandProperties props,
+                            MeterRegistry meters) {
+        this.repo = repo;
+        this.tx = new TransactionTemplate(txManager);
+        var idempotency = props.idempotency();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(idempotency.maxSize())
+                .expireAfterWrite(idempotency.ttl())
+                .recordStats()
+                .build();
+        this.retention = idempotency.retention();
+        this.purgeIntervalMs = idempotency.purgeInterval().toMillis();
+        this.replayed = meters.counter("commands.idempotency", "result", "replayed");
+        this.recorded = meters.counter("commands.idempotency", "result", "recorded");
+        this.raced = meters.counter("commands.idempotency", "result", "raced");
+        CaffeineCacheMetrics.monitor(meters, cache, "idempotency_keys");
+    }
+
+    @PostConstruct
+    void start() {
+        purger = Thread.ofVirtual().name("idempotency-purge").start(this::purgeLoop);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        if (purger == null) return;
+        purger.interrupt();
+        purger.join(5_000);
+    }
+
+    /**
+     * Resultado já gravado para a chave, ou <code>null</code> se ela ainda não foi usada.
+     *
+     * @throws IllegalArgumentException chave inválida ou já usada com outro comando
+     */
+    public CommandResult replay(String userId, String key, TransactionCommand cmd) {
+        String id = id(userId, key);
+        var receipt = cache.getIfPresent(id);
+        if (receipt == null) {
+            receipt = repo.findById(id).map(Receipt::of).orElse(null);
+            if (receipt == null) return null;
+            cache.put(id, receipt);
+        }
+        var result = receipt.resultFor(cmd);
+        replayed.increment();
+        return result;
+    }
+
+    /**
+     * Executa o comando e grava a chave na mesma transação (as transações do {@link TransactionService}
+     * participam desta). Se outra requisição gravou a chave antes, devolve o resultado dela.
+     */
+    public CommandResult record(String userId, String key, TransactionCommand cmd, Supplier<CommandResult> command) {
+        String id = id(userId, key);
+        try {
+            var result = tx.execute(status -> {
+                var res = command.get();
+                repo.saveAndFlush(toRecord(id, userId, cmd, res));
+                return res;
+            });
+            cache.put(id, new Receipt(cmd, result));
+            recorded.increment();
+            return result;
+        } catch (DataIntegrityViolationException e) {
+            var receipt = repo.findById(id).map(Receipt::of).orElseThrow(() -> e);
+            cache.put(id, receipt);
+            raced.increment();
+            return receipt.resultFor(cmd);
+        }
+    }
+
+    /**
+     * Como {@link #record}, para um lote de várias contas: executa o lote e grava, na mesma transação, as chaves
+     * de <code>keysByUser</code> (mesma forma de <code>commandsByUser</code>; posição sem chave = <code>null</code>).
+     * As chaves já usadas devem ter sido tratadas antes por {@link #replay}.
+     *
+     * @throws ConcurrencyFailureException outra requisição gravou uma das chaves antes; o lote é desfeito
+     */
+    public Map<String, List<CommandResult>> recordBulk(Map<String, List<TransactionCommand>> commandsByUser,
+                                                       Map<String, List<String>> keysByUser,
+                                                       Supplier<Map<String, List<CommandResult>>> command) {
+        var receipts = new HashMap<String, Receipt>();
+        Map<String, List<CommandResult>> results;
+        try {
+            results = tx.execute(status -> {
+                receipts.clear();
+                var res = command.get();
+                var records = new ArrayList<IdempotencyRecord>();
+                keysByUser.forEach((userId, keys) -> {
+                    var userResults = res.get(userId);
+                    if (userResults == null) return; // conta não encontrada: nada foi lançado
+                    var cmds = commandsByUser.get(userId);
+                    for (int i = 0; i < keys.size(); i++) {
+                        if (keys.get(i) == null) continue;
+                        String id = id(userId, keys.get(i));
+                        records.add(toRecord(id, userId, cmds.get(i), userResults.get(i)));
+                        receipts.put(id, new Receipt(cmds.get(i), userResults.get(i)));
+                    }
+                });
+                repo.saveAll(records);
+                repo.flush();
+                return res;
+            });
+        } catch (DataIntegrityViolationException e) {
+            raced.increment();
+            throw new ConcurrencyFailureException("Idempotency-Key em uso por outra requisição; repita a operação.", e);
+        }
+        cache.putAll(receipts);
+        recorded.increment(receipts.size());
+        return results;
+    }
+
+    private static IdempotencyRecord toRecord(String id, String userId, TransactionCommand cmd, CommandResult res) {
+        return IdempotencyRecord.builder()
+                .id(id)
+                .userId(userId)
+                .type(cmd.type())
+                .amount(cmd.amount())
+                .accountId(res.accountId())
+                .balance(res.balance())
+                .version(res.version())
+                .build();
+    }
+
+    private void purgeLoop() {
+        while (running) {
+            try {
+                Thread.sleep(purgeIntervalMs);
+                purge();
+            } catch (InterruptedException e) {
+                if (!running) return;
+            } catch (RuntimeException e) {
+                log.warn("falha ao remover chaves de idempotência vencidas", e);
+            }
+        }
+    }
+
+    /**
+     * Remove as chaves mais antigas que <code>retention</code>, um lote por transação.
+     *
+     * @return linhas removidas
+     */
+    long purge() {
+        var before = LocalDateTime.now().minus(retention);
+        long total = 0;
+        int deleted;
+        do {
+            Integer n = tx.execute(status -> repo.deleteCreatedBefore(before, PURGE_CHUNK));
+            deleted = n == null ? 0 : n;
+            total += deleted;
+        } while (deleted == PURGE_CHUNK && running);
+        if (total > 0) log.debug("{} chaves de idempotência vencidas removidas", total);
+        return total;
+    }
+
+    static String id(String userId, String key) {
+        if (key == null || key.isEmpty() || key.length() > MAX_KEY_LENGTH
+                || !key.chars().allMatch(c -> c > 0x20 && c < 0x7f)) {
+            throw new IllegalArgumentException("Idempotency-Key inválida (1 a 64 caracteres ASCII visíveis).");
+        }
+        return userId + ":" + key;
+    }
+
+    /**
+     * Comando original e seu resultado.
+     */
+    private record Receipt(TransactionCommand cmd, CommandResult result) {
+
+        static Receipt of(IdempotencyRecord r) {
+            return new Receipt(new TransactionCommand(r.getType(), r.getAmount()),
+                    new CommandResult(r.getAccountId(), r.getBalance(), r.getVersion()));
+        }
+
+        CommandResult resultFor(TransactionCommand requested) {
+            if (cmd.type() != requested.type() || cmd.amount().compareTo(requested.amount()) != 0) {
+                throw new IllegalArgumentException("Idempotency-Key já usada em outro comando.");
+            }
+            return result;
+        }
+    }
+}
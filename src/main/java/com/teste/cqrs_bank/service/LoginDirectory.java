@@ -0,0 +1,138 @@
+package com.teste.cqrs_bank.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.teste.cqrs_bank.config.LoginProperties;
+import com.teste.cqrs_bank.domain.user.User;
+import com.teste.cqrs_bank.domain.user.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Cache das consultas de login usadas por {@link AuthService}, na frente de <code>users</code>.
+ *
+ * <ul>
+ *   <li>Cache Caffeine por login (minúsculo, como a collation de <code>users.login</code>): positivo guarda
+ *       id/login/hash por <code>app.security.logins.ttl</code>; negativo ("não existe") por
+ *       <code>negative-ttl</code>. O signup substitui a entrada na hora ({@link #registered(User)}).</li>
+ *   <li>Filtro de Bloom carregado em segundo plano na subida (keyset sobre <code>uq_users_login</code>) e
+ *       alimentado a cada signup. Só é usado no pré-check do signup: "certamente livre" dispensa o MySQL, e a
+ *       constraint única continua sendo a garantia final (inclusive para cadastros feitos em outra instância).
+ *       O login não consulta o filtro, porque um falso "não existe" ali recusaria um usuário válido.</li>
+ * </ul>
+ *
+ * <p>Métricas: <code>cache.gets{cache=logins,result=hit|miss}</code> e
+ * <code>auth.logins.bloom.skipped</code> (checagens de signup resolvidas sem o MySQL).</p>
+ *
+ * @since 1.0
+ */
+@Component
+public class LoginDirectory {
+
+    private static final Logger log = LoggerFactory.getLogger(LoginDirectory.class);
+    private static final int LOAD_CHUNK = 10_000;
+
+    private final UserRepository users;
+    private final Cache<String, Optional<Credentials>> cache;
+    private final LoginBloomFilter bloom;
+    private final Counter bloomSkipped;
+    private volatile boolean bloomReady;
+
+    public LoginDirectory(UserRepository users, LoginProperties props, MeterRegistry meters) {
+        this.users = users;
+        long ttl = props.ttl().toNanos();
+        long negativeTtl = props.negativeTtl().toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(props.maxSize())
+                .expireAfter(Expiry.<String, Optional<Credentials>>creating(
+                        (k, v) -> Duration.ofNanos(v.isPresent() ? ttl : negativeTtl)))
+                .recordStats()
+                .build();
+        var bloomProps = props.bloom();
+        this.bloom = bloomProps.enabled()
+                ? new LoginBloomFilter(bloomProps.expectedInsertions(), bloomProps.fpp())
+                : null;
+        this.bloomSkipped = meters.counter("auth.logins.bloom.skipped");
+        CaffeineCacheMetrics.monitor(meters, cache, "logins");
+    }
+
+    /**
+     * Credenciais do login (cache ou uma leitura no MySQL).
+     */
+    public Optional<Credentials> find(String login) {
+        return cache.get(key(login), k -> users.findByLogin(login).map(Credentials::of));
+    }
+
+    /**
+     * Pré-check do signup: <code>false</code> sem ir ao MySQL quando o filtro garante que o login é livre.
+     */
+    public boolean isTaken(String login) {
+        if (bloomReady && !bloom.mightContain(key(login))) {
+            bloomSkipped.increment();
+            return false;
+        }
+        return find(login).isPresent();
+    }
+
+    /**
+     * Registra um usuário recém-criado (após o commit): entra no filtro e substitui qualquer entrada negativa.
+     */
+    public void registered(User user) {
+        if (bloom != null) bloom.put(key(user.getLogin()));
+        cache.put(key(user.getLogin()), Optional.of(Credentials.of(user)));
+    }
+
+    /**
+     * Descarta o que se sabe do login (ex.: conflito na constraint única).
+     */
+    public void evict(String login) {
+        cache.invalidate(key(login));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void loadBloom() {
+        if (bloom == null) return;
+        Thread.ofVirtual().name("login-bloom-load").start(() -> {
+            try {
+                long total = 0;
+                String after = "";
+                for (var chunk = users.findLoginsAfter(after, Limit.of(LOAD_CHUNK)); !chunk.isEmpty();
+                     chunk = users.findLoginsAfter(after, Limit.of(LOAD_CHUNK))) {
+                    chunk.forEach(l -> bloom.put(key(l)));
+                    total += chunk.size();
+                    after = chunk.get(chunk.size() - 1);
+                }
+                bloomReady = true;
+                log.info("filtro de logins carregado ({} logins)", total);
+            } catch (RuntimeException e) {
+                log.warn("falha ao carregar filtro de logins; signup segue consultando o MySQL", e);
+            }
+        });
+    }
+
+    private static String key(String login) {
+        return login.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Dados de <code>users</code> necessários para autenticar.
+     */
+    public record Credentials(String userId, String login, String passwordHash) {
+
+        static Credentials of(User user) {
+            return new Credentials(user.getId(), user.getLogin(), user.getPasswordHash());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.teste.cqrs_bank.service;
+
+import com.teste.cqrs_bank.domain.transaction.TxType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Comando financeiro já validado (valor positivo depois de arredondado para escala 2 e dentro da
+ * precisão de <code>amount</code>/<code>balance</code>), usado no group commit
+ * ({@link TransactionService#applyBatch(String, java.util.List)}).
+ *
+ * @since 1.0
+ */
+public record TransactionCommand(TxType type, BigDecimal amount) {
+
+    /**
+     * Dígitos inteiros aceitos (<code>DECIMAL(19,2)</code>).
+     */
+    public static final int MAX_INTEGER_DIGITS = 17;
+
+    public static TransactionCommand deposit(BigDecimal amount) {
+        return new TransactionCommand(TxType.DEPOSIT, positive(amount, "Valor de depósito deve ser positivo."));
+    }
+
+    public static TransactionCommand payBill(BigDecimal amount) {
+        return new TransactionCommand(TxType.BILL_PAYMENT, positive(amount, "Valor do pagamento deve ser positivo."));
+    }
+
+    private static BigDecimal positive(BigDecimal amount, String message) {
+        if (amount == null) throw new IllegalArgumentException(message);
+        var rounded = amount.setScale(2, RoundingMode.HALF_EVEN);
+        if (rounded.signum() <= 0) throw new IllegalArgumentException(message);
+        if (rounded.precision() - rounded.scale() > MAX_INTEGER_DIGITS) {
+            throw new IllegalArgumentException("Valor acima do limite de " + MAX_INTEGER_DIGITS + " dígitos inteiros.");
+        }
+        return rounded;
+    }
+}
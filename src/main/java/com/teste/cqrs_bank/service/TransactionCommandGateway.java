@@ -0,0 +1,168 @@
+package com.teste.cqrs_bank.service;
+
+import com.teste.cqrs_bank.config.CommandProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Porta de entrada dos comandos financeiros usada pela API.
+ *
+ * <p>No modo <code>app.commands.locking=optimistic</code>, cada chamada ao
+ * {@link com.teste.cqrs_bank.service.TransactionService} roda em transação própria e, se o
+ * <code>@Version</code> da conta indicar conflito, é repetida até <code>maxAttempts</code> vezes com
+ * backoff exponencial e jitter. Métricas: <code>commands.optimistic.retries</code> e
+ * <code>commands.optimistic.exhausted</code> (comparar com <code>commands.account.load</code> do modo pessimista).</p>
+ *
+ * <p>Com <code>app.commands.atomic-pay-bill=true</code> o pagamento usa
+ * {@link TransactionService#payBillAtomic(String, BigDecimal)}, que não sofre conflito de versão
+ * e por isso dispensa as novas tentativas.</p>
+ *
+ * <p>Com <code>app.commands.batching.enabled=true</code> os comandos passam pelo {@link CommandBatcher}
+ * (group commit por conta via {@link TransactionService#applyBatch(String, java.util.List)}); o lote
+ * inteiro é a unidade de nova tentativa no modo otimista.</p>
+ *
+ * <p>Comandos com <code>Idempotency-Key</code> passam pelo {@link IdempotencyStore}: uma chave já usada devolve o
+ * resultado original antes de qualquer lock; uma chave nova roda o comando fora do group commit, com a chave
+ * gravada na mesma transação (a nova tentativa do modo otimista repete as duas coisas juntas).</p>
+ *
+ * @since 1.0
+ */
+@Service
+public class TransactionCommandGateway {
+
+    private final TransactionService svc;
+    private final IdempotencyStore idempotency;
+    private final boolean optimistic;
+    private final boolean atomicPayBill;
+    private final CommandBatcher batcher;
+    private final int maxAttempts;
+    private final long backoffNanos;
+
+    private final Counter retries;
+    private final Counter exhausted;
+
+    public TransactionCommandGateway(TransactionService svc,
+                                     IdempotencyStore idempotency,
+                                     CommandProperties props,
+                                     MeterRegistry meters) {
+        this.svc = svc;
+        this.idempotency = idempotency;
+        this.optimistic = props.locking() == CommandProperties.Locking.OPTIMISTIC;
+        this.atomicPayBill = props.atomicPayBill();
+        this.maxAttempts = props.optimistic().maxAttempts();
+        this.backoffNanos = props.optimistic().backoff().toNanos();
+        this.retries = meters.counter("commands.optimistic.retries");
+        this.exhausted = meters.counter("commands.optimistic.exhausted");
+
+        var batching = props.batching();
+        this.batcher = batching.enabled()
+                ? new CommandBatcher((userId, cmds) -> execute(() -> svc.applyBatch(userId, cmds)),
+                batching.window().toNanos(), batching.maxCommands(), meters)
+                : null;
+    }
+
+    /**
+     * Depósito (CREDIT). Ver {@link TransactionService#deposit(String, BigDecimal)}.
+     */
+    public CommandResult deposit(String userId, BigDecimal amount) {
+        if (batcher != null) return batcher.submit(userId, TransactionCommand.deposit(amount));
+        return CommandResult.of(execute(() -> svc.deposit(userId, amount)));
+    }
+
+    /**
+     * Pagamento (DEBIT). Ver {@link TransactionService#payBill(String, BigDecimal)}.
+     */
+    public CommandResult payBill(String userId, BigDecimal amount) {
+        if (batcher != null) return batcher.submit(userId, TransactionCommand.payBill(amount));
+        if (atomicPayBill) return svc.payBillAtomic(userId, amount);
+        return CommandResult.of(execute(() -> svc.payBill(userId, amount)));
+    }
+
+    /**
+     * Depósito com <code>Idempotency-Key</code> (<code>null</code> = sem idempotência).
+     */
+    public CommandResult deposit(String userId, BigDecimal amount, String idempotencyKey) {
+        if (idempotencyKey == null) return deposit(userId, amount);
+        return idempotent(userId, idempotencyKey, TransactionCommand.deposit(amount),
+                () -> CommandResult.of(svc.deposit(userId, amount)));
+    }
+
+    /**
+     * Pagamento com <code>Idempotency-Key</code> (<code>null</code> = sem idempotência).
+     */
+    public CommandResult payBill(String userId, BigDecimal amount, String idempotencyKey) {
+        if (idempotencyKey == null) return payBill(userId, amount);
+        return idempotent(userId, idempotencyKey, TransactionCommand.payBill(amount),
+                atomicPayBill
+                        ? () -> svc.payBillAtomic(userId, amount)
+                        : () -> CommandResult.of(svc.payBill(userId, amount)));
+    }
+
+    /**
+     * Comandos de várias contas numa transação. Ver {@link TransactionService#applyBulk(java.util.Map)};
+     * no modo otimista a transação inteira é a unidade de nova tentativa.
+     */
+    public Map<String, List<CommandResult>> applyBulk(Map<String, List<TransactionCommand>> commandsByUser) {
+        return execute(() -> svc.applyBulk(commandsByUser));
+    }
+
+    /**
+     * Como {@link #applyBulk(Map)}, gravando na mesma transação as <code>Idempotency-Key</code>s de
+     * <code>keysByUser</code> (ver {@link IdempotencyStore#recordBulk}); vazio = sem idempotência.
+     */
+    public Map<String, List<CommandResult>> applyBulk(Map<String, List<TransactionCommand>> commandsByUser,
+                                                      Map<String, List<String>> keysByUser) {
+        if (keysByUser.isEmpty()) return applyBulk(commandsByUser);
+        return execute(() -> idempotency.recordBulk(commandsByUser, keysByUser, () -> svc.applyBulk(commandsByUser)));
+    }
+
+    /**
+     * Resultado já gravado para a chave (ver {@link IdempotencyStore#replay}), ou <code>null</code>.
+     */
+    public CommandResult replay(String userId, String idempotencyKey, TransactionCommand cmd) {
+        return idempotency.replay(userId, idempotencyKey, cmd);
+    }
+
+    private CommandResult idempotent(String userId, String key, TransactionCommand cmd, Supplier<CommandResult> command) {
+        var previous = idempotency.replay(userId, key, cmd);
+        if (previous != null) return previous;
+        return execute(() -> idempotency.record(userId, key, cmd, command));
+    }
+
+    private <T> T execute(Supplier<T> command) {
+        if (!optimistic) return command.get();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return command.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    throw new ConcurrencyFailureException("Conta com alta concorrência; tente novamente.", e);
+                }
+                retries.increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        long base = backoffNanos << Math.min(attempt - 1, 10);
+        long nanos = base + ThreadLocalRandom.current().nextLong(Math.max(1, base));
+        try {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrencyFailureException("Comando interrompido durante nova tentativa.", e);
+        }
+    }
+}
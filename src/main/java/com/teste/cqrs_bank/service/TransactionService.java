@@ -1,16 +1,24 @@
 package com.teste.cqrs_bank.service;
 
+import com.teste.cqrs_bank.config.CommandProperties;
 import com.teste.cqrs_bank.domain.account.Account;
 import com.teste.cqrs_bank.domain.account.AccountRepository;
 import com.teste.cqrs_bank.domain.transaction.Transaction;
 import com.teste.cqrs_bank.domain.transaction.TransactionRepository;
 import com.teste.cqrs_bank.domain.transaction.TxType;
 import com.teste.cqrs_bank.write.events.DomainEventPublisher;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.transaction.Transactional;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Serviço de comandos (Write Model) que aplica as regras de negócio de transações,
@@ -25,7 +33,12 @@ import java.math.RoundingMode;
  *       depósito e a eventual sobra é creditada no saldo.</li>
  * </ul>
  *
- * <p>Após salvar a transação e atualizar o saldo, publica
+ * <p>Concorrência configurável em <code>app.commands.locking</code>: lock pessimista na linha da conta
+ * (padrão) ou otimista via <code>@Version</code>, com novas tentativas no
+ * {@link com.teste.cqrs_bank.service.TransactionCommandGateway}.</p>
+ *
+ * <p>Após salvar a transação, atualizar o saldo e avançar a versão de evento da conta
+ * (tudo na mesma transação), publica
  * {@link com.teste.cqrs_bank.write.events.TransactionEvent} via
  * {@link com.teste.cqrs_bank.write.events.DomainEventPublisher}.</p>
  *
@@ -41,13 +54,19 @@ public class TransactionService {
     private final AccountRepository accountRepository;
     private final TransactionRepository transactionRepository;
     private final DomainEventPublisher eventPublisher;
+    private final boolean optimistic;
+    private final Timer lockWait;
 
     public TransactionService(AccountRepository accountRepository,
                               TransactionRepository transactionRepository,
-                              DomainEventPublisher eventPublisher) {
+                              DomainEventPublisher eventPublisher,
+                              CommandProperties props,
+                              MeterRegistry meters) {
         this.accountRepository = accountRepository;
         this.transactionRepository = transactionRepository;
         this.eventPublisher = eventPublisher;
+        this.optimistic = props.locking() == CommandProperties.Locking.OPTIMISTIC;
+        this.lockWait = meters.timer("commands.account.load", "locking", props.locking().name().toLowerCase());
     }
 
     /**
@@ -55,14 +74,122 @@ public class TransactionService {
      */
     @Transactional
     public Account deposit(String userId, BigDecimal amount) {
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new IllegalArgumentException("Valor de depósito deve ser positivo.");
+        amount = TransactionCommand.deposit(amount).amount();
+
+        var account = loadAccount(userId);
+        var created = applyDeposit(account, amount);
+        account.nextEventVersion();
+
+        var saved = accountRepository.save(account);
+        eventPublisher.publishTransactionEvent(saved, created);
+        return saved;
+    }
+
+    /**
+     * Registra pagamento (DEBIT). Pode deixar a conta negativa.
+     */
+    @Transactional
+    public Account payBill(String userId, BigDecimal amount) {
+        amount = TransactionCommand.payBill(amount).amount();
+
+        var account = loadAccount(userId);
+        var created = applyPayBill(account, amount);
+        account.nextEventVersion();
+        var saved = accountRepository.save(account);
+
+        // publica evento para projeção
+        eventPublisher.publishTransactionEvent(saved, created);
+        return saved;
+    }
+
+    /**
+     * Aplica, em ordem, vários comandos da mesma conta sob um único lock e um único commit (group commit).
+     * Cada comando segue exatamente as regras de {@link #deposit} / {@link #payBill}, recebe a sua própria
+     * versão de evento e gera o seu evento; o retorno traz o resultado de cada comando, na mesma ordem.
+     */
+    @Transactional
+    public List<CommandResult> applyBatch(String userId, List<TransactionCommand> commands) {
+        var account = loadAccount(userId);
+        var results = applyAll(account, commands);
+        accountRepository.save(account);
+        return results;
+    }
+
+    /**
+     * Aplica comandos de várias contas numa única transação: as contas são carregadas (e travadas, no modo
+     * pessimista) numa só consulta em ordem de <code>user_id</code>, os comandos de cada conta seguem
+     * {@link #applyBatch} e todos os lançamentos vão para o banco no mesmo flush (inserts em lote do JDBC).
+     * Usuários sem conta ficam fora do mapa de retorno.
+     */
+    @Transactional
+    public Map<String, List<CommandResult>> applyBulk(Map<String, List<TransactionCommand>> commandsByUser) {
+        var userIds = commandsByUser.keySet();
+        var accounts = lockWait.record(() -> optimistic
+                ? accountRepository.findAllByUserIdIn(userIds)
+                : accountRepository.findAllByUserIdInForUpdate(userIds));
+
+        var results = new HashMap<String, List<CommandResult>>(accounts.size() * 2);
+        for (var account : accounts) {
+            String userId = account.getUser().getId();
+            results.put(userId, applyAll(account, commandsByUser.get(userId)));
+        }
+        accountRepository.saveAll(accounts);
+        return results;
+    }
+
+    /**
+     * Pagamento (DEBIT) pelo caminho rápido: como o saldo pode negativar, não há leitura prévia.
+     * Um único UPDATE debita e avança as versões (o lock de linha só começa aqui), a leitura seguinte
+     * devolve saldo/versão resultantes e o lançamento é inserido com referência à conta, sem carregar
+     * nem fazer dirty checking da entidade. O <code>lock_version</code> também é incrementado, então
+     * comandos no modo otimista concorrentes detectam o conflito normalmente.
+     */
+    @Transactional
+    public CommandResult payBillAtomic(String userId, BigDecimal amount) {
+        amount = TransactionCommand.payBill(amount).amount();
+
+        if (accountRepository.debitByUserId(userId, amount, LocalDateTime.now()) == 0) {
+            throw new IllegalArgumentException("Conta não encontrada para o usuário.");
         }
-        amount = amount.setScale(2, RM);
+        var state = accountRepository.findBalanceByUserId(userId)
+                .orElseThrow(() -> new IllegalStateException("Conta removida durante o débito."));
 
-        var account = accountRepository.findByUserIdForUpdate(userId)
-                .orElseThrow(() -> new IllegalArgumentException("Conta não encontrada para o usuário."));
+        var tx = Transaction.builder()
+                .account(accountRepository.getReferenceById(state.getId()))
+                .type(TxType.BILL_PAYMENT)
+                .amount(amount)
+                .occurredAt(Transaction.now())
+                .build();
+        transactionRepository.save(tx);
+
+        eventPublisher.publishTransactionEvent(state.getId(), state.getUserId(),
+                state.getEventVersion(), state.getBalance(), List.of(tx));
+        return new CommandResult(state.getId(), state.getBalance(), state.getEventVersion());
+    }
+
+    /**
+     * Aplica os comandos em ordem sobre a conta já carregada; cada um avança a versão e publica o seu evento.
+     */
+    private List<CommandResult> applyAll(Account account, List<TransactionCommand> commands) {
+        var results = new ArrayList<CommandResult>(commands.size());
+        for (var cmd : commands) {
+            var created = switch (cmd.type()) {
+                case DEPOSIT -> applyDeposit(account, cmd.amount());
+                case BILL_PAYMENT -> applyPayBill(account, cmd.amount());
+            };
+            account.nextEventVersion();
+            eventPublisher.publishTransactionEvent(account, created);
+            results.add(CommandResult.of(account));
+        }
+        return results;
+    }
 
+    /**
+     * Regra do depósito sobre a conta já carregada: quita o principal, cobra o juro do próprio
+     * depósito e credita a sobra. Retorna os lançamentos criados (juros primeiro, depois o depósito).
+     */
+    private List<Transaction> applyDeposit(Account account, BigDecimal amount) {
+        var created = new ArrayList<Transaction>(2);
         BigDecimal remaining = amount;
         BigDecimal balance = account.getBalance();
 
@@ -80,51 +207,48 @@ public class TransactionService {
 
             BigDecimal paymentRecorded = principalPaid.add(interestCharged).setScale(2, RM);
             if (paymentRecorded.compareTo(BigDecimal.ZERO) > 0) {
-                transactionRepository.save(Transaction.builder()
-                        .account(account)
-                        .type(TxType.BILL_PAYMENT)
-                        .amount(interestCharged)
-                        .build());
+                created.add(record(account, TxType.BILL_PAYMENT, interestCharged));
             }
         }
 
-        transactionRepository.save(Transaction.builder()
-                .account(account)
-                .type(TxType.DEPOSIT)
-                .amount(amount)
-                .build());
+        created.add(record(account, TxType.DEPOSIT, amount));
         account.setBalance(account.getBalance().add(remaining));
-
-        var saved = accountRepository.save(account);
-        eventPublisher.publishTransactionEvent(saved.getId());
-        return saved;
+        return created;
     }
 
     /**
-     * Registra pagamento (DEBIT). Pode deixar a conta negativa.
+     * Débito sobre a conta já carregada, podendo negativar.
      */
-    @Transactional
-    public Account payBill(String userId, BigDecimal amount) {
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new IllegalArgumentException("Valor do pagamento deve ser positivo.");
-        }
-        amount = amount.setScale(2, RM);
+    private List<Transaction> applyPayBill(Account account, BigDecimal amount) {
+        var tx = record(account, TxType.BILL_PAYMENT, amount);
+        account.setBalance(account.getBalance().subtract(amount));
+        return List.of(tx);
+    }
 
-        var account = accountRepository.findByUserIdForUpdate(userId)
-                .orElseThrow(() -> new IllegalArgumentException("Conta não encontrada para o usuário."));
+    /**
+     * Carrega a conta do usuário: com lock PESSIMISTIC_WRITE (padrão) ou sem lock no modo otimista,
+     * em que o conflito é detectado pelo <code>@Version</code> no commit. O tempo (inclui a espera pelo
+     * lock de linha) é medido em <code>commands.account.load</code>.
+     */
+    private Account loadAccount(String userId) {
+        return lockWait.record(() -> (optimistic
+                ? accountRepository.findByUserId(userId)
+                : accountRepository.findByUserIdForUpdate(userId))
+                .orElseThrow(() -> new IllegalArgumentException("Conta não encontrada para o usuário.")));
+    }
 
-        // debita, podendo negativar
-        transactionRepository.save(Transaction.builder()
+    /**
+     * Persiste o lançamento e devolve a própria instância. <code>occurredAt</code> é definido aqui (o evento
+     * é montado antes do INSERT); o id é preenchido no persist.
+     */
+    private Transaction record(Account account, TxType type, BigDecimal amount) {
+        var tx = Transaction.builder()
                 .account(account)
-                .type(TxType.BILL_PAYMENT)
+                .type(type)
                 .amount(amount)
-                .build());
-
-        account.setBalance(account.getBalance().subtract(amount));
-        var saved = accountRepository.save(account);
-
-        // publica evento para projeção
-        eventPublisher.publishTransactionEvent(saved.getId());
-        return saved;
+                .occurredAt(Transaction.now())
+                .build();
+        transactionRepository.save(tx);
+        return tx;
     }
 }
@@ -1,24 +1,80 @@
 package com.teste.cqrs_bank.write.events;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.teste.cqrs_bank.config.ProjectionProperties;
+import com.teste.cqrs_bank.domain.account.Account;
+import com.teste.cqrs_bank.domain.transaction.Transaction;
+import com.teste.cqrs_bank.write.outbox.OutboxEvent;
+import com.teste.cqrs_bank.write.outbox.OutboxEventRepository;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 
+import java.math.BigDecimal;
+import java.util.List;
+
 /**
  * Publicador de eventos de domínio do Write Model para acionar a projeção (Read Model).
  * Atualmente publica {@link com.teste.cqrs_bank.write.events.TransactionEvent}.
  *
+ * <p>Com <code>app.projection.outbox.enabled=true</code> o evento é gravado em
+ * <code>projection_outbox</code> na mesma transação do comando (sem perda se a JVM cair
+ * após o commit) e entregue pelo {@link com.teste.cqrs_bank.write.outbox.OutboxRelay};
+ * caso contrário segue pelo {@link org.springframework.context.ApplicationEventPublisher}.</p>
+ *
  * @since 1.0
  */
 @Component
 public class DomainEventPublisher {
 
     private final ApplicationEventPublisher publisher;
+    private final OutboxEventRepository outbox;
+    private final ObjectMapper json;
+    private final boolean outboxEnabled;
 
-    public DomainEventPublisher(ApplicationEventPublisher publisher) {
+    public DomainEventPublisher(ApplicationEventPublisher publisher,
+                                OutboxEventRepository outbox,
+                                ObjectMapper json,
+                                ProjectionProperties props) {
         this.publisher = publisher;
+        this.outbox = outbox;
+        this.json = json;
+        this.outboxEnabled = props.outbox().enabled();
     }
 
-    public void publishTransactionEvent(String accountId) {
-        publisher.publishEvent(new TransactionEvent(accountId));
+    /**
+     * Publica o saldo resultante, a versão de evento já atribuída à conta e as transações
+     * criadas pelo comando (na ordem de persistência). Deve ser chamado dentro da transação do comando.
+     */
+    public void publishTransactionEvent(Account account, List<Transaction> transactions) {
+        publishTransactionEvent(account.getId(), account.getUser().getId(),
+                account.getEventVersion(), account.getBalance(), transactions);
+    }
+
+    /**
+     * Variante para comandos que não carregam a entidade {@link Account} (ex.: débito atômico).
+     */
+    public void publishTransactionEvent(String accountId, String userId, long version,
+                                        BigDecimal balance, List<Transaction> transactions) {
+        var evt = new TransactionEvent(
+                accountId,
+                userId,
+                version,
+                balance,
+                transactions.stream().map(TransactionEvent.Entry::of).toList());
+
+        if (!outboxEnabled) {
+            publisher.publishEvent(evt);
+            return;
+        }
+        try {
+            outbox.save(OutboxEvent.builder()
+                    .accountId(evt.accountId())
+                    .version(evt.version())
+                    .payload(json.writeValueAsString(evt))
+                    .build());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Falha ao serializar evento para o outbox.", e);
+        }
     }
 }
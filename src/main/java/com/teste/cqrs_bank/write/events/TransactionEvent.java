@@ -1,10 +1,55 @@
 package com.teste.cqrs_bank.write.events;
 
+import com.teste.cqrs_bank.domain.transaction.Transaction;
+import com.teste.cqrs_bank.domain.transaction.TxType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
 /**
  * Evento de domínio emitido após mutações no Write Model para atualização da projeção.
- * Carrega o <code>accountId</code> que deve ser (re)processado no Read Model.
+ * Carrega <code>accountId</code>/<code>userId</code>, a <code>version</code> sequencial da conta,
+ * o saldo resultante e as transações criadas pelo comando, permitindo que o Read Model aplique
+ * a mudança de forma incremental e idempotente, sem reler o MySQL.
+ *
+ * <p>A <code>version</code> é monotônica por conta (atribuída na mesma transação do comando):
+ * eventos com versão já aplicada são descartados; saltos de versão indicam lacuna e pedem rebuild.
+ * Um evento sem payload (<code>version = 0</code>) pede a reconstrução completa da projeção.</p>
  *
  * @since 1.0
  */
-public record TransactionEvent(String accountId) {
+public record TransactionEvent(String accountId,
+                               String userId,
+                               long version,
+                               BigDecimal balance,
+                               List<Entry> transactions) {
+
+    public TransactionEvent {
+        transactions = transactions == null ? List.of() : List.copyOf(transactions);
+    }
+
+    /**
+     * Evento de reconstrução completa (sem payload incremental).
+     */
+    public TransactionEvent(String accountId) {
+        this(accountId, null, 0L, null, List.of());
+    }
+
+    /**
+     * Indica se o evento traz dados suficientes para atualização incremental.
+     */
+    public boolean incremental() {
+        return version > 0 && balance != null && !transactions.isEmpty();
+    }
+
+    /**
+     * Lançamento criado pelo comando, na ordem em que foi persistido.
+     */
+    public record Entry(String id, TxType type, BigDecimal amount, LocalDateTime occurredAt) {
+
+        public static Entry of(Transaction tx) {
+            return new Entry(tx.getId(), tx.getType(), tx.getAmount(), tx.getOccurredAt());
+        }
+    }
 }
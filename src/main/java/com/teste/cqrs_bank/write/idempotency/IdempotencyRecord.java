@@ -0,0 +1,67 @@
+package com.teste.cqrs_bank.write.idempotency;
+
+import com.teste.cqrs_bank.domain.transaction.TxType;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.springframework.data.domain.Persistable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Resultado de um comando financeiro associado a um <code>Idempotency-Key</code> (Write Model).
+ * Gravado na mesma transação do comando; o id é <code>userId:key</code>, então uma segunda execução
+ * concorrente com a mesma chave falha na chave primária e tem o lançamento desfeito.
+ *
+ * <p>Sempre um insert ({@link #isNew()}): o <code>save</code> não faz o <code>SELECT</code> prévio do merge.</p>
+ *
+ * @since 1.0
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EqualsAndHashCode(of = "id")
+@Entity
+@Table(
+        name = "idempotency_keys",
+        indexes = {
+                @Index(name = "idx_idempotency_keys_created_at", columnList = "created_at")
+        }
+)
+public class IdempotencyRecord implements Persistable<String> {
+
+    @Id
+    @Column(name = "id", length = 101)
+    private String id;
+
+    @Column(name = "user_id", nullable = false, length = 36, columnDefinition = "char(36)")
+    private String userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 20)
+    private TxType type;
+
+    @Column(name = "amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @Column(name = "account_id", nullable = false, length = 36, columnDefinition = "char(36)")
+    private String accountId;
+
+    @Column(name = "balance", nullable = false, precision = 19, scale = 2)
+    private BigDecimal balance;
+
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, columnDefinition = "datetime(6)")
+    private LocalDateTime createdAt;
+
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
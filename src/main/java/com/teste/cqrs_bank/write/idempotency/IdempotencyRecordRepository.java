@@ -0,0 +1,20 @@
+package com.teste.cqrs_bank.write.idempotency;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repositório JPA das chaves de idempotência.
+ * A limpeza remove as linhas vencidas em lotes pelo índice de <code>created_at</code> (chamar em transação).
+ *
+ * @since 1.0
+ */
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    @Modifying
+    @Query(value = "delete from idempotency_keys where created_at < :before limit :limit", nativeQuery = true)
+    int deleteCreatedBefore(LocalDateTime before, int limit);
+}
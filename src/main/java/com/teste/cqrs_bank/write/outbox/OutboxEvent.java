@@ -0,0 +1,53 @@
+package com.teste.cqrs_bank.write.outbox;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Linha do outbox transacional da projeção (Write Model).
+ * Gravada na mesma transação de Account/Transaction; o <code>payload</code> é o
+ * {@link com.teste.cqrs_bank.write.events.TransactionEvent} serializado em JSON.
+ *
+ * <p>Removida pelo {@link com.teste.cqrs_bank.write.outbox.OutboxRelay} depois de aplicada no Mongo; a que
+ * falha repetidamente fica estacionada na tabela (<code>attempts</code>) para inspeção.</p>
+ *
+ * @since 1.0
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EqualsAndHashCode(of = "id")
+@Entity
+@Table(name = "projection_outbox")
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "account_id", nullable = false, length = 36, columnDefinition = "char(36)")
+    private String accountId;
+
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "longtext")
+    private String payload;
+
+    /**
+     * Rodadas do relay em que a linha falhou; ao chegar em <code>app.projection.outbox.max-attempts</code>
+     * a linha fica estacionada (não é mais lida) e a conta vai para rebuild.
+     */
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, columnDefinition = "datetime(6)")
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,26 @@
+package com.teste.cqrs_bank.write.outbox;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repositório JPA do outbox da projeção.
+ * O lote é travado com <code>FOR UPDATE SKIP LOCKED</code>, permitindo vários relays em paralelo;
+ * linhas estacionadas (<code>attempts &gt;= maxAttempts</code>) ficam de fora.
+ *
+ * @since 1.0
+ */
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    @Query(value = "select * from projection_outbox where attempts < :maxAttempts order by id limit :limit for update skip locked",
+            nativeQuery = true)
+    List<OutboxEvent> lockNextBatch(int limit, int maxAttempts);
+
+    @Modifying
+    @Query(value = "update projection_outbox set attempts = attempts + 1 where id in :ids", nativeQuery = true)
+    int incrementAttempts(Collection<Long> ids);
+}
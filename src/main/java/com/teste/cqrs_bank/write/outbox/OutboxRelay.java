@@ -0,0 +1,201 @@
+package com.teste.cqrs_bank.write.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.teste.cqrs_bank.config.ProjectionProperties;
+import com.teste.cqrs_bank.read.ProjectionPipeline;
+import com.teste.cqrs_bank.read.ProjectionUpdater;
+import com.teste.cqrs_bank.write.events.TransactionEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Relay do outbox da projeção: drena <code>projection_outbox</code> em lotes e aplica no Mongo.
+ *
+ * <ul>
+ *   <li>Trava até <code>batchSize</code> linhas com <code>FOR UPDATE SKIP LOCKED</code> (vários relays
+ *       podem rodar em paralelo sem disputar as mesmas linhas).</li>
+ *   <li>Agrupa por conta e aplica tudo com um único <code>bulkWrite</code> via
+ *       {@link com.teste.cqrs_bank.read.ProjectionUpdater#applyAll(java.util.Collection)}.</li>
+ *   <li>Remove as linhas na mesma transação que as travou. Contas cuja operação falhou no Mongo ficam
+ *       para a próxima rodada (reentrega é idempotente pela versão do evento) sem segurar as demais; uma
+ *       falha do lote inteiro faz rollback e devolve todas as linhas.</li>
+ *   <li>Cada rodada com falha soma em <code>attempts</code>; em <code>max-attempts</code> a linha é
+ *       estacionada (fica na tabela, fora da leitura do relay) e a conta vai para o rebuild do
+ *       {@link ProjectionPipeline}, então um evento envenenado não trava o outbox.</li>
+ * </ul>
+ *
+ * <p>Ativo com <code>app.projection.outbox.enabled=true</code>. Métricas: <code>projection.outbox.relayed</code>,
+ * <code>projection.outbox.failures</code>, <code>projection.outbox.parked</code> e <code>projection.outbox.batch</code>.</p>
+ *
+ * @since 1.0
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.projection.outbox", name = "enabled", havingValue = "true")
+public class OutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxEventRepository outbox;
+    private final ProjectionUpdater updater;
+    private final ProjectionPipeline pipeline;
+    private final ObjectMapper json;
+    private final TransactionTemplate tx;
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final int maxAttempts;
+
+    private final Counter relayed;
+    private final Counter failures;
+    private final Counter parkedRows;
+    private final Timer batchTimer;
+
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public OutboxRelay(OutboxEventRepository outbox,
+                       ProjectionUpdater updater,
+                       ProjectionPipeline pipeline,
+                       ObjectMapper json,
+                       PlatformTransactionManager txManager,
+                       ProjectionProperties props,
+                       MeterRegistry meters) {
+        this.outbox = outbox;
+        this.updater = updater;
+        this.pipeline = pipeline;
+        this.json = json;
+        this.tx = new TransactionTemplate(txManager);
+        this.batchSize = props.outbox().batchSize();
+        this.pollIntervalMs = props.outbox().pollInterval().toMillis();
+        this.maxAttempts = props.outbox().maxAttempts();
+        this.relayed = meters.counter("projection.outbox.relayed");
+        this.failures = meters.counter("projection.outbox.failures");
+        this.parkedRows = meters.counter("projection.outbox.parked");
+        this.batchTimer = meters.timer("projection.outbox.batch");
+        this.worker = Thread.ofVirtual().name("outbox-relay").start(this::run);
+    }
+
+    /**
+     * Processa um lote. Retorna o número de eventos relayados.
+     */
+    public int relayOnce() {
+        var locked = new ArrayList<OutboxEvent>();
+        var parked = new ArrayList<OutboxEvent>();
+        Integer n;
+        try {
+            n = tx.execute(status -> {
+                var rows = outbox.lockNextBatch(batchSize, maxAttempts);
+                if (rows.isEmpty()) return 0;
+                locked.addAll(rows);
+
+                var byAccount = new LinkedHashMap<String, List<TransactionEvent>>();
+                for (var row : rows) {
+                    byAccount.computeIfAbsent(row.getAccountId(), k -> new ArrayList<>()).add(read(row));
+                }
+                var failedAccounts = new HashSet<String>();
+                for (var group : updater.applyAll(byAccount.values())) failedAccounts.add(group.get(0).accountId());
+
+                // contas que falharam ficam para a próxima rodada; as demais saem do outbox neste commit
+                var done = new ArrayList<Long>(rows.size());
+                var retry = new ArrayList<Long>();
+                for (var row : rows) {
+                    if (!failedAccounts.contains(row.getAccountId())) {
+                        done.add(row.getId());
+                        continue;
+                    }
+                    retry.add(row.getId());
+                    if (row.getAttempts() + 1 >= maxAttempts) parked.add(row);
+                }
+                if (!done.isEmpty()) outbox.deleteAllByIdInBatch(done);
+                if (!retry.isEmpty()) outbox.incrementAttempts(retry);
+                return done.size();
+            });
+        } catch (RuntimeException e) {
+            // rollback do lote inteiro: a tentativa das linhas travadas é contada numa transação à parte
+            if (!locked.isEmpty()) countFailedAttempt(locked, e);
+            throw e;
+        }
+        park(parked);
+        relayed.increment(n);
+        return n;
+    }
+
+    private void countFailedAttempt(List<OutboxEvent> rows, RuntimeException cause) {
+        try {
+            tx.executeWithoutResult(status -> outbox.incrementAttempts(rows.stream().map(OutboxEvent::getId).toList()));
+        } catch (RuntimeException e) {
+            cause.addSuppressed(e);
+            return;
+        }
+        park(rows.stream().filter(row -> row.getAttempts() + 1 >= maxAttempts).toList());
+    }
+
+    /**
+     * Linhas que atingiram <code>maxAttempts</code>: ficam na tabela fora da leitura do relay, e a conta é
+     * reconstruída a partir do MySQL (o evento estacionado não é mais necessário para a projeção).
+     */
+    private void park(List<OutboxEvent> rows) {
+        if (rows.isEmpty()) return;
+        parkedRows.increment(rows.size());
+        var accounts = new LinkedHashSet<String>();
+        for (var row : rows) {
+            log.warn("evento do outbox id={} (conta {}, versão {}) estacionado após {} tentativas → rebuild",
+                    row.getId(), row.getAccountId(), row.getVersion(), maxAttempts);
+            accounts.add(row.getAccountId());
+        }
+        accounts.forEach(pipeline::requestRebuild);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(5_000);
+    }
+
+    private void run() {
+        while (running) {
+            int n = 0;
+            try {
+                n = batchTimer.recordCallable(this::relayOnce);
+            } catch (Exception e) {
+                failures.increment();
+                log.error("falha ao drenar outbox da projeção; lote será reprocessado", e);
+            }
+            if (n < batchSize) {
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException e) {
+                    if (!running) return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Desserializa o payload; se estiver ilegível, converte em pedido de rebuild da conta
+     * para não travar o outbox.
+     */
+    private TransactionEvent read(OutboxEvent row) {
+        try {
+            return json.readValue(row.getPayload(), TransactionEvent.class);
+        } catch (IOException e) {
+            log.warn("payload inválido no outbox id={} → rebuild da conta {}", row.getId(), row.getAccountId(), e);
+            return new TransactionEvent(row.getAccountId());
+        }
+    }
+}
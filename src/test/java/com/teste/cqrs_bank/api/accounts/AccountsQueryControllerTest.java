@@ -0,0 +1,124 @@
+package com.teste.cqrs_bank.api.accounts;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.teste.cqrs_bank.config.QueryProperties;
+import com.teste.cqrs_bank.read.AccountStreamHub;
+import com.teste.cqrs_bank.read.AccountViewCache;
+import com.teste.cqrs_bank.read.ProjectionVersionWaiter;
+import com.teste.cqrs_bank.read.TransactionHistoryQuery;
+import com.teste.cqrs_bank.read.view.AccountView;
+import com.teste.cqrs_bank.read.view.AccountViewRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class AccountsQueryControllerTest {
+
+    private final ProjectionVersionWaiter versions = mock(ProjectionVersionWaiter.class);
+
+    private MockMvc mvc(AccountViewCache views) {
+        return MockMvcBuilders.standaloneSetup(new AccountsQueryController(views, mock(TransactionHistoryQuery.class),
+                mock(AccountStreamHub.class), versions)).build();
+    }
+
+    private static AccountViewCache.Summary summary(long version) {
+        return summary(version, "10.00");
+    }
+
+    private static AccountViewCache.Summary summary(long version, String saldo) {
+        var view = AccountView.builder().id("a1").userId("u1").saldoTotal(saldo).version(version).historico(List.of()).build();
+        return new AccountViewCache.Summary(view,
+                ("{\"SaldoTotal\":\"" + saldo + "\",\"Historico\":[]}").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void resumo_vem_com_etag_do_corpo_e_304_quando_nao_mudou() throws Exception {
+        var views = mock(AccountViewCache.class);
+        var current = summary(5L);
+        when(views.summary("u1")).thenReturn(current);
+        var auth = new UsernamePasswordAuthenticationToken("u1", null, List.of());
+        var mvc = mvc(views);
+        var etag = "\"" + DigestUtils.md5DigestAsHex(current.json()) + "\"";
+
+        mvc.perform(get("/accounts/me/summary").principal(auth))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(jsonPath("$.SaldoTotal").value("10.00"));
+
+        mvc.perform(get("/accounts/me/summary").principal(auth).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+
+        mvc.perform(get("/accounts/me/summary").principal(auth).header("If-None-Match", "\"outra\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void usuario_sem_projecao_recebe_o_resumo_vazio_com_etag() throws Exception {
+        var repo = mock(AccountViewRepository.class);
+        var views = new AccountViewCache(repo, new ObjectMapper(), new QueryProperties(null, null, null, null),
+                new SimpleMeterRegistry());
+        var auth = new UsernamePasswordAuthenticationToken("u1", null, List.of());
+        var mvc = mvc(views);
+        var etag = "\"" + views.empty().etag() + "\"";
+
+        mvc.perform(get("/accounts/me/summary").principal(auth))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(header().string("Cache-Control", "no-cache, private"))
+                .andExpect(header().doesNotExist("X-Projection-Version"))
+                .andExpect(content().string("{\"SaldoTotal\":\"0.00\",\"Historico\":[]}"));
+
+        mvc.perform(get("/accounts/me/summary").principal(auth).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void corpo_diferente_na_mesma_versao_troca_o_etag() throws Exception {
+        var views = mock(AccountViewCache.class);
+        var before = summary(5L);
+        when(views.summary("u1")).thenReturn(before, summary(5L, "9.00"));
+        var auth = new UsernamePasswordAuthenticationToken("u1", null, List.of());
+        var mvc = mvc(views);
+
+        mvc.perform(get("/accounts/me/summary").principal(auth)
+                        .header("If-None-Match", "\"" + DigestUtils.md5DigestAsHex(before.json()) + "\""))
+                .andExpect(status().isNotModified());
+
+        // rebuild regravou o documento na mesma versão: a tag antiga não vale mais
+        mvc.perform(get("/accounts/me/summary").principal(auth)
+                        .header("If-None-Match", "\"" + DigestUtils.md5DigestAsHex(before.json()) + "\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.SaldoTotal").value("9.00"));
+    }
+
+    @Test
+    void resumo_com_min_version_responde_quando_a_projecao_alcanca() throws Exception {
+        when(versions.summaryAtLeast("u1", 7L)).thenReturn(CompletableFuture.completedFuture(summary(7L)));
+        var auth = new UsernamePasswordAuthenticationToken("u1", null, List.of());
+        var mvc = mvc(mock(AccountViewCache.class));
+
+        var started = mvc.perform(get("/accounts/me/summary").param("minVersion", "7").principal(auth))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Projection-Version", "7"))
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.SaldoTotal").value("10.00"));
+    }
+}
@@ -0,0 +1,21 @@
+package com.teste.cqrs_bank.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdsTest {
+
+    @Test
+    void gera_uuid_v7_ordenado_por_tempo() {
+        var older = Ids.uuidV7(1_700_000_000_000L).toString();
+        var newer = Ids.uuidV7(1_700_000_000_001L).toString();
+
+        assertThat(older).hasSize(36);
+        assertThat(UUID.fromString(older).version()).isEqualTo(7);
+        assertThat(UUID.fromString(older).variant()).isEqualTo(2);
+        assertThat(newer).isGreaterThan(older);
+    }
+}
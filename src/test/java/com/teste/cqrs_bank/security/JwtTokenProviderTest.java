@@ -0,0 +1,64 @@
+package com.teste.cqrs_bank.security;
+
+import com.teste.cqrs_bank.config.JwtProperties;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtTokenProviderTest {
+
+    private static final String SECRET = "test-secret-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final JwtTokenProvider jwt = new JwtTokenProvider(new JwtProperties(SECRET, 60, null), meters);
+
+    private double gets(String result) {
+        return meters.get("cache.gets").tag("cache", "jwt_tokens").tag("result", result).functionCounter().count();
+    }
+
+    @Test
+    void segunda_validacao_do_mesmo_token_vem_do_cache() {
+        String token = jwt.generateToken("u1", "joao");
+
+        var first = jwt.verify(token);
+        var second = jwt.verify(token);
+
+        assertThat(first.userId()).isEqualTo("u1");
+        assertThat(first.login()).isEqualTo("joao");
+        assertThat(second).isSameAs(first);
+        assertThat(gets("hit")).isEqualTo(1.0);
+    }
+
+    @Test
+    void token_adulterado_nao_e_aceito() {
+        String token = jwt.generateToken("u1", "joao");
+        jwt.verify(token);
+
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThatThrownBy(() -> jwt.verify(tampered)).isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void token_expirado_e_rejeitado() {
+        var key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        String expired = Jwts.builder()
+                .setSubject("u1")
+                .claim("login", "joao")
+                .setExpiration(Date.from(Instant.now().minusSeconds(5)))
+                .signWith(key, SignatureAlgorithm.HS256)
+                .compact();
+
+        assertThatThrownBy(() -> jwt.verify(expired)).isInstanceOf(JwtException.class);
+    }
+}
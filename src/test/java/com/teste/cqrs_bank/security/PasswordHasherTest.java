@@ -0,0 +1,79 @@
+package com.teste.cqrs_bank.security;
+
+import com.teste.cqrs_bank.config.PasswordProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PasswordHasherTest {
+
+    @Test
+    void encode_e_matches_usam_o_encoder_no_pool() {
+        var hasher = new PasswordHasher(new BCryptPasswordEncoder(4),
+                new PasswordProperties(1, 1, null), new SimpleMeterRegistry());
+
+        String hash = hasher.encode("segredo");
+
+        assertThat(hasher.matches("segredo", hash)).isTrue();
+        assertThat(hasher.matches("outra", hash)).isFalse();
+        hasher.shutdown();
+    }
+
+    @Test
+    void fila_cheia_recusa_na_hora_e_conta_rejeicao() throws Exception {
+        var release = new CountDownLatch(1);
+        var started = new CountDownLatch(1);
+        var encoder = mock(PasswordEncoder.class);
+        when(encoder.encode(any())).thenAnswer(inv -> {
+            started.countDown();
+            release.await();
+            return "hash";
+        });
+        var meters = new SimpleMeterRegistry();
+        var hasher = new PasswordHasher(encoder, new PasswordProperties(1, 1, Duration.ofSeconds(5)), meters);
+
+        var running = CompletableFuture.supplyAsync(() -> hasher.encode("a"));
+        assertThat(started.await(2, TimeUnit.SECONDS)).isTrue();
+        var queued = CompletableFuture.supplyAsync(() -> hasher.encode("b"));
+        while (meters.get("executor.queued").tag("name", "password_hashing").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        assertThatThrownBy(() -> hasher.encode("c")).isInstanceOf(TaskRejectedException.class);
+        assertThat(meters.get("auth.password.rejected").counter().count()).isEqualTo(1.0);
+
+        release.countDown();
+        assertThat(running.get(2, TimeUnit.SECONDS)).isEqualTo("hash");
+        assertThat(queued.get(2, TimeUnit.SECONDS)).isEqualTo("hash");
+        hasher.shutdown();
+    }
+
+    @Test
+    void espera_acima_do_timeout_vira_recusa() {
+        var release = new CountDownLatch(1);
+        var encoder = mock(PasswordEncoder.class);
+        when(encoder.encode(any())).thenAnswer(inv -> {
+            release.await();
+            return "hash";
+        });
+        var hasher = new PasswordHasher(encoder, new PasswordProperties(1, 1, Duration.ofMillis(50)),
+                new SimpleMeterRegistry());
+
+        assertThatThrownBy(() -> hasher.encode("a")).isInstanceOf(TaskRejectedException.class);
+        release.countDown();
+        hasher.shutdown();
+    }
+}
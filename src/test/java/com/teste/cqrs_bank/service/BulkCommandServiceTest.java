@@ -0,0 +1,123 @@
+package com.teste.cqrs_bank.service;
+
+import com.teste.cqrs_bank.config.CommandProperties;
+import com.teste.cqrs_bank.domain.transaction.TxType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class BulkCommandServiceTest {
+
+    private final TransactionCommandGateway gateway = mock(TransactionCommandGateway.class);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+    private BulkCommandService service(int accountsPerCommit) {
+        return new BulkCommandService(gateway,
+                new CommandProperties(null, null, null, null, null, new CommandProperties.Bulk(3, accountsPerCommit)),
+                meters);
+    }
+
+    private static BulkCommandService.Operation op(String userId, TxType type, String amount) {
+        return new BulkCommandService.Operation(userId, type, amount == null ? null : new BigDecimal(amount), null);
+    }
+
+    @Test
+    void agrupa_por_usuario_em_ordem_e_comita_por_bloco_de_contas() {
+        var service = service(1);
+        when(gateway.applyBulk(Map.of("me", List.of(TransactionCommand.deposit(BigDecimal.TEN))), Map.of()))
+                .thenReturn(Map.of("me", List.of(new CommandResult("a-me", new BigDecimal("10.00"), 1L))));
+        when(gateway.applyBulk(Map.of("b", List.of(TransactionCommand.payBill(BigDecimal.ONE))), Map.of()))
+                .thenReturn(Map.of());
+
+        var plan = service.prepare("me", List.of(
+                op(null, TxType.DEPOSIT, "10"),
+                op("b", TxType.BILL_PAYMENT, "1"),
+                op("b", TxType.DEPOSIT, "-1")));
+        var batches = new ArrayList<List<BulkCommandService.Outcome>>();
+        service.execute(plan, batches::add);
+
+        assertThat(plan.byUser().keySet()).containsExactly("b", "me");
+        assertThat(batches).hasSize(3);
+        assertThat(batches.get(0)).extracting(BulkCommandService.Outcome::index).containsExactly(2);
+        assertThat(batches.get(1)).singleElement()
+                .satisfies(o -> assertThat(o.error()).isEqualTo("Conta não encontrada para o usuário."));
+        assertThat(batches.get(2)).containsExactly(
+                new BulkCommandService.Outcome(0, new CommandResult("a-me", new BigDecimal("10.00"), 1L), null));
+        assertThat(meters.get("commands.bulk.items").tag("result", "failed").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void falha_da_transacao_marca_so_as_operacoes_dela() {
+        var service = service(2);
+        when(gateway.applyBulk(any(), any())).thenThrow(new ConcurrencyFailureException("Conta com alta concorrência; tente novamente."));
+
+        var outcomes = new ArrayList<BulkCommandService.Outcome>();
+        service.execute(service.prepare("me", List.of(op("a", TxType.DEPOSIT, "1"), op("b", TxType.DEPOSIT, "2"))),
+                outcomes::addAll);
+
+        assertThat(outcomes).hasSize(2).allSatisfy(o -> assertThat(o.result()).isNull());
+        verify(gateway, times(1)).applyBulk(any(), any());
+    }
+
+    @Test
+    void lote_vazio_ou_acima_do_limite_e_recusado() {
+        var service = service(10);
+
+        assertThatThrownBy(() -> service.prepare("me", List.of())).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.prepare("me", List.of(
+                op(null, TxType.DEPOSIT, "1"), op(null, TxType.DEPOSIT, "1"),
+                op(null, TxType.DEPOSIT, "1"), op(null, TxType.DEPOSIT, "1"))))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(gateway);
+    }
+
+    @Test
+    void valor_que_arredonda_para_zero_ou_excede_a_precisao_falha_so_a_operacao() {
+        var service = service(10);
+
+        var plan = service.prepare("me", List.of(
+                op(null, TxType.DEPOSIT, "0.004"),
+                op(null, TxType.DEPOSIT, "123456789012345678"),
+                op(null, TxType.DEPOSIT, "0.006")));
+
+        assertThat(plan.rejected()).extracting(BulkCommandService.Outcome::index).containsExactly(0, 1);
+        assertThat(plan.byUser().get("me")).singleElement()
+                .satisfies(it -> assertThat(it.command().amount()).isEqualByComparingTo("0.01"));
+    }
+
+    @Test
+    void idempotency_key_repetida_devolve_o_resultado_original_e_grava_as_novas_na_transacao() {
+        var service = new BulkCommandService(gateway,
+                new CommandProperties(null, null, null, null, null, new CommandProperties.Bulk(10, 10)), meters);
+        var original = new CommandResult("a-me", new BigDecimal("10.00"), 1L);
+        when(gateway.replay("me", "k1", TransactionCommand.deposit(BigDecimal.TEN))).thenReturn(original);
+        when(gateway.applyBulk(Map.of("me", List.of(TransactionCommand.deposit(BigDecimal.ONE), TransactionCommand.deposit(BigDecimal.TWO))),
+                Map.of("me", Arrays.asList("k2", null))))
+                .thenReturn(Map.of("me", List.of(new CommandResult("a-me", new BigDecimal("11.00"), 2L),
+                        new CommandResult("a-me", new BigDecimal("13.00"), 3L))));
+
+        var plan = service.prepare("me", List.of(
+                new BulkCommandService.Operation(null, TxType.DEPOSIT, BigDecimal.TEN, "k1"),
+                new BulkCommandService.Operation(null, TxType.DEPOSIT, BigDecimal.ONE, "k2"),
+                new BulkCommandService.Operation(null, TxType.DEPOSIT, BigDecimal.TWO, null),
+                new BulkCommandService.Operation("me", TxType.DEPOSIT, BigDecimal.ONE, "k2")));
+        var outcomes = new ArrayList<BulkCommandService.Outcome>();
+        service.execute(plan, outcomes::addAll);
+
+        assertThat(outcomes).extracting(BulkCommandService.Outcome::index).containsExactly(3, 0, 1, 2);
+        assertThat(outcomes.get(0).error()).isEqualTo("Idempotency-Key repetida no lote.");
+        assertThat(outcomes.get(1).result()).isEqualTo(original);
+        assertThat(outcomes.get(2).result().version()).isEqualTo(2L);
+    }
+}
@@ -0,0 +1,70 @@
+package com.teste.cqrs_bank.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CommandBatcherTest {
+
+    @Test
+    void comandos_concorrentes_da_mesma_conta_viram_um_lote() throws Exception {
+        var calls = new CopyOnWriteArrayList<List<TransactionCommand>>();
+        var batcher = new CommandBatcher((userId, cmds) -> {
+            calls.add(cmds);
+            var out = new ArrayList<CommandResult>();
+            for (int i = 0; i < cmds.size(); i++) {
+                out.add(new CommandResult("a1", cmds.get(i).amount(), i + 1));
+            }
+            return out;
+        }, Duration.ofMillis(200).toNanos(), 64, new SimpleMeterRegistry());
+
+        var futures = new ArrayList<Future<CommandResult>>();
+        try (var pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 1; i <= 10; i++) {
+                var cmd = TransactionCommand.deposit(BigDecimal.valueOf(i));
+                futures.add(pool.submit(() -> batcher.submit("u1", cmd)));
+            }
+        }
+
+        assertThat(calls).hasSize(1);
+        assertThat(calls.get(0)).hasSize(10);
+        // cada chamador recebe o resultado do próprio comando
+        for (int i = 0; i < 10; i++) {
+            assertThat(futures.get(i).get().balance()).isEqualByComparingTo(BigDecimal.valueOf(i + 1));
+        }
+    }
+
+    @Test
+    void lote_cheio_fecha_antes_da_janela() {
+        var calls = new CopyOnWriteArrayList<List<TransactionCommand>>();
+        var batcher = new CommandBatcher((userId, cmds) -> {
+            calls.add(cmds);
+            return cmds.stream().map(c -> new CommandResult("a1", c.amount(), 1)).toList();
+        }, Duration.ofSeconds(30).toNanos(), 1, new SimpleMeterRegistry());
+
+        var res = batcher.submit("u1", TransactionCommand.payBill(BigDecimal.TEN));
+
+        assertThat(res.balance()).isEqualByComparingTo("10.00");
+        assertThat(calls).hasSize(1);
+    }
+
+    @Test
+    void falha_do_lote_chega_ao_chamador() {
+        var batcher = new CommandBatcher((userId, cmds) -> {
+            throw new IllegalArgumentException("Conta não encontrada para o usuário.");
+        }, 0, 64, new SimpleMeterRegistry());
+
+        assertThatThrownBy(() -> batcher.submit("u1", TransactionCommand.deposit(BigDecimal.ONE)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
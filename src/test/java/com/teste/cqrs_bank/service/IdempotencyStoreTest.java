@@ -0,0 +1,112 @@
+package com.teste.cqrs_bank.service;
+
+import com.teste.cqrs_bank.config.CommandProperties;
+import com.teste.cqrs_bank.domain.transaction.TxType;
+import com.teste.cqrs_bank.write.idempotency.IdempotencyRecord;
+import com.teste.cqrs_bank.write.idempotency.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class IdempotencyStoreTest {
+
+    private final IdempotencyRecordRepository repo = mock(IdempotencyRecordRepository.class);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final IdempotencyStore store = new IdempotencyStore(repo, mock(PlatformTransactionManager.class),
+            new CommandProperties(null, null, null, null, null, null), meters);
+
+    private static final TransactionCommand DEPOSIT = TransactionCommand.deposit(BigDecimal.TEN);
+
+    @Test
+    void chave_gravada_devolve_o_resultado_original_sem_reexecutar() {
+        when(repo.findById("u1:k1")).thenReturn(Optional.empty());
+        var calls = new AtomicInteger();
+        var res = new CommandResult("a1", new BigDecimal("10.00"), 4L);
+
+        assertThat(store.replay("u1", "k1", DEPOSIT)).isNull();
+        assertThat(store.record("u1", "k1", DEPOSIT, () -> {
+            calls.incrementAndGet();
+            return res;
+        })).isEqualTo(res);
+
+        assertThat(store.replay("u1", "k1", TransactionCommand.deposit(new BigDecimal("10.00")))).isEqualTo(res);
+        assertThat(calls).hasValue(1);
+        verify(repo, times(1)).findById("u1:k1");
+        verify(repo).saveAndFlush(any(IdempotencyRecord.class));
+        assertThat(meters.get("commands.idempotency").tag("result", "replayed").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void mesma_chave_com_outro_comando_e_recusada() {
+        store.record("u1", "k1", DEPOSIT, () -> new CommandResult("a1", BigDecimal.TEN, 1L));
+
+        assertThatThrownBy(() -> store.replay("u1", "k1", TransactionCommand.payBill(BigDecimal.TEN)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> store.replay("u1", "k1", TransactionCommand.deposit(BigDecimal.ONE)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void corrida_na_chave_primaria_devolve_o_resultado_de_quem_gravou_primeiro() {
+        when(repo.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("PRIMARY"));
+        when(repo.findById("u1:k1")).thenReturn(Optional.of(IdempotencyRecord.builder()
+                .id("u1:k1").userId("u1").type(TxType.DEPOSIT).amount(new BigDecimal("10.00"))
+                .accountId("a1").balance(new BigDecimal("10.00")).version(1L).build()));
+
+        var res = store.record("u1", "k1", DEPOSIT, () -> new CommandResult("a1", new BigDecimal("20.00"), 2L));
+
+        assertThat(res).isEqualTo(new CommandResult("a1", new BigDecimal("10.00"), 1L));
+        assertThat(meters.get("commands.idempotency").tag("result", "raced").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void chave_invalida_e_recusada() {
+        assertThatThrownBy(() -> store.replay("u1", "", DEPOSIT)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> store.replay("u1", "com espaço", DEPOSIT)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> store.replay("u1", "x".repeat(65), DEPOSIT)).isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(repo);
+    }
+
+    @Test
+    void lote_grava_so_as_chaves_informadas_das_contas_encontradas() {
+        var res = new CommandResult("a1", new BigDecimal("10.00"), 4L);
+        var commands = Map.of("u1", List.of(DEPOSIT, DEPOSIT), "u2", List.of(DEPOSIT));
+        var keys = Map.of("u1", Arrays.asList(null, "k1"), "u2", List.of("k2"));
+
+        store.recordBulk(commands, keys, () -> Map.of("u1", List.of(res, res)));
+
+        verify(repo).saveAll(argThat(records -> {
+            var ids = new ArrayList<String>();
+            records.forEach(r -> ids.add(r.getId()));
+            return ids.equals(List.of("u1:k1"));
+        }));
+        verify(repo).flush();
+        assertThat(store.replay("u1", "k1", DEPOSIT)).isEqualTo(res);
+        verify(repo, never()).findById(any());
+    }
+
+    @Test
+    void lote_com_chave_gravada_por_outra_requisicao_e_desfeito_como_conflito() {
+        when(repo.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("dup"));
+
+        assertThatThrownBy(() -> store.recordBulk(Map.of("u1", List.of(DEPOSIT)), Map.of("u1", List.of("k1")),
+                () -> Map.of("u1", List.of(new CommandResult("a1", BigDecimal.TEN, 1L)))))
+                .isInstanceOf(ConcurrencyFailureException.class);
+        assertThat(meters.get("commands.idempotency").tag("result", "raced").counter().count()).isEqualTo(1.0);
+    }
+}
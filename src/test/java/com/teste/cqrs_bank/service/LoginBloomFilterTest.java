@@ -0,0 +1,22 @@
+package com.teste.cqrs_bank.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoginBloomFilterTest {
+
+    @Test
+    void nunca_da_falso_negativo_e_respeita_taxa_de_falso_positivo() {
+        var filter = new LoginBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) filter.put("user" + i);
+
+        for (int i = 0; i < 10_000; i++) assertThat(filter.mightContain("user" + i)).isTrue();
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("other" + i)) falsePositives++;
+        }
+        assertThat(falsePositives).isLessThan(300);
+    }
+}
@@ -0,0 +1,70 @@
+package com.teste.cqrs_bank.service;
+
+import com.teste.cqrs_bank.config.LoginProperties;
+import com.teste.cqrs_bank.domain.user.User;
+import com.teste.cqrs_bank.domain.user.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class LoginDirectoryTest {
+
+    private final UserRepository users = mock(UserRepository.class);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+    private static User user(String login) {
+        return User.builder().id("id-" + login).login(login).passwordHash("hash").build();
+    }
+
+    @Test
+    void login_inexistente_fica_em_cache_negativo_ate_o_signup() {
+        when(users.findByLogin("joao")).thenReturn(Optional.empty());
+        var directory = new LoginDirectory(users, new LoginProperties(null, null, null, null), meters);
+
+        assertThat(directory.find("joao")).isEmpty();
+        assertThat(directory.find("joao")).isEmpty();
+        verify(users, times(1)).findByLogin("joao");
+
+        directory.registered(user("joao"));
+
+        assertThat(directory.find("JOAO")).get().extracting(LoginDirectory.Credentials::userId).isEqualTo("id-joao");
+        verify(users, times(1)).findByLogin(anyString());
+    }
+
+    @Test
+    void filtro_carregado_dispensa_o_mysql_para_login_livre() {
+        when(users.findLoginsAfter(eq(""), any(Limit.class))).thenReturn(List.of("ana", "bia"));
+        when(users.findLoginsAfter(eq("bia"), any(Limit.class))).thenReturn(List.of());
+        when(users.findByLogin("ana")).thenReturn(Optional.of(user("ana")));
+        var directory = new LoginDirectory(users, new LoginProperties(null, null, null, null), meters);
+
+        directory.loadBloom();
+        await().until(() -> !directory.isTaken("carla"));
+
+        assertThat(directory.isTaken("ana")).isTrue();
+        verify(users, never()).findByLogin("carla");
+        assertThat(meters.get("auth.logins.bloom.skipped").counter().count()).isGreaterThanOrEqualTo(1.0);
+    }
+
+    @Test
+    void sem_filtro_o_pre_check_consulta_o_mysql() {
+        when(users.findByLogin("carla")).thenReturn(Optional.empty());
+        var props = new LoginProperties(null, null, null, new LoginProperties.Bloom(false, null, null));
+        var directory = new LoginDirectory(users, props, meters);
+
+        directory.loadBloom();
+
+        assertThat(directory.isTaken("carla")).isFalse();
+        verify(users).findByLogin("carla");
+    }
+}
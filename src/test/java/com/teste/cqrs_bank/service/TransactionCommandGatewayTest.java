@@ -0,0 +1,91 @@
+package com.teste.cqrs_bank.service;
+
+import com.teste.cqrs_bank.config.CommandProperties;
+import com.teste.cqrs_bank.domain.account.Account;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class TransactionCommandGatewayTest {
+
+    private static CommandProperties optimistic(int attempts) {
+        return new CommandProperties(CommandProperties.Locking.OPTIMISTIC,
+                new CommandProperties.Optimistic(attempts, Duration.ofMillis(1)), false, null, null, null);
+    }
+
+    @Test
+    void modo_otimista_repete_em_conflito_de_versao() {
+        var svc = mock(TransactionService.class);
+        var acc = Account.builder().id("a1").eventVersion(1L).balance(new BigDecimal("5.00")).build();
+        when(svc.deposit("u1", BigDecimal.TEN))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Account.class, "a1"))
+                .thenReturn(acc);
+
+        var meters = new SimpleMeterRegistry();
+        var gateway = new TransactionCommandGateway(svc, mock(IdempotencyStore.class), optimistic(3), meters);
+
+        assertThat(gateway.deposit("u1", BigDecimal.TEN)).isEqualTo(CommandResult.of(acc));
+        verify(svc, times(2)).deposit("u1", BigDecimal.TEN);
+        assertThat(meters.counter("commands.optimistic.retries").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void modo_otimista_desiste_apos_max_tentativas() {
+        var svc = mock(TransactionService.class);
+        when(svc.payBill("u1", BigDecimal.TEN))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Account.class, "a1"));
+
+        var gateway = new TransactionCommandGateway(svc, mock(IdempotencyStore.class), optimistic(3), new SimpleMeterRegistry());
+
+        assertThatThrownBy(() -> gateway.payBill("u1", BigDecimal.TEN))
+                .isInstanceOf(ConcurrencyFailureException.class);
+        verify(svc, times(3)).payBill("u1", BigDecimal.TEN);
+    }
+
+    @Test
+    void modo_pessimista_nao_repete() {
+        var svc = mock(TransactionService.class);
+        when(svc.payBill("u1", BigDecimal.TEN))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Account.class, "a1"));
+
+        var gateway = new TransactionCommandGateway(svc, mock(IdempotencyStore.class), new CommandProperties(null, null, false, null, null, null), new SimpleMeterRegistry());
+
+        assertThatThrownBy(() -> gateway.payBill("u1", BigDecimal.TEN))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        verify(svc, times(1)).payBill("u1", BigDecimal.TEN);
+    }
+
+    @Test
+    void pagamento_atomico_nao_passa_pelo_caminho_com_lock() {
+        var svc = mock(TransactionService.class);
+        var res = new CommandResult("a1", new BigDecimal("-10.00"), 3L);
+        when(svc.payBillAtomic("u1", BigDecimal.TEN)).thenReturn(res);
+
+        var gateway = new TransactionCommandGateway(svc, mock(IdempotencyStore.class), new CommandProperties(null, null, null, null, null, null), new SimpleMeterRegistry());
+
+        assertThat(gateway.payBill("u1", BigDecimal.TEN)).isSameAs(res);
+        verify(svc, never()).payBill(any(), any());
+    }
+
+    @Test
+    void chave_de_idempotencia_ja_usada_nao_executa_o_comando() {
+        var svc = mock(TransactionService.class);
+        var idempotency = mock(IdempotencyStore.class);
+        var res = new CommandResult("a1", new BigDecimal("10.00"), 2L);
+        when(idempotency.replay("u1", "k1", TransactionCommand.deposit(BigDecimal.TEN))).thenReturn(res);
+
+        var gateway = new TransactionCommandGateway(svc, idempotency, new CommandProperties(null, null, null, null, null, null), new SimpleMeterRegistry());
+
+        assertThat(gateway.deposit("u1", BigDecimal.TEN, "k1")).isSameAs(res);
+        verify(idempotency, never()).record(any(), any(), any(), any());
+        verifyNoInteractions(svc);
+    }
+}
@@ -1,20 +1,31 @@
 package com.teste.cqrs_bank.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.teste.cqrs_bank.config.CommandProperties;
+import com.teste.cqrs_bank.config.ProjectionProperties;
 import com.teste.cqrs_bank.domain.account.Account;
 import com.teste.cqrs_bank.domain.account.AccountRepository;
 import com.teste.cqrs_bank.domain.transaction.Transaction;
 import com.teste.cqrs_bank.domain.transaction.TransactionRepository;
 import com.teste.cqrs_bank.domain.transaction.TxType;
+import com.teste.cqrs_bank.domain.user.User;
 import com.teste.cqrs_bank.write.events.DomainEventPublisher;
+import com.teste.cqrs_bank.write.events.TransactionEvent;
+import com.teste.cqrs_bank.write.outbox.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
 class TransactionServiceTest {
@@ -24,25 +35,30 @@ class TransactionServiceTest {
     DomainEventPublisher publisher;
     TransactionService service;
 
+    User user;
+
     @BeforeEach
     void setup() {
+        user = User.builder().id("u1").build();
         accountRepo = mock(AccountRepository.class);
         txRepo = mock(TransactionRepository.class);
         publisher = mock(DomainEventPublisher.class);
-        service = new TransactionService(accountRepo, txRepo, publisher);
+        service = new TransactionService(accountRepo, txRepo, publisher,
+                new CommandProperties(null, null, null, null, null, null), new SimpleMeterRegistry());
     }
 
     @Test
     void deposit_quita_divida_com_juros_e_credia_resto() {
         // saldo -150, deposito 200 => paga 150 + juros 3 = 153; sobra 47 -> saldo final 47
         var userId = "u1";
-        var acc = Account.builder().id("a1").balance(new BigDecimal("-150.00")).build();
+        var acc = Account.builder().id("a1").user(user).eventVersion(4L).balance(new BigDecimal("-150.00")).build();
         when(accountRepo.findByUserIdForUpdate(userId)).thenReturn(Optional.of(acc));
         when(accountRepo.save(any(Account.class))).thenAnswer(inv -> inv.getArgument(0));
 
         var saved = service.deposit(userId, new BigDecimal("200.00"));
 
         assertThat(saved.getBalance()).isEqualByComparingTo("47.00");
+        assertThat(saved.getEventVersion()).isEqualTo(5L);
 
         // capturar transações salvas
         var txCaptor = ArgumentCaptor.forClass(Transaction.class);
@@ -55,31 +71,32 @@ class TransactionServiceTest {
         assertThat(txs.get(1).getType()).isEqualTo(TxType.DEPOSIT);
         assertThat(txs.get(1).getAmount()).isEqualByComparingTo("200.00");
 
-        verify(publisher).publishTransactionEvent("a1");
+        verify(publisher).publishTransactionEvent(acc, txs);
     }
 
     @Test
     void payBill_debita_mesmo_zerando_para_negativo() {
         var userId = "u1";
-        var acc = Account.builder().id("a1").balance(new BigDecimal("0.00")).build();
+        var acc = Account.builder().id("a1").user(user).eventVersion(4L).balance(new BigDecimal("0.00")).build();
         when(accountRepo.findByUserIdForUpdate(userId)).thenReturn(Optional.of(acc));
         when(accountRepo.save(any(Account.class))).thenAnswer(inv -> inv.getArgument(0));
 
         var saved = service.payBill(userId, new BigDecimal("150.00"));
         assertThat(saved.getBalance()).isEqualByComparingTo("-150.00");
+        assertThat(saved.getEventVersion()).isEqualTo(5L);
 
         var txCaptor = ArgumentCaptor.forClass(Transaction.class);
         verify(txRepo).save(txCaptor.capture());
         assertThat(txCaptor.getValue().getType()).isEqualTo(TxType.BILL_PAYMENT);
         assertThat(txCaptor.getValue().getAmount()).isEqualByComparingTo("150.00");
 
-        verify(publisher).publishTransactionEvent("a1");
+        verify(publisher).publishTransactionEvent(eq(acc), anyList());
     }
 
     @Test
     void deposit_com_saldo_positivo_soma_somente_deposito() {
         var userId = "u1";
-        var acc = Account.builder().id("a1").balance(new BigDecimal("10.00")).build();
+        var acc = Account.builder().id("a1").user(user).eventVersion(4L).balance(new BigDecimal("10.00")).build();
         when(accountRepo.findByUserIdForUpdate(userId)).thenReturn(Optional.of(acc));
         when(accountRepo.save(any(Account.class))).thenAnswer(inv -> inv.getArgument(0));
 
@@ -91,6 +108,133 @@ class TransactionServiceTest {
         assertThat(txCaptor.getValue().getType()).isEqualTo(TxType.DEPOSIT);
         assertThat(txCaptor.getValue().getAmount()).isEqualByComparingTo("5.00");
 
-        verify(publisher).publishTransactionEvent("a1");
+        verify(publisher).publishTransactionEvent(eq(acc), anyList());
+    }
+
+    @Test
+    void modo_otimista_carrega_conta_sem_lock() {
+        service = new TransactionService(accountRepo, txRepo, publisher,
+                new CommandProperties(CommandProperties.Locking.OPTIMISTIC, null, null, null, null, null), new SimpleMeterRegistry());
+        var acc = Account.builder().id("a1").user(user).eventVersion(0L).balance(new BigDecimal("0.00")).build();
+        when(accountRepo.findByUserId("u1")).thenReturn(Optional.of(acc));
+        when(accountRepo.save(any(Account.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        var saved = service.payBill("u1", new BigDecimal("10.00"));
+
+        assertThat(saved.getBalance()).isEqualByComparingTo("-10.00");
+        verify(accountRepo, never()).findByUserIdForUpdate(any());
+    }
+
+    @Test
+    void payBillAtomic_debita_em_um_update_sem_carregar_conta() {
+        var acc = Account.builder().id("a1").build();
+        var state = mock(AccountRepository.BalanceView.class);
+        when(state.getId()).thenReturn("a1");
+        when(state.getUserId()).thenReturn("u1");
+        when(state.getBalance()).thenReturn(new BigDecimal("-150.00"));
+        when(state.getEventVersion()).thenReturn(5L);
+        when(accountRepo.debitByUserId(eq("u1"), any(), any())).thenReturn(1);
+        when(accountRepo.findBalanceByUserId("u1")).thenReturn(Optional.of(state));
+        when(accountRepo.getReferenceById("a1")).thenReturn(acc);
+
+        var res = service.payBillAtomic("u1", new BigDecimal("150"));
+
+        assertThat(res).isEqualTo(new CommandResult("a1", new BigDecimal("-150.00"), 5L));
+        verify(accountRepo).debitByUserId(eq("u1"), eq(new BigDecimal("150.00")), any());
+        verify(accountRepo, never()).findByUserIdForUpdate(any());
+        verify(accountRepo, never()).save(any());
+
+        var txCaptor = ArgumentCaptor.forClass(Transaction.class);
+        verify(txRepo).save(txCaptor.capture());
+        assertThat(txCaptor.getValue().getAccount()).isSameAs(acc);
+        assertThat(txCaptor.getValue().getType()).isEqualTo(TxType.BILL_PAYMENT);
+
+        verify(publisher).publishTransactionEvent("a1", "u1", 5L, new BigDecimal("-150.00"), List.of(txCaptor.getValue()));
+    }
+
+    @Test
+    void payBillAtomic_sem_conta_falha() {
+        when(accountRepo.debitByUserId(eq("u1"), any(), any())).thenReturn(0);
+
+        assertThatThrownBy(() -> service.payBillAtomic("u1", BigDecimal.TEN))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(txRepo, publisher);
+    }
+
+    @Test
+    void applyBatch_aplica_em_ordem_com_um_lock_e_um_save() {
+        var acc = Account.builder().id("a1").user(user).eventVersion(4L).balance(new BigDecimal("0.00")).build();
+        when(accountRepo.findByUserIdForUpdate("u1")).thenReturn(Optional.of(acc));
+
+        var results = service.applyBatch("u1", List.of(
+                TransactionCommand.payBill(new BigDecimal("150")),
+                TransactionCommand.deposit(new BigDecimal("200"))));
+
+        // mesmo resultado de payBill seguido de deposit: -150, depois 200 quita 150 + juros 3 => 47
+        assertThat(results).containsExactly(
+                new CommandResult("a1", new BigDecimal("-150.00"), 5L),
+                new CommandResult("a1", new BigDecimal("47.00"), 6L));
+        verify(accountRepo, times(1)).findByUserIdForUpdate("u1");
+        verify(accountRepo, times(1)).save(acc);
+        verify(txRepo, times(3)).save(any(Transaction.class));
+        verify(publisher, times(2)).publishTransactionEvent(eq(acc), anyList());
+    }
+
+    @Test
+    void applyBulk_trava_as_contas_numa_consulta_e_ignora_usuario_sem_conta() {
+        var acc1 = Account.builder().id("a1").user(user).eventVersion(1L).balance(new BigDecimal("0.00")).build();
+        var acc2 = Account.builder().id("a2").user(User.builder().id("u2").build())
+                .eventVersion(7L).balance(new BigDecimal("10.00")).build();
+        var commands = new TreeMap<String, List<TransactionCommand>>();
+        commands.put("u1", List.of(TransactionCommand.deposit(new BigDecimal("5"))));
+        commands.put("u2", List.of(TransactionCommand.payBill(new BigDecimal("3")), TransactionCommand.payBill(new BigDecimal("1"))));
+        commands.put("u3", List.of(TransactionCommand.deposit(BigDecimal.ONE)));
+        when(accountRepo.findAllByUserIdInForUpdate(commands.keySet())).thenReturn(List.of(acc1, acc2));
+
+        var results = service.applyBulk(commands);
+
+        assertThat(results).containsOnlyKeys("u1", "u2");
+        assertThat(results.get("u1")).containsExactly(new CommandResult("a1", new BigDecimal("5.00"), 2L));
+        assertThat(results.get("u2")).containsExactly(
+                new CommandResult("a2", new BigDecimal("7.00"), 8L),
+                new CommandResult("a2", new BigDecimal("6.00"), 9L));
+        verify(accountRepo, never()).findByUserIdForUpdate(any());
+        verify(accountRepo).saveAll(List.of(acc1, acc2));
+        verify(txRepo, times(3)).save(any(Transaction.class));
+    }
+
+    @Test
+    void eventos_publicados_trazem_a_data_de_cada_lancamento() {
+        var events = mock(ApplicationEventPublisher.class);
+        var realPublisher = new DomainEventPublisher(events, mock(OutboxEventRepository.class),
+                new ObjectMapper(),
+                new ProjectionProperties(null, null, null, null, null, null, null, null, null, null));
+        service = new TransactionService(accountRepo, txRepo, realPublisher,
+                new CommandProperties(null, null, null, null, null, null), new SimpleMeterRegistry());
+
+        var acc = Account.builder().id("a1").user(user).eventVersion(1L).balance(new BigDecimal("-10.00")).build();
+        when(accountRepo.findByUserIdForUpdate("u1")).thenReturn(Optional.of(acc));
+        when(accountRepo.findAllByUserIdInForUpdate(any())).thenReturn(List.of(acc));
+        when(accountRepo.save(any(Account.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(accountRepo.debitByUserId(eq("u1"), any(), any())).thenReturn(1);
+        var state = mock(AccountRepository.BalanceView.class);
+        when(state.getId()).thenReturn("a1");
+        when(state.getUserId()).thenReturn("u1");
+        when(state.getBalance()).thenReturn(new BigDecimal("-5.00"));
+        when(state.getEventVersion()).thenReturn(9L);
+        when(accountRepo.findBalanceByUserId("u1")).thenReturn(Optional.of(state));
+
+        service.deposit("u1", new BigDecimal("20"));
+        service.payBill("u1", BigDecimal.ONE);
+        service.payBillAtomic("u1", BigDecimal.ONE);
+        service.applyBatch("u1", List.of(TransactionCommand.deposit(BigDecimal.ONE)));
+        service.applyBulk(Map.of("u1", List.of(TransactionCommand.payBill(BigDecimal.ONE))));
+
+        var captor = ArgumentCaptor.forClass(TransactionEvent.class);
+        verify(events, times(5)).publishEvent(captor.capture());
+        assertThat(captor.getAllValues())
+                .flatExtracting(TransactionEvent::transactions)
+                .hasSize(6)
+                .allSatisfy(e -> assertThat(e.occurredAt()).isNotNull());
     }
 }
@@ -0,0 +1,200 @@
+package com.teste.cqrs_bank.read;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.teste.cqrs_bank.config.QueryProperties;
+import com.teste.cqrs_bank.read.view.AccountView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AccountStreamHubTest {
+
+    private final AccountViewCache views = mock(AccountViewCache.class);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final List<RecordingEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    private AccountStreamHub hub(int maxPerUser) {
+        return hub(maxPerUser, 8, null);
+    }
+
+    private AccountStreamHub hub(int maxPerUser, int queueCapacity, CountDownLatch sendGate) {
+        when(views.empty()).thenReturn(new AccountViewCache.Summary(AccountView.builder().saldoTotal("0.00").build(),
+                "{\"SaldoTotal\":\"0.00\",\"Historico\":[]}".getBytes(StandardCharsets.UTF_8)));
+        var props = new QueryProperties(null, null,
+                new QueryProperties.Stream(Duration.ofMinutes(1), Duration.ofSeconds(30), maxPerUser, queueCapacity), null);
+        return new AccountStreamHub(views, new ObjectMapper(), props, meters) {
+            @Override
+            SseEmitter newEmitter() {
+                var emitter = new RecordingEmitter(sendGate);
+                emitters.add(emitter);
+                return emitter;
+            }
+        };
+    }
+
+    private static AccountViewCache.Summary summary(long version, String saldo) {
+        var view = AccountView.builder().id("a1").userId("u1").saldoTotal(saldo).version(version).historico(List.of()).build();
+        return new AccountViewCache.Summary(view,
+                ("{\"SaldoTotal\":\"" + saldo + "\",\"Historico\":[]}").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ProjectionApplied update(long version) {
+        return new ProjectionApplied("a1", "u1", version, version + ".00", List.of(), false);
+    }
+
+    @Test
+    void limita_conexoes_por_usuario() {
+        var hub = hub(2);
+
+        assertThat(hub.subscribe("u1")).isNotNull();
+        assertThat(hub.subscribe("u1")).isNotNull();
+        assertThat(hub.subscribe("u1")).isNull();
+        assertThat(hub.subscribe("u2")).isNotNull();
+        assertThat(hub.connections()).isEqualTo(3);
+        hub.shutdown();
+    }
+
+    @Test
+    void evento_sem_assinantes_e_ignorado() {
+        var hub = hub(1);
+
+        hub.on(new ProjectionApplied("a1", "u9", 3L, "1.00", List.of(), false));
+
+        assertThat(hub.connections()).isZero();
+    }
+
+    @Test
+    void summary_sai_primeiro_e_updates_ja_contidos_nele_sao_descartados() {
+        var ref = new AtomicReference<AccountStreamHub>();
+        when(views.summary("u1")).thenAnswer(inv -> {
+            // update aplicado entre o registro e a leitura do resumo: já está no summary
+            ref.get().on(update(5));
+            return summary(5, "5.00");
+        });
+        var hub = hub(1);
+        ref.set(hub);
+
+        hub.subscribe("u1");
+        hub.on(update(6));
+        hub.on(new ProjectionApplied("a1", "u1", 6L, null, List.of(), true));
+        hub.on(update(7));
+
+        var emitter = emitters.get(0);
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> emitter.events.size() == 4);
+        assertThat(emitter.events).containsExactly("summary", "update:6", "refresh:6", "update:7");
+        hub.shutdown();
+    }
+
+    @Test
+    void fila_cheia_encerra_a_conexao_sem_esperar_o_envio_lento() {
+        when(views.summary("u1")).thenReturn(summary(1, "1.00"));
+        var gate = new CountDownLatch(1);
+        var hub = hub(1, 1, gate);
+
+        hub.subscribe("u1");                 // worker preso no envio do summary
+        hub.on(update(2));                   // ocupa a fila
+        hub.on(update(3));                   // estoura: encerra sem bloquear o chamador
+
+        assertThat(hub.connections()).isZero();
+        assertThat(meters.get("sse.dropped").counter().count()).isEqualTo(1.0);
+
+        gate.countDown();
+        var emitter = emitters.get(0);
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> emitter.completed);
+        assertThat(hub.subscribe("u1")).isNotNull();
+        hub.shutdown();
+    }
+
+    @Test
+    void conexao_sai_do_registro_ao_concluir_expirar_ou_falhar() {
+        var hub = hub(3);
+        hub.subscribe("u1");
+        hub.subscribe("u1");
+        hub.subscribe("u1");
+        assertThat(hub.connections()).isEqualTo(3);
+
+        emitters.get(0).completion.run();
+        emitters.get(1).timeout.run();
+        emitters.get(2).error.accept(new IOException("broken pipe"));
+
+        assertThat(hub.connections()).isZero();
+        hub.on(update(2));   // sem assinantes: nada a enviar
+        assertThat(hub.subscribe("u1")).isNotNull();
+        hub.shutdown();
+    }
+
+    /**
+     * Emitter sem servlet: grava <code>nome[:id]</code> de cada evento enviado e guarda os callbacks.
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private static final Pattern EVENT = Pattern.compile("(?m)^event:(\\w+)");
+        private static final Pattern ID = Pattern.compile("(?m)^id:(\\d+)");
+
+        final List<String> events = new CopyOnWriteArrayList<>();
+        final CountDownLatch gate;
+        volatile boolean completed;
+        Runnable completion;
+        Runnable timeout;
+        Consumer<Throwable> error;
+
+        RecordingEmitter(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public synchronized void send(Set<DataWithMediaType> items) throws IOException {
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            var text = new StringBuilder();
+            items.forEach(item -> text.append(item.getData()));
+            var name = EVENT.matcher(text);
+            if (!name.find()) return; // keep-alive
+            var id = ID.matcher(text);
+            events.add(id.find() ? name.group(1) + ":" + id.group(1) : name.group(1));
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+            super.complete();
+        }
+
+        @Override
+        public synchronized void onCompletion(Runnable callback) {
+            completion = callback;
+        }
+
+        @Override
+        public synchronized void onTimeout(Runnable callback) {
+            timeout = callback;
+        }
+
+        @Override
+        public synchronized void onError(Consumer<Throwable> callback) {
+            error = callback;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.teste.cqrs_bank.read;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.teste.cqrs_bank.config.QueryProperties;
+import com.teste.cqrs_bank.read.view.AccountView;
+import com.teste.cqrs_bank.read.view.AccountViewRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class AccountViewCacheTest {
+
+    private static AccountView.HistoryItem item(String type, String valor) {
+        return AccountView.HistoryItem.builder().type(type).valor(valor).data("01-01-2025 10:00:00").build();
+    }
+
+    private static Map<String, Object> body(String saldo, List<AccountView.HistoryItem> historico) {
+        var body = new LinkedHashMap<String, Object>();
+        body.put("SaldoTotal", saldo);
+        body.put("Historico", historico);
+        return body;
+    }
+
+    @Test
+    void segunda_leitura_vem_do_cache_e_conta_hit() {
+        var repo = mock(AccountViewRepository.class);
+        var view = AccountView.builder().id("a1").userId("u1").saldoTotal("10.00").version(1L).historico(List.of()).build();
+        when(repo.findByUserId("u1")).thenReturn(Optional.of(view));
+        var meters = new SimpleMeterRegistry();
+        var cache = new AccountViewCache(repo, new ObjectMapper(), new QueryProperties(null, null, null, null), meters);
+
+        assertThat(cache.get("u1")).isSameAs(view);
+        assertThat(cache.get("u1")).isSameAs(view);
+
+        verify(repo, times(1)).findByUserId("u1");
+        assertThat(meters.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void incremento_na_versao_em_cache_avanca_entrada() {
+        var repo = mock(AccountViewRepository.class);
+        when(repo.findByUserId("u1")).thenReturn(Optional.of(AccountView.builder().id("a1").userId("u1")
+                .saldoTotal("10.00").version(4L).historico(List.of(item("deposito", "10.00"))).build()));
+        var cache = new AccountViewCache(repo, new ObjectMapper(), new QueryProperties(null, null, null, null), new SimpleMeterRegistry());
+        cache.get("u1");
+
+        var before = cache.summary("u1");
+        cache.advance("u1", 4L, 5L, "7.00", List.of(item("saque", "3.00")));
+
+        var view = cache.get("u1");
+        assertThat(view.getVersion()).isEqualTo(5L);
+        assertThat(view.getSaldoTotal()).isEqualTo("7.00");
+        assertThat(view.getHistorico()).extracting(AccountView.HistoryItem::getType).containsExactly("saque", "deposito");
+        verify(repo, times(1)).findByUserId("u1");
+    }
+
+    @Test
+    void versao_divergente_remove_entrada() {
+        var repo = mock(AccountViewRepository.class);
+        when(repo.findByUserId("u1")).thenReturn(Optional.of(AccountView.builder().id("a1").userId("u1")
+                .saldoTotal("10.00").version(4L).historico(List.of()).build()));
+        var cache = new AccountViewCache(repo, new ObjectMapper(), new QueryProperties(null, null, null, null), new SimpleMeterRegistry());
+        cache.get("u1");
+
+        cache.advance("u1", 6L, 7L, "1.00", List.of(item("saque", "9.00")));
+        cache.get("u1");
+
+        verify(repo, times(2)).findByUserId("u1");
+    }
+
+    @Test
+    void json_pronto_e_identico_ao_map_serializado_e_acompanha_o_avanco() throws Exception {
+        var repo = mock(AccountViewRepository.class);
+        var mapper = new ObjectMapper();
+        var historico = List.of(item("deposito", "10.00"));
+        when(repo.findByUserId("u1")).thenReturn(Optional.of(AccountView.builder().id("a1").userId("u1")
+                .saldoTotal("10.00").version(4L).historico(historico).build()));
+        var cache = new AccountViewCache(repo, mapper, new QueryProperties(null, null, null, null), new SimpleMeterRegistry());
+
+        assertThat(cache.summary("u1").json())
+                .isEqualTo(mapper.writeValueAsBytes(body("10.00", historico)));
+
+        var before = cache.summary("u1");
+        cache.advance("u1", 4L, 5L, "7.00", List.of(item("saque", "3.00")));
+
+        var summary = cache.summary("u1");
+        assertThat(summary.json())
+                .isEqualTo(mapper.writeValueAsBytes(body("7.00", summary.view().getHistorico())));
+        assertThat(mapper.readTree(summary.json()).get("Historico").get(0).get("type").asText()).isEqualTo("saque");
+        assertThat(summary.etag()).isNotEqualTo(before.etag());
+    }
+}
@@ -0,0 +1,114 @@
+package com.teste.cqrs_bank.read;
+
+import com.teste.cqrs_bank.config.ProjectionProperties;
+import com.teste.cqrs_bank.domain.account.AccountRepository;
+import com.teste.cqrs_bank.domain.transaction.TransactionRepository;
+import com.teste.cqrs_bank.domain.transaction.TxType;
+import com.teste.cqrs_bank.read.view.AccountView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class ProjectionConsistencyCheckerTest {
+
+    private static final LocalDateTime AT = LocalDateTime.of(2025, 1, 1, 10, 0);
+
+    AccountRepository accountRepo = mock(AccountRepository.class);
+    TransactionRepository txRepo = mock(TransactionRepository.class);
+    MongoTemplate mongo = mock(MongoTemplate.class);
+    ProjectionPipeline pipeline = mock(ProjectionPipeline.class);
+    SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+    private ProjectionConsistencyChecker checker(int chunkSize) {
+        var props = new ProjectionProperties(null, null, null, null, null, null, null, false, null,
+                new ProjectionProperties.Consistency(true, chunkSize, null, null, null));
+        return new ProjectionConsistencyChecker(accountRepo, txRepo, mongo, pipeline,
+                mock(PlatformTransactionManager.class), props, meters);
+    }
+
+    private static AccountRepository.BalanceView balance(String id, String saldo, long version) {
+        return new AccountRepository.BalanceView() {
+            public String getId() { return id; }
+            public String getUserId() { return "u-" + id; }
+            public BigDecimal getBalance() { return new BigDecimal(saldo); }
+            public Long getEventVersion() { return version; }
+        };
+    }
+
+    private static TransactionRepository.RecentTransaction deposit(String accountId, String amount) {
+        return new TransactionRepository.RecentTransaction() {
+            public String getId() { return "t-" + accountId; }
+            public String getAccountId() { return accountId; }
+            public TxType getType() { return TxType.DEPOSIT; }
+            public BigDecimal getAmount() { return new BigDecimal(amount); }
+            public LocalDateTime getOccurredAt() { return AT; }
+        };
+    }
+
+    private static AccountView view(String id, String saldo, long version, List<AccountView.HistoryItem> historico,
+                                    Instant updatedAt) {
+        return AccountView.builder().id(id).saldoTotal(saldo).version(version).historico(historico).updatedAt(updatedAt).build();
+    }
+
+    private double mismatches(String reason) {
+        return meters.get("projection.consistency.mismatch").tag("reason", reason).counter().count();
+    }
+
+    @Test
+    void merge_por_id_detecta_divergencias_e_pede_rebuild_so_delas() {
+        when(accountRepo.findBalancesAfter(eq(""), any(Limit.class))).thenReturn(List.of(
+                balance("a1", "10.00", 1), balance("a2", "5.00", 1), balance("a3", "1.00", 1),
+                balance("a4", "7.00", 2), balance("a5", "3.00", 1)));
+        when(txRepo.findRecentByAccountIds(anyList(), eq(ProjectionUpdater.HISTORY_LIMIT))).thenReturn(List.of(
+                deposit("a1", "10.00"), deposit("a2", "5.00"), deposit("a4", "7.00"), deposit("a5", "3.00")));
+        var ok = List.of(HistoryItems.of(TxType.DEPOSIT, new BigDecimal("10.00"), AT));
+        when(mongo.find(any(Query.class), eq(AccountView.class))).thenReturn(List.of(
+                view("a0", "0.00", 0, List.of(), Instant.now()),                     // órfão
+                view("a1", "10.00", 1, ok, Instant.now()),                            // consistente
+                view("a2", "9.99", 1, List.of(), Instant.now()),                      // saldo divergente
+                // a3 sem projeção
+                view("a4", "0.00", 1, List.of(), Instant.now().minusSeconds(3600)),   // atrasada há muito
+                view("a5", "3.00", 1, List.of(), Instant.now())));                    // histórico divergente
+
+        var result = checker(10).checkChunk("");
+
+        assertThat(result.accounts()).isEqualTo(5);
+        assertThat(result.next()).isNull();
+        // divergência na mesma versão regrava o documento; ausente/atrasada usa a guarda comum
+        verify(pipeline).requestRebuild("a2", true);
+        verify(pipeline).requestRebuild("a3", false);
+        verify(pipeline).requestRebuild("a4", false);
+        verify(pipeline).requestRebuild("a5", true);
+        verify(pipeline, never()).requestRebuild(eq("a1"), anyBoolean());
+        assertThat(mismatches("balance")).isEqualTo(1.0);
+        assertThat(mismatches("missing")).isEqualTo(1.0);
+        assertThat(mismatches("stale")).isEqualTo(1.0);
+        assertThat(mismatches("history")).isEqualTo(1.0);
+        assertThat(meters.get("projection.consistency.orphans").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void projecao_recem_atualizada_ou_a_frente_nao_e_divergencia() {
+        when(accountRepo.findBalancesAfter(eq("a0"), any(Limit.class))).thenReturn(List.of(
+                balance("a1", "10.00", 2), balance("a2", "5.00", 1)));
+        when(mongo.find(any(Query.class), eq(AccountView.class))).thenReturn(List.of(
+                view("a1", "0.00", 1, List.of(), Instant.now()),
+                view("a2", "8.00", 2, List.of(), Instant.now())));
+
+        var result = checker(2).checkChunk("a0");
+
+        assertThat(result.next()).isEqualTo("a2");
+        verifyNoInteractions(pipeline);
+    }
+}
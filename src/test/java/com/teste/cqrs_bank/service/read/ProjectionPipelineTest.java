@@ -0,0 +1,301 @@
+package com.teste.cqrs_bank.read;
+
+import com.teste.cqrs_bank.config.ProjectionProperties;
+import com.teste.cqrs_bank.domain.transaction.TxType;
+import com.teste.cqrs_bank.write.events.TransactionEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class ProjectionPipelineTest {
+
+    @Test
+    void eventos_da_mesma_conta_sao_aplicados_em_ordem_fora_da_thread_do_chamador() throws Exception {
+        var updater = mock(ProjectionUpdater.class);
+        var applied = new CopyOnWriteArrayList<Long>();
+        var threads = new CopyOnWriteArrayList<Thread>();
+        doAnswer(inv -> {
+            inv.<Collection<List<TransactionEvent>>>getArgument(0)
+                    .forEach(g -> g.forEach(e -> applied.add(e.version())));
+            threads.add(Thread.currentThread());
+            return List.of();
+        }).when(updater).applyAll(anyCollection());
+
+        var pipeline = new ProjectionPipeline(updater, props(4, 16, null, null, null), new SimpleMeterRegistry());
+        try {
+            for (long v = 1; v <= 10; v++) pipeline.submit(event("a1", v));
+
+            Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> applied.size() == 10);
+            assertThat(applied).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+            assertThat(threads).allMatch(Thread::isVirtual);
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void fila_cheia_com_drop_to_rebuild_marca_conta_para_rebuild() throws Exception {
+        var updater = mock(ProjectionUpdater.class);
+        var release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            release.await();
+            return List.of();
+        }).when(updater).applyAll(anyCollection());
+
+        var pipeline = new ProjectionPipeline(updater,
+                props(1, 1, ProjectionProperties.Backpressure.DROP_TO_REBUILD, Duration.ZERO, Duration.ZERO),
+                new SimpleMeterRegistry());
+        try {
+            pipeline.submit(event("a1", 1));   // em processamento (bloqueado)
+            Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> pipeline.queued() == 0);
+            pipeline.submit(event("a1", 2));   // ocupa a fila
+            pipeline.submit(event("a1", 3));   // descartado -> rebuild
+
+            release.countDown();
+            Awaitility.await().atMost(Duration.ofSeconds(5))
+                    .untilAsserted(() -> verify(updater).rebuild("a1", false));
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void fila_cheia_com_caller_runs_passa_pela_particao_e_mantem_a_ordem() throws Exception {
+        var updater = mock(ProjectionUpdater.class);
+        var release = new CountDownLatch(1);
+        var applied = new CopyOnWriteArrayList<Long>();
+        var threads = new CopyOnWriteArrayList<Thread>();
+        doAnswer(inv -> {
+            release.await();
+            inv.<Collection<List<TransactionEvent>>>getArgument(0)
+                    .forEach(g -> g.forEach(e -> applied.add(e.version())));
+            threads.add(Thread.currentThread());
+            return List.of();
+        }).when(updater).applyAll(anyCollection());
+
+        var meters = new SimpleMeterRegistry();
+        var pipeline = new ProjectionPipeline(updater,
+                props(1, 1, ProjectionProperties.Backpressure.CALLER_RUNS, Duration.ZERO, Duration.ZERO), meters);
+        try {
+            pipeline.submit(event("a1", 1));   // em processamento (bloqueado)
+            Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> pipeline.queued() == 0);
+            pipeline.submit(event("a1", 2));   // ocupa a fila
+            var caller = new Thread(() -> pipeline.submit(event("a1", 3)));
+            caller.start();
+
+            Awaitility.await().atMost(Duration.ofSeconds(5))
+                    .until(() -> meters.get("projection.events.blocked").counter().count() == 1.0);
+            assertThat(caller.isAlive()).isTrue();
+
+            release.countDown();
+            caller.join(5_000);
+            assertThat(caller.isAlive()).isFalse();
+            // o chamador só volta depois que a partição aplicou o evento dele
+            assertThat(applied).containsExactly(1L, 2L, 3L);
+            assertThat(threads).allMatch(Thread::isVirtual);
+            assertThat(meters.get("projection.events.rejected").counter().count()).isZero();
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void caller_runs_espera_no_maximo_o_prazo_e_manda_a_conta_para_rebuild() throws Exception {
+        var updater = mock(ProjectionUpdater.class);
+        var release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            release.await();
+            return List.of();
+        }).when(updater).applyAll(anyCollection());
+
+        var meters = new SimpleMeterRegistry();
+        var pipeline = new ProjectionPipeline(updater,
+                props(1, 1, ProjectionProperties.Backpressure.CALLER_RUNS, Duration.ZERO, Duration.ZERO), meters);
+        try {
+            pipeline.submit(event("a1", 1));   // em processamento (preso no Mongo)
+            Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> pipeline.queued() == 0);
+            pipeline.submit(event("a1", 2));   // ocupa a fila
+
+            long start = System.nanoTime();
+            pipeline.submit(event("a1", 3));   // sem vaga no prazo: volta e descarta para rebuild
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(3));
+            assertThat(meters.get("projection.events.rejected").counter().count()).isEqualTo(1.0);
+
+            release.countDown();
+            Awaitility.await().atMost(Duration.ofSeconds(5))
+                    .untilAsserted(() -> verify(updater).rebuild("a1", false));
+        } finally {
+            release.countDown();
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void fila_cheia_com_block_espera_sem_contar_descarte() throws Exception {
+        var updater = mock(ProjectionUpdater.class);
+        var release = new CountDownLatch(1);
+        var applied = new CopyOnWriteArrayList<Long>();
+        doAnswer(inv -> {
+            release.await();
+            inv.<Collection<List<TransactionEvent>>>getArgument(0)
+                    .forEach(g -> g.forEach(e -> applied.add(e.version())));
+            return List.of();
+        }).when(updater).applyAll(anyCollection());
+
+        var meters = new SimpleMeterRegistry();
+        var pipeline = new ProjectionPipeline(updater,
+                props(1, 1, ProjectionProperties.Backpressure.BLOCK, Duration.ZERO, Duration.ZERO), meters);
+        try {
+            pipeline.submit(event("a1", 1));
+            Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> pipeline.queued() == 0);
+            pipeline.submit(event("a1", 2));
+            var caller = new Thread(() -> pipeline.submit(event("a1", 3)));
+            caller.start();
+            Awaitility.await().atMost(Duration.ofSeconds(5))
+                    .until(() -> meters.get("projection.events.blocked").counter().count() == 1.0);
+
+            release.countDown();
+            Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> applied.size() == 3);
+            assertThat(applied).containsExactly(1L, 2L, 3L);
+            assertThat(meters.get("projection.events.rejected").counter().count()).isZero();
+            verify(updater, never()).rebuild(anyString(), anyBoolean());
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void shutdown_aplica_eventos_que_ainda_estavam_na_fila() throws Exception {
+        var updater = mock(ProjectionUpdater.class);
+        var release = new CountDownLatch(1);
+        var applied = new CopyOnWriteArrayList<Long>();
+        doAnswer(inv -> {
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // interrupção do shutdown: a escrita em curso termina mesmo assim
+                }
+            }
+            inv.<Collection<List<TransactionEvent>>>getArgument(0)
+                    .forEach(g -> g.forEach(e -> applied.add(e.version())));
+            return List.of();
+        }).when(updater).applyAll(anyCollection());
+
+        var pipeline = new ProjectionPipeline(updater, props(1, 16, null, Duration.ZERO, Duration.ZERO),
+                new SimpleMeterRegistry());
+        pipeline.submit(event("a1", 1));   // em processamento (preso no Mongo)
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> pipeline.queued() == 0);
+        for (long v = 2; v <= 4; v++) pipeline.submit(event("a1", v));
+
+        var stopping = new Thread(() -> {
+            try {
+                pipeline.shutdown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stopping.start();
+        Thread.sleep(100);
+        release.countDown();
+        stopping.join(10_000);
+
+        assertThat(applied).containsExactly(1L, 2L, 3L, 4L);
+    }
+
+    @Test
+    void rajada_na_mesma_conta_e_coalescida_em_poucas_escritas() throws Exception {
+        var updater = mock(ProjectionUpdater.class);
+        var writes = new CopyOnWriteArrayList<List<TransactionEvent>>();
+        doAnswer(inv -> {
+            writes.addAll(inv.getArgument(0));
+            return List.of();
+        }).when(updater).applyAll(anyCollection());
+
+        var meters = new SimpleMeterRegistry();
+        var pipeline = new ProjectionPipeline(updater, props(1, 1024, null, Duration.ofMillis(200), null), meters);
+        try {
+            for (long v = 1; v <= 50; v++) pipeline.submit(event("a1", v));
+            pipeline.submit(event("b2", 1));
+
+            Awaitility.await().atMost(Duration.ofSeconds(5))
+                    .until(() -> writes.stream().mapToInt(List::size).sum() == 51);
+            assertThat(writes.size()).isLessThan(10);
+            assertThat(writes).allMatch(w -> w.stream().map(TransactionEvent::accountId).distinct().count() == 1);
+            assertThat(writes.stream().flatMap(List::stream)
+                    .filter(e -> e.accountId().equals("a1")).map(TransactionEvent::version).toList())
+                    .hasSize(50).isSorted();
+            assertThat(meters.get("projection.events.coalesced").counter().count()).isEqualTo(51.0 - writes.size());
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void varias_contas_pendentes_sao_descarregadas_num_unico_bulk() throws Exception {
+        var updater = mock(ProjectionUpdater.class);
+        var flushes = new CopyOnWriteArrayList<Integer>();
+        doAnswer(inv -> {
+            flushes.add(inv.<Collection<?>>getArgument(0).size());
+            return List.of();
+        }).when(updater).applyAll(anyCollection());
+
+        var pipeline = new ProjectionPipeline(updater, props(1, 1024, null, Duration.ZERO, Duration.ofMillis(300)),
+                new SimpleMeterRegistry());
+        try {
+            for (int i = 0; i < 20; i++) pipeline.submit(event("acc-" + i, 1));
+
+            Awaitility.await().atMost(Duration.ofSeconds(5))
+                    .until(() -> flushes.stream().mapToInt(Integer::intValue).sum() == 20);
+            assertThat(flushes).hasSizeLessThan(3);
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void operacao_que_falha_no_bulk_e_reenviada_e_depois_vai_para_rebuild() throws Exception {
+        var updater = mock(ProjectionUpdater.class);
+        var calls = new AtomicInteger();
+        doAnswer(inv -> {
+            calls.incrementAndGet();
+            return List.copyOf(inv.<Collection<List<TransactionEvent>>>getArgument(0)); // sempre falha
+        }).when(updater).applyAll(anyCollection());
+
+        var pipeline = new ProjectionPipeline(updater, props(1, 16, null, Duration.ZERO, Duration.ZERO),
+                new SimpleMeterRegistry());
+        try {
+            pipeline.submit(event("a1", 1));
+
+            Awaitility.await().atMost(Duration.ofSeconds(5))
+                    .untilAsserted(() -> verify(updater).rebuild("a1", false));
+            assertThat(calls.get()).isEqualTo(3); // 1 tentativa + 2 retries
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    private static ProjectionProperties props(int partitions, int capacity, ProjectionProperties.Backpressure bp,
+                                              Duration coalesceWindow, Duration flushInterval) {
+        return new ProjectionProperties(partitions, capacity, bp, coalesceWindow, null,
+                new ProjectionProperties.Bulk(null, flushInterval, 2), null, null, null, null);
+    }
+
+    private static TransactionEvent event(String accountId, long version) {
+        return new TransactionEvent(accountId, "u1", version, BigDecimal.TEN, List.of(
+                new TransactionEvent.Entry("t" + version, TxType.DEPOSIT, BigDecimal.ONE, LocalDateTime.now())));
+    }
+}
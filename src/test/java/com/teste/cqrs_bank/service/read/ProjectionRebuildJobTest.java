@@ -0,0 +1,169 @@
+package com.teste.cqrs_bank.read;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.teste.cqrs_bank.config.ProjectionProperties;
+import com.teste.cqrs_bank.domain.account.AccountRepository;
+import com.teste.cqrs_bank.domain.transaction.TransactionRepository;
+import com.teste.cqrs_bank.domain.transaction.TxType;
+import com.teste.cqrs_bank.read.view.AccountView;
+import com.teste.cqrs_bank.read.view.RebuildCheckpoint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.*;
+
+class ProjectionRebuildJobTest {
+
+    AccountRepository accountRepo = mock(AccountRepository.class);
+    TransactionRepository txRepo = mock(TransactionRepository.class);
+    MongoTemplate mongo = mock(MongoTemplate.class);
+    BulkOperations bulk = mock(BulkOperations.class);
+    AccountViewCache views = mock(AccountViewCache.class);
+    ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+    ProjectionPipeline pipeline = mock(ProjectionPipeline.class);
+
+    private ProjectionRebuildJob job() {
+        when(mongo.bulkOps(any(BulkOperations.BulkMode.class), eq(AccountView.class))).thenReturn(bulk);
+        var props = new ProjectionProperties(null, null, null, null, null, null, null, false,
+                new ProjectionProperties.Rebuild(2, 2, null), null);
+        return new ProjectionRebuildJob(accountRepo, txRepo, mongo, views, publisher, pipeline,
+                mock(PlatformTransactionManager.class), props, new SimpleMeterRegistry());
+    }
+
+    private static AccountRepository.BalanceView balance(String id, String userId, String saldo, long version) {
+        return new AccountRepository.BalanceView() {
+            public String getId() { return id; }
+            public String getUserId() { return userId; }
+            public BigDecimal getBalance() { return new BigDecimal(saldo); }
+            public Long getEventVersion() { return version; }
+        };
+    }
+
+    private static TransactionRepository.RecentTransaction tx(String id, String accountId, TxType type, String amount) {
+        return new TransactionRepository.RecentTransaction() {
+            public String getId() { return id; }
+            public String getAccountId() { return accountId; }
+            public TxType getType() { return type; }
+            public BigDecimal getAmount() { return new BigDecimal(amount); }
+            public LocalDateTime getOccurredAt() { return LocalDateTime.of(2025, 1, 1, 10, 0); }
+        };
+    }
+
+    @Test
+    void varre_contas_por_keyset_e_regrava_em_bulk_ate_o_fim() {
+        when(accountRepo.findIdsAfter(eq(""), any(Limit.class))).thenReturn(List.of("a1", "a2"));
+        when(accountRepo.findIdsAfter(eq("a2"), any(Limit.class))).thenReturn(List.of("a3"));
+        when(accountRepo.findIdsAfter(eq("a3"), any(Limit.class))).thenReturn(List.of());
+        when(accountRepo.findBalancesByIdIn(List.of("a1", "a2")))
+                .thenReturn(List.of(balance("a1", "u1", "10.00", 3), balance("a2", "u2", "0.00", 0)));
+        when(accountRepo.findBalancesByIdIn(List.of("a3"))).thenReturn(List.of(balance("a3", "u3", "5.00", 1)));
+        when(txRepo.findRecentByAccountIds(List.of("a1", "a2"), ProjectionUpdater.HISTORY_LIMIT))
+                .thenReturn(List.of(tx("t2", "a1", TxType.BILL_PAYMENT, "5.00"), tx("t1", "a1", TxType.DEPOSIT, "15.00")));
+        var job = job();
+
+        job.start(false);
+        await().until(() -> job.status().getState() != RebuildCheckpoint.State.RUNNING);
+
+        var status = job.status();
+        assertThat(status.getState()).isEqualTo(RebuildCheckpoint.State.COMPLETED);
+        assertThat(status.getProcessed()).isEqualTo(3);
+        assertThat(status.getLastAccountId()).isEqualTo("a3");
+
+        var query = ArgumentCaptor.forClass(Query.class);
+        var update = ArgumentCaptor.forClass(Update.class);
+        verify(bulk, times(3)).upsert(query.capture(), update.capture());
+        verify(bulk, times(2)).execute();
+        int a1 = query.getAllValues().stream().map(q -> q.getQueryObject().get("_id")).toList().indexOf("a1");
+        var set = update.getAllValues().get(a1).getUpdateObject().get("$set", Document.class);
+        assertThat(set.get("saldoTotal")).isEqualTo("10.00");
+        assertThat(set.get("version")).isEqualTo(3L);
+        @SuppressWarnings("unchecked")
+        var historico = (List<AccountView.HistoryItem>) set.get("historico");
+        assertThat(historico).extracting(AccountView.HistoryItem::getType).containsExactly("saque", "deposito");
+        verify(views).evict("u1");
+        verify(views).evict("u3");
+    }
+
+    @Test
+    void retomada_continua_do_checkpoint_anterior() {
+        when(mongo.findById(ProjectionRebuildJob.JOB_ID, RebuildCheckpoint.class)).thenReturn(RebuildCheckpoint.builder()
+                .id(ProjectionRebuildJob.JOB_ID).state(RebuildCheckpoint.State.FAILED).lastAccountId("a2").processed(2).build());
+        when(accountRepo.findIdsAfter(eq("a2"), any(Limit.class))).thenReturn(List.of("a3"));
+        when(accountRepo.findIdsAfter(eq("a3"), any(Limit.class))).thenReturn(List.of());
+        when(accountRepo.findBalancesByIdIn(List.of("a3"))).thenReturn(List.of(balance("a3", "u3", "5.00", 1)));
+        var job = job();
+
+        job.start(true);
+        await().until(() -> job.status().getState() != RebuildCheckpoint.State.RUNNING);
+
+        assertThat(job.status().getState()).isEqualTo(RebuildCheckpoint.State.COMPLETED);
+        assertThat(job.status().getProcessed()).isEqualTo(3);
+        verify(accountRepo, never()).findIdsAfter(eq(""), any(Limit.class));
+    }
+
+    @Test
+    void falha_num_lote_interrompe_sem_avancar_o_checkpoint() {
+        when(accountRepo.findIdsAfter(eq(""), any(Limit.class))).thenReturn(List.of("a1"));
+        when(accountRepo.findIdsAfter(eq("a1"), any(Limit.class))).thenReturn(List.of());
+        when(accountRepo.findBalancesByIdIn(List.of("a1"))).thenThrow(new IllegalStateException("mysql fora"));
+        var job = job();
+
+        job.start(false);
+        await().until(() -> job.status().getState() != RebuildCheckpoint.State.RUNNING);
+
+        assertThat(job.status().getState()).isEqualTo(RebuildCheckpoint.State.FAILED);
+        assertThat(job.status().getLastAccountId()).isEmpty();
+        assertThat(job.status().getProcessed()).isZero();
+    }
+
+    @Test
+    void regrava_na_mesma_versao_e_so_notifica_contas_gravadas() {
+        when(accountRepo.findIdsAfter(eq(""), any(Limit.class))).thenReturn(List.of("a1", "a2"));
+        when(accountRepo.findIdsAfter(eq("a2"), any(Limit.class))).thenReturn(List.of());
+        when(accountRepo.findBalancesByIdIn(List.of("a1", "a2")))
+                .thenReturn(List.of(balance("a1", "u1", "10.00", 3), balance("a2", "u2", "0.00", 4)));
+        // a2 já foi levada adiante pelos eventos: o upsert não casa e tenta inserir
+        when(bulk.execute()).thenThrow(new BulkOperationException("dup", new MongoBulkWriteException(
+                BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()),
+                List.of(new BulkWriteError(11000, "E11000", new BsonDocument(), 1)), null, new ServerAddress(), Set.of())));
+        var meters = new SimpleMeterRegistry();
+        when(mongo.bulkOps(any(BulkOperations.BulkMode.class), eq(AccountView.class))).thenReturn(bulk);
+        var job = new ProjectionRebuildJob(accountRepo, txRepo, mongo, views, publisher, pipeline,
+                mock(PlatformTransactionManager.class), new ProjectionProperties(null, null, null, null, null, null, null, false,
+                new ProjectionProperties.Rebuild(2, 1, null), null), meters);
+
+        job.start(false);
+        await().until(() -> job.status().getState() != RebuildCheckpoint.State.RUNNING);
+
+        var query = ArgumentCaptor.forClass(Query.class);
+        verify(bulk, times(2)).upsert(query.capture(), any(Update.class));
+        assertThat(query.getAllValues().get(0).getQueryObject().toJson()).contains("\"$lte\": 3");
+        verify(views).evict("u1");
+        verify(views, never()).evict("u2");
+        verify(publisher, times(1)).publishEvent(any(ProjectionApplied.class));
+        verify(pipeline, never()).requestRebuild(any());
+        assertThat(meters.counter("projection.rebuild.accounts").count()).isEqualTo(1.0);
+        assertThat(job.status().getProcessed()).isEqualTo(2);
+    }
+}
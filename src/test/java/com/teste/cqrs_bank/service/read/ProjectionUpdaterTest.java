@@ -1,34 +1,61 @@
 package com.teste.cqrs_bank.read;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+import com.teste.cqrs_bank.config.ProjectionProperties;
 import com.teste.cqrs_bank.domain.account.Account;
 import com.teste.cqrs_bank.domain.account.AccountRepository;
 import com.teste.cqrs_bank.domain.transaction.Transaction;
 import com.teste.cqrs_bank.domain.transaction.TransactionRepository;
 import com.teste.cqrs_bank.domain.transaction.TxType;
 import com.teste.cqrs_bank.read.view.AccountView;
-import com.teste.cqrs_bank.read.view.AccountViewRepository;
+import com.teste.cqrs_bank.read.view.HistoryBucket;
 import com.teste.cqrs_bank.write.events.TransactionEvent;
+import org.bson.BsonDocument;
+import org.bson.Document;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 class ProjectionUpdaterTest {
 
+    AccountViewCache views = mock(AccountViewCache.class);
+    ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+    PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+    ProjectionProperties props = new ProjectionProperties(null, null, null, null, null, null, null, false, null, null);
+
     @Test
     void onEvent_upserta_view_e_mapeia_pagamento_para_saque() {
         var accountRepo = mock(AccountRepository.class);
         var txRepo = mock(TransactionRepository.class);
-        var viewRepo = mock(AccountViewRepository.class);
+        var mongo = mock(MongoTemplate.class);
 
-        var acc = Account.builder().id("a1").balance(new BigDecimal("47.00")).build();
+        var acc = Account.builder().id("a1").balance(new BigDecimal("47.00")).eventVersion(2L).build();
         acc.setUser(new com.teste.cqrs_bank.domain.user.User()); // só para evitar NPE
         acc.getUser().setId("u1");
 
@@ -41,18 +68,292 @@ class ProjectionUpdaterTest {
                                 .occurredAt(LocalDateTime.now()).build()
                 ));
 
-        var updater = new ProjectionUpdater(accountRepo, txRepo, viewRepo);
+        var updater = new ProjectionUpdater(accountRepo, txRepo, mongo, views, publisher, txManager, props);
         updater.on(new TransactionEvent("a1"));
 
-        var captor = ArgumentCaptor.forClass(AccountView.class);
-        verify(viewRepo).save(captor.capture());
-        var view = captor.getValue();
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        var captor = ArgumentCaptor.forClass(Update.class);
+        verify(mongo).upsert(queryCaptor.capture(), captor.capture(), eq(AccountView.class));
+        var set = captor.getValue().getUpdateObject().get("$set", Document.class);
+
+        assertThat(queryCaptor.getValue().getQueryObject().get("_id")).isEqualTo("a1");
+        assertThat(set.get("saldoTotal")).isEqualTo("47.00");
+        assertThat(set.get("version")).isEqualTo(2L);
+        @SuppressWarnings("unchecked")
+        var historico = (List<AccountView.HistoryItem>) set.get("historico");
+        assertThat(historico).hasSize(2);
+        assertThat(historico.get(0).getType()).isIn("deposito", "saque");
+        assertThat(historico.stream().anyMatch(h -> "saque".equals(h.getType()))).isTrue();
+        assertThat(historico.stream().anyMatch(h -> "deposito".equals(h.getType()))).isTrue();
+    }
+
+    @Test
+    void rebuild_le_conta_e_transacoes_no_mesmo_snapshot_repeatable_read() {
+        var accountRepo = mock(AccountRepository.class);
+        var txRepo = mock(TransactionRepository.class);
+        var mongo = mock(MongoTemplate.class);
+        var acc = Account.builder().id("a1").balance(new BigDecimal("10.00")).eventVersion(1L).build();
+        acc.setUser(new com.teste.cqrs_bank.domain.user.User());
+        acc.getUser().setId("u1");
+        var tx1 = Transaction.builder().id("t1").type(TxType.DEPOSIT).amount(new BigDecimal("10.00"))
+                .occurredAt(LocalDateTime.now()).build();
+        var tx2 = Transaction.builder().id("t2").type(TxType.DEPOSIT).amount(new BigDecimal("5.00"))
+                .occurredAt(LocalDateTime.now()).build();
+        // MySQL simulado: o comando da versão 2 commita entre as duas leituras; dentro da transação de
+        // leitura (snapshot) ele não aparece, fora dela a segunda leitura já veria t2
+        var snapshot = new java.util.concurrent.atomic.AtomicBoolean();
+        when(txManager.getTransaction(any())).thenAnswer(inv -> {
+            var def = inv.getArgument(0, TransactionDefinition.class);
+            snapshot.set(def.isReadOnly() && def.getIsolationLevel() == TransactionDefinition.ISOLATION_REPEATABLE_READ);
+            return mock(TransactionStatus.class);
+        });
+        doAnswer(inv -> {
+            snapshot.set(false);
+            return null;
+        }).when(txManager).commit(any());
+        when(accountRepo.findById("a1")).thenReturn(Optional.of(acc));
+        when(txRepo.findByAccountIdOrderByOccurredAtDesc(eq("a1"), any(PageRequest.class)))
+                .thenAnswer(inv -> snapshot.get() ? List.of(tx1) : List.of(tx2, tx1));
+        var updater = new ProjectionUpdater(accountRepo, txRepo, mongo, views, publisher, txManager, props);
+
+        updater.rebuild("a1");
+
+        var inOrder = inOrder(txManager, accountRepo, txRepo);
+        inOrder.verify(txManager).getTransaction(any());
+        inOrder.verify(accountRepo).findById("a1");
+        inOrder.verify(txRepo).findByAccountIdOrderByOccurredAtDesc(eq("a1"), any(PageRequest.class));
+        inOrder.verify(txManager).commit(any());
+        var captor = ArgumentCaptor.forClass(Update.class);
+        verify(mongo).upsert(any(Query.class), captor.capture(), eq(AccountView.class));
+        var set = captor.getValue().getUpdateObject().get("$set", Document.class);
+        // versão 1 com só o item da versão 1: o $push da versão 2 não vai duplicar t2
+        assertThat(set.get("version")).isEqualTo(1L);
+        assertThat((List<?>) set.get("historico")).hasSize(1);
+    }
+
+    @Test
+    void rebuild_com_overwrite_regrava_documento_divergente_na_mesma_versao() {
+        var accountRepo = mock(AccountRepository.class);
+        var txRepo = mock(TransactionRepository.class);
+        var mongo = mock(MongoTemplate.class);
+        var acc = Account.builder().id("a1").balance(new BigDecimal("10.00")).eventVersion(3L).build();
+        acc.setUser(new com.teste.cqrs_bank.domain.user.User());
+        acc.getUser().setId("u1");
+        when(accountRepo.findById("a1")).thenReturn(Optional.of(acc));
+        when(txRepo.findByAccountIdOrderByOccurredAtDesc(eq("a1"), any(PageRequest.class))).thenReturn(List.of());
+        // Mongo com { _id: a1, version: 3, saldoTotal: "9.99" }: só o filtro com $lte casa
+        when(mongo.upsert(any(Query.class), any(Update.class), eq(AccountView.class))).thenAnswer(inv -> {
+            var filter = inv.getArgument(0, Query.class).getQueryObject().toJson();
+            if (!filter.contains("\"$lte\": 3")) throw new DuplicateKeyException("E11000");
+            return UpdateResult.acknowledged(1, 1L, null);
+        });
+        var updater = new ProjectionUpdater(accountRepo, txRepo, mongo, views, publisher, txManager, props);
+
+        updater.rebuild("a1");
+        verify(publisher, never()).publishEvent(any(ProjectionApplied.class));
+
+        updater.rebuild("a1", true);
+        var captor = ArgumentCaptor.forClass(Update.class);
+        verify(mongo, times(2)).upsert(any(Query.class), captor.capture(), eq(AccountView.class));
+        var set = captor.getValue().getUpdateObject().get("$set", Document.class);
+        assertThat(set.get("saldoTotal")).isEqualTo("10.00");
+        assertThat(set.get("version")).isEqualTo(3L);
+        verify(publisher).publishEvent(any(ProjectionApplied.class));
+    }
+
+    @Test
+    void onEventIncremental_faz_push_atomico_sem_reler_mysql() {
+        var accountRepo = mock(AccountRepository.class);
+        var txRepo = mock(TransactionRepository.class);
+        var mongo = mock(MongoTemplate.class);
+        when(mongo.updateFirst(any(Query.class), any(Update.class), eq(AccountView.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        var now = LocalDateTime.now();
+        var updater = new ProjectionUpdater(accountRepo, txRepo, mongo, views, publisher, txManager, props);
+        updater.on(new TransactionEvent("a1", "u1", 5L, new BigDecimal("47.00"), List.of(
+                new TransactionEvent.Entry("t1", TxType.BILL_PAYMENT, new BigDecimal("3.00"), now),
+                new TransactionEvent.Entry("t2", TxType.DEPOSIT, new BigDecimal("200.00"), now.plusSeconds(1)))));
+
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        var captor = ArgumentCaptor.forClass(Update.class);
+        verify(mongo).updateFirst(queryCaptor.capture(), captor.capture(), eq(AccountView.class));
+        assertThat(queryCaptor.getValue().getQueryObject().get("version")).isEqualTo(4L);
+
+        var update = captor.getValue();
+        var set = update.getUpdateObject().get("$set", Document.class);
+        assertThat(set.get("saldoTotal")).isEqualTo("47.00");
+        assertThat(set.get("version")).isEqualTo(5L);
+        var push = (Update.Modifiers) update.getUpdateObject().get("$push", Document.class).get("historico");
+        var modifiers = push.getModifiers().stream()
+                .collect(Collectors.toMap(Update.Modifier::getKey, Update.Modifier::getValue));
+        assertThat(modifiers).containsEntry("$slice", 100).containsEntry("$position", 0);
+        assertThat((Object[]) modifiers.get("$each"))
+                .extracting(i -> ((AccountView.HistoryItem) i).getType())
+                .containsExactly("deposito", "saque");
+
+        verifyNoInteractions(accountRepo, txRepo);
+        verify(views).advance(eq("u1"), eq(4L), eq(5L), eq("47.00"), anyList());
+        var applied = ArgumentCaptor.forClass(ProjectionApplied.class);
+        verify(publisher).publishEvent(applied.capture());
+        assertThat(applied.getValue().version()).isEqualTo(5L);
+        assertThat(applied.getValue().novos()).extracting(AccountView.HistoryItem::getType).containsExactly("deposito", "saque");
+    }
+
+    @Test
+    void onEventIncremental_versao_ja_aplicada_e_descartada() {
+        var accountRepo = mock(AccountRepository.class);
+        var txRepo = mock(TransactionRepository.class);
+        var mongo = mock(MongoTemplate.class);
+        when(mongo.updateFirst(any(Query.class), any(Update.class), eq(AccountView.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        when(mongo.findOne(any(Query.class), eq(AccountView.class)))
+                .thenReturn(AccountView.builder().id("a1").version(7L).build());
+
+        var updater = new ProjectionUpdater(accountRepo, txRepo, mongo, views, publisher, txManager, props);
+        updater.on(new TransactionEvent("a1", "u1", 6L, new BigDecimal("10.00"), List.of(
+                new TransactionEvent.Entry("t1", TxType.DEPOSIT, new BigDecimal("10.00"), LocalDateTime.now()))));
+
+        verifyNoInteractions(accountRepo, txRepo);
+        verify(mongo, never()).upsert(any(Query.class), any(Update.class), eq(AccountView.class));
+    }
+
+    @Test
+    void onEventIncremental_com_lacuna_de_versao_reconstroi() {
+        var accountRepo = mock(AccountRepository.class);
+        var txRepo = mock(TransactionRepository.class);
+        var mongo = mock(MongoTemplate.class);
+        when(mongo.updateFirst(any(Query.class), any(Update.class), eq(AccountView.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        when(mongo.findOne(any(Query.class), eq(AccountView.class)))
+                .thenReturn(AccountView.builder().id("a1").version(3L).build());
+        when(accountRepo.findById("a1")).thenReturn(Optional.empty());
+
+        var updater = new ProjectionUpdater(accountRepo, txRepo, mongo, views, publisher, txManager, props);
+        updater.on(new TransactionEvent("a1", "u1", 6L, new BigDecimal("10.00"), List.of(
+                new TransactionEvent.Entry("t1", TxType.DEPOSIT, new BigDecimal("10.00"), LocalDateTime.now()))));
+
+        verify(accountRepo).findById("a1");
+        verify(views).evict("u1");
+    }
+
+    @Test
+    void apply_coalesce_varias_versoes_em_um_unico_update() {
+        var accountRepo = mock(AccountRepository.class);
+        var txRepo = mock(TransactionRepository.class);
+        var mongo = mock(MongoTemplate.class);
+        when(mongo.updateFirst(any(Query.class), any(Update.class), eq(AccountView.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        var now = LocalDateTime.now();
+        var updater = new ProjectionUpdater(accountRepo, txRepo, mongo, views, publisher, txManager, props);
+        updater.apply(List.of(
+                new TransactionEvent("a1", "u1", 3L, new BigDecimal("10.00"), List.of(
+                        new TransactionEvent.Entry("t1", TxType.DEPOSIT, new BigDecimal("10.00"), now))),
+                new TransactionEvent("a1", "u1", 4L, new BigDecimal("5.00"), List.of(
+                        new TransactionEvent.Entry("t2", TxType.BILL_PAYMENT, new BigDecimal("5.00"), now.plusSeconds(1))))));
+
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        var captor = ArgumentCaptor.forClass(Update.class);
+        verify(mongo, times(1)).updateFirst(queryCaptor.capture(), captor.capture(), eq(AccountView.class));
+        assertThat(queryCaptor.getValue().getQueryObject().get("version")).isEqualTo(2L);
+        var set = captor.getValue().getUpdateObject().get("$set", Document.class);
+        assertThat(set.get("saldoTotal")).isEqualTo("5.00");
+        assertThat(set.get("version")).isEqualTo(4L);
+        verifyNoInteractions(accountRepo, txRepo);
+    }
+
+    @Test
+    void applyAll_envia_um_bulk_e_reconcilia_so_o_que_nao_casou() {
+        var accountRepo = mock(AccountRepository.class);
+        var txRepo = mock(TransactionRepository.class);
+        var mongo = mock(MongoTemplate.class);
+        var bulk = mock(BulkOperations.class);
+        when(mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, AccountView.class)).thenReturn(bulk);
+        when(bulk.execute()).thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()));
+        when(mongo.find(any(Query.class), eq(AccountView.class))).thenReturn(List.of(
+                AccountView.builder().id("a1").version(1L).build(),
+                AccountView.builder().id("b2").version(0L).build()));
+        when(mongo.updateFirst(any(Query.class), any(Update.class), eq(AccountView.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        var now = LocalDateTime.now();
+        var updater = new ProjectionUpdater(accountRepo, txRepo, mongo, views, publisher, txManager, props);
+        var failed = updater.applyAll(List.of(
+                List.of(new TransactionEvent("a1", "u1", 1L, BigDecimal.ONE, List.of(
+                        new TransactionEvent.Entry("t1", TxType.DEPOSIT, BigDecimal.ONE, now)))),
+                List.of(new TransactionEvent("b2", "u2", 2L, BigDecimal.TEN, List.of(
+                        new TransactionEvent.Entry("t2", TxType.DEPOSIT, BigDecimal.TEN, now))))));
+
+        assertThat(failed).isEmpty();
+        verify(bulk, times(2)).updateOne(any(Query.class), any(Update.class));
+        verify(bulk).execute();
+        // a1 já está na versão 1 (casou no bulk); só b2 é reaplicado individualmente
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongo, times(1)).updateFirst(queryCaptor.capture(), any(Update.class), eq(AccountView.class));
+        assertThat(queryCaptor.getValue().getQueryObject().get("_id")).isEqualTo("b2");
+    }
+
+    @Test
+    void applyAll_grava_buckets_do_historico_antes_do_resumo() {
+        var mongo = mock(MongoTemplate.class);
+        var bucketBulk = mock(BulkOperations.class);
+        var viewBulk = mock(BulkOperations.class);
+        when(mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, HistoryBucket.class)).thenReturn(bucketBulk);
+        when(mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, AccountView.class)).thenReturn(viewBulk);
+        when(viewBulk.execute()).thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()));
+
+        var day = LocalDateTime.of(2025, 3, 1, 23, 59, 59);
+        var updater = new ProjectionUpdater(mock(AccountRepository.class), mock(TransactionRepository.class), mongo, views, publisher, txManager,
+                new ProjectionProperties(null, null, null, null, null, null, null, true, null, null));
+        var failed = updater.applyAll(List.<List<TransactionEvent>>of(List.of(
+                new TransactionEvent("a1", "u1", 1L, BigDecimal.ONE, List.of(
+                        new TransactionEvent.Entry("t1", TxType.DEPOSIT, BigDecimal.ONE, day),
+                        new TransactionEvent.Entry("t2", TxType.DEPOSIT, BigDecimal.ONE, day.plusSeconds(1)))))));
+
+        assertThat(failed).isEmpty();
+        // dois dias → dois upserts no bulk de buckets, executado antes do bulk do resumo
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        var updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(bucketBulk, times(2)).upsert(queryCaptor.capture(), updateCaptor.capture());
+        assertThat(queryCaptor.getAllValues()).extracting(q -> q.getQueryObject().get("day"))
+                .containsExactly("2025-03-01", "2025-03-02");
+        assertThat(queryCaptor.getValue().getQueryObject().get("count")).isEqualTo(new Document("$lte", HistoryBucket.CAPACITY - 1));
+        assertThat(updateCaptor.getValue().getUpdateObject()).containsKeys("$push", "$inc", "$min", "$max");
+        var order = inOrder(bucketBulk, viewBulk);
+        order.verify(bucketBulk).execute();
+        order.verify(viewBulk).execute();
+    }
+
+    @Test
+    void applyAll_reentrega_grava_so_os_itens_que_faltam_no_historico() {
+        var mongo = mock(MongoTemplate.class);
+        var bucketBulk = mock(BulkOperations.class);
+        var retryBulk = mock(BulkOperations.class);
+        var viewBulk = mock(BulkOperations.class);
+        when(mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, HistoryBucket.class)).thenReturn(bucketBulk, retryBulk);
+        when(mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, AccountView.class)).thenReturn(viewBulk);
+        when(viewBulk.execute()).thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()));
+        // t1 já está num bucket: o índice único em itens.txId recusa a operação
+        when(bucketBulk.execute()).thenThrow(new BulkOperationException("dup", new MongoBulkWriteException(
+                BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of()),
+                List.of(new BulkWriteError(11000, "E11000", new BsonDocument(), 0)), null, new ServerAddress(), Set.of())));
+        when(mongo.aggregate(any(Aggregation.class), eq(HistoryBucket.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(new Document("txId", "t1")), new Document()));
+
+        var day = LocalDateTime.of(2025, 3, 1, 10, 0);
+        var updater = new ProjectionUpdater(mock(AccountRepository.class), mock(TransactionRepository.class), mongo, views, publisher, txManager,
+                new ProjectionProperties(null, null, null, null, null, null, null, true, null, null));
+        var failed = updater.applyAll(List.<List<TransactionEvent>>of(List.of(
+                new TransactionEvent("a1", "u1", 1L, BigDecimal.ONE, List.of(
+                        new TransactionEvent.Entry("t1", TxType.DEPOSIT, BigDecimal.ONE, day),
+                        new TransactionEvent.Entry("t2", TxType.DEPOSIT, BigDecimal.ONE, day.plusSeconds(1)))))));
 
-        assertThat(view.getId()).isEqualTo("a1");
-        assertThat(view.getSaldoTotal()).isEqualTo("47.00");
-        assertThat(view.getHistorico()).hasSize(2);
-        assertThat(view.getHistorico().get(0).getType()).isIn("deposito", "saque");
-        assertThat(view.getHistorico().stream().anyMatch(h -> "saque".equals(h.getType()))).isTrue();
-        assertThat(view.getHistorico().stream().anyMatch(h -> "deposito".equals(h.getType()))).isTrue();
+        assertThat(failed).isEmpty();
+        var queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(retryBulk).upsert(queryCaptor.capture(), any(Update.class));
+        assertThat(queryCaptor.getValue().getQueryObject().get("itens.txId")).isEqualTo(new Document("$nin", List.of("t2")));
+        verify(retryBulk).execute();
+        verify(viewBulk).execute();
     }
 }
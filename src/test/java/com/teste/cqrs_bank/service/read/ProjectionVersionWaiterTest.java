@@ -0,0 +1,86 @@
+package com.teste.cqrs_bank.read;
+
+import com.teste.cqrs_bank.config.QueryProperties;
+import com.teste.cqrs_bank.domain.account.Account;
+import com.teste.cqrs_bank.domain.account.AccountRepository;
+import com.teste.cqrs_bank.domain.transaction.Transaction;
+import com.teste.cqrs_bank.domain.transaction.TransactionRepository;
+import com.teste.cqrs_bank.domain.transaction.TxType;
+import com.teste.cqrs_bank.read.view.AccountView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class ProjectionVersionWaiterTest {
+
+    AccountViewCache views = mock(AccountViewCache.class);
+    AccountRepository accountRepo = mock(AccountRepository.class);
+    TransactionRepository txRepo = mock(TransactionRepository.class);
+    SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+    private ProjectionVersionWaiter waiter(Duration maxWait) {
+        var props = new QueryProperties(null, null, null, new QueryProperties.Consistency(maxWait, null));
+        return new ProjectionVersionWaiter(views, accountRepo, txRepo, mock(PlatformTransactionManager.class), props, meters);
+    }
+
+    private static AccountViewCache.Summary summary(long version) {
+        var view = AccountView.builder().id("a1").userId("u1").saldoTotal("10.00").version(version).historico(List.of()).build();
+        return new AccountViewCache.Summary(view, new byte[0]);
+    }
+
+    @Test
+    void versao_ja_alcancada_responde_sem_esperar() throws Exception {
+        when(views.summary("u1")).thenReturn(summary(5));
+
+        var result = waiter(Duration.ofSeconds(5)).summaryAtLeast("u1", 4).get(1, TimeUnit.SECONDS);
+
+        assertThat(result.view().getVersion()).isEqualTo(5L);
+        assertThat(meters.get("query.consistency").tag("result", "immediate").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void evento_da_projecao_libera_a_espera() throws Exception {
+        when(views.summary("u1")).thenReturn(summary(4), summary(4), summary(6));
+        var waiter = waiter(Duration.ofSeconds(5));
+
+        var future = waiter.summaryAtLeast("u1", 6);
+        assertThat(future).isNotDone();
+        waiter.on(new ProjectionApplied("a1", "u1", 5, "9.00", List.of(), false));
+        assertThat(waiter.pending()).isEqualTo(1);
+        waiter.on(new ProjectionApplied("a1", "u1", 6, "10.00", List.of(), false));
+
+        assertThat(future.get(1, TimeUnit.SECONDS).view().getVersion()).isEqualTo(6L);
+        assertThat(waiter.pending()).isZero();
+        verifyNoInteractions(accountRepo);
+    }
+
+    @Test
+    void timeout_monta_o_resumo_direto_do_mysql() throws Exception {
+        when(views.summary("u1")).thenReturn(summary(1));
+        when(views.render(any())).thenAnswer(inv -> new AccountViewCache.Summary(inv.getArgument(0), new byte[0]));
+        var user = new com.teste.cqrs_bank.domain.user.User();
+        user.setId("u1");
+        var acc = Account.builder().id("a1").user(user).balance(new BigDecimal("30.00")).eventVersion(3L).build();
+        when(accountRepo.findByUserId("u1")).thenReturn(Optional.of(acc));
+        when(txRepo.findByAccountIdOrderByOccurredAtDesc(eq("a1"), any(PageRequest.class))).thenReturn(List.of(
+                Transaction.builder().type(TxType.DEPOSIT).amount(new BigDecimal("30.00")).occurredAt(LocalDateTime.now()).build()));
+
+        var result = waiter(Duration.ofMillis(20)).summaryAtLeast("u1", 3).get(1, TimeUnit.SECONDS);
+
+        assertThat(result.view().getVersion()).isEqualTo(3L);
+        assertThat(result.view().getSaldoTotal()).isEqualTo("30.00");
+        assertThat(result.view().getHistorico()).extracting(AccountView.HistoryItem::getType).containsExactly("deposito");
+        assertThat(meters.get("query.consistency").tag("result", "fallback").counter().count()).isEqualTo(1.0);
+    }
+}
@@ -0,0 +1,108 @@
+package com.teste.cqrs_bank.read;
+
+import com.teste.cqrs_bank.config.QueryProperties;
+import com.teste.cqrs_bank.domain.transaction.Transaction;
+import com.teste.cqrs_bank.domain.transaction.TransactionRepository;
+import com.teste.cqrs_bank.domain.transaction.TxType;
+import com.teste.cqrs_bank.read.view.AccountView;
+import com.teste.cqrs_bank.read.view.HistoryBucket;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class TransactionHistoryQueryTest {
+
+    private static Transaction tx(String id, LocalDateTime at) {
+        return Transaction.builder().id(id).type(TxType.DEPOSIT).amount(new BigDecimal("1.00")).occurredAt(at).build();
+    }
+
+    @Test
+    void pagina_por_keyset_e_cursor_aponta_para_o_ultimo_item() {
+        var repo = mock(TransactionRepository.class);
+        var t0 = LocalDateTime.of(2025, 1, 2, 10, 0, 0, 123_000);
+        when(repo.findHistory("u1", Limit.of(3)))
+                .thenReturn(List.of(tx("t3", t0.plusSeconds(2)), tx("t2", t0.plusSeconds(1)), tx("t1", t0)));
+        var query = new TransactionHistoryQuery(repo, mock(MongoTemplate.class), mock(AccountViewCache.class), new QueryProperties(null, null, null, null));
+
+        var first = query.page("u1", null, 2);
+
+        assertThat(first.historico()).hasSize(2);
+        assertThat(first.historico().get(0).getType()).isEqualTo("deposito");
+        assertThat(first.next()).isNotNull();
+
+        when(repo.findHistoryBefore("u1", t0.plusSeconds(1), "t2", Limit.of(3))).thenReturn(List.of(tx("t1", t0)));
+        var second = query.page("u1", first.next(), 2);
+
+        assertThat(second.historico()).hasSize(1);
+        assertThat(second.next()).isNull();
+        verify(repo).findHistoryBefore("u1", t0.plusSeconds(1), "t2", Limit.of(3));
+    }
+
+    @Test
+    void cursor_invalido_e_rejeitado() {
+        var query = new TransactionHistoryQuery(mock(TransactionRepository.class), mock(MongoTemplate.class), mock(AccountViewCache.class), new QueryProperties(null, null, null, null));
+
+        assertThatThrownBy(() -> query.page("u1", "%%%", 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> query.page("u1", "bm9wZQ", 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void fonte_buckets_ordena_os_itens_dos_buckets_lidos_e_segue_pelo_cursor() {
+        var mongo = mock(MongoTemplate.class);
+        var views = mock(AccountViewCache.class);
+        when(views.get("u1")).thenReturn(AccountView.builder().id("a1").build());
+        var t0 = LocalDateTime.of(2025, 1, 2, 10, 0);
+        Function<Integer, HistoryBucket.Item> item = n -> HistoryBucket.Item.builder()
+                .txId("t" + n).occurredAt(t0.plusSeconds(n)).type("deposito").valor(n + ".00").data("x").build();
+        // buckets cheios do mesmo dia com intervalos sobrepostos (reentregas fora de ordem)
+        var newer = HistoryBucket.builder().id("b2").accountId("a1").day("2025-01-02").count(3)
+                .from(t0.plusSeconds(2)).to(t0.plusSeconds(5))
+                .itens(List.of(item.apply(5), item.apply(2), item.apply(4))).build();
+        var older = HistoryBucket.builder().id("b1").accountId("a1").day("2025-01-02").count(2)
+                .from(t0.plusSeconds(1)).to(t0.plusSeconds(3))
+                .itens(List.of(item.apply(1), item.apply(3))).build();
+        when(mongo.find(any(Query.class), eq(HistoryBucket.class))).thenReturn(List.of(newer, older));
+        var query = new TransactionHistoryQuery(mock(TransactionRepository.class), mongo, views,
+                new QueryProperties(null, QueryProperties.HistorySource.BUCKETS, null, null));
+
+        var first = query.page("u1", null, 3);
+        assertThat(first.historico()).extracting(AccountView.HistoryItem::getValor).containsExactly("5.00", "4.00", "3.00");
+
+        var second = query.page("u1", first.next(), 3);
+        assertThat(second.historico()).extracting(AccountView.HistoryItem::getValor).containsExactly("2.00", "1.00");
+        assertThat(second.next()).isNull();
+    }
+
+    @Test
+    void fonte_buckets_para_de_ler_quando_a_pagina_ja_esta_garantida() {
+        var mongo = mock(MongoTemplate.class);
+        var views = mock(AccountViewCache.class);
+        when(views.get("u1")).thenReturn(AccountView.builder().id("a1").build());
+        var t0 = LocalDateTime.of(2025, 1, 2, 10, 0);
+        Function<Integer, HistoryBucket.Item> item = n -> HistoryBucket.Item.builder()
+                .txId("t" + n).occurredAt(t0.plusSeconds(n)).type("deposito").valor(n + ".00").data("x").build();
+        var newer = HistoryBucket.builder().id("b2").to(t0.plusSeconds(9))
+                .itens(List.of(item.apply(9), item.apply(8), item.apply(7))).build();
+        var older = mock(HistoryBucket.class);
+        when(older.getTo()).thenReturn(t0.plusSeconds(6));
+        when(mongo.find(any(Query.class), eq(HistoryBucket.class))).thenReturn(List.of(newer, older));
+        var query = new TransactionHistoryQuery(mock(TransactionRepository.class), mongo, views,
+                new QueryProperties(null, QueryProperties.HistorySource.BUCKETS, null, null));
+
+        var page = query.page("u1", null, 2);
+
+        assertThat(page.historico()).extracting(AccountView.HistoryItem::getValor).containsExactly("9.00", "8.00");
+        assertThat(page.next()).isNotNull();
+        verify(older, never()).getItens();
+    }
+}
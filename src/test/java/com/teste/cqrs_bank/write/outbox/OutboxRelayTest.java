@@ -0,0 +1,85 @@
+package com.teste.cqrs_bank.write.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.teste.cqrs_bank.config.ProjectionProperties;
+import com.teste.cqrs_bank.domain.transaction.TxType;
+import com.teste.cqrs_bank.read.ProjectionPipeline;
+import com.teste.cqrs_bank.read.ProjectionUpdater;
+import com.teste.cqrs_bank.write.events.TransactionEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.*;
+
+class OutboxRelayTest {
+
+    ObjectMapper json = new ObjectMapper().registerModule(new JavaTimeModule());
+    OutboxEventRepository outbox = mock(OutboxEventRepository.class);
+    ProjectionUpdater updater = mock(ProjectionUpdater.class);
+    ProjectionPipeline pipeline = mock(ProjectionPipeline.class);
+    SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    OutboxRelay relay;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        if (relay != null) relay.shutdown();
+    }
+
+    private OutboxEvent row(long id, String accountId, long version, int attempts) throws Exception {
+        var evt = new TransactionEvent(accountId, "u-" + accountId, version, BigDecimal.ONE, List.of(
+                new TransactionEvent.Entry("t" + id, TxType.DEPOSIT, BigDecimal.ONE, LocalDateTime.of(2025, 1, 1, 10, 0))));
+        return OutboxEvent.builder().id(id).accountId(accountId).version(version)
+                .payload(json.writeValueAsString(evt)).attempts(attempts).build();
+    }
+
+    private void start() {
+        var props = new ProjectionProperties(null, null, null, null, null, null,
+                new ProjectionProperties.Outbox(true, 10, Duration.ofMillis(10), 3), null, null, null);
+        relay = new OutboxRelay(outbox, updater, pipeline, json, mock(PlatformTransactionManager.class), props, meters);
+    }
+
+    @Test
+    void conta_que_falha_fica_no_outbox_sem_segurar_as_demais_e_e_estacionada_no_limite() throws Exception {
+        var poison = row(1, "a1", 1, 2);
+        var ok = row(2, "b2", 1, 0);
+        when(outbox.lockNextBatch(10, 3)).thenReturn(List.of(poison, ok)).thenReturn(List.of());
+        when(updater.applyAll(anyCollection())).thenAnswer(inv -> {
+            List<List<TransactionEvent>> groups = List.copyOf(inv.getArgument(0));
+            return groups.stream().filter(g -> g.get(0).accountId().equals("a1")).toList();
+        });
+
+        start();
+
+        await().until(() -> meters.counter("projection.outbox.relayed").count() == 1.0);
+        verify(pipeline).requestRebuild("a1");
+        verify(outbox).deleteAllByIdInBatch(List.of(2L));
+        verify(outbox).incrementAttempts(List.of(1L));
+        verify(pipeline, never()).requestRebuild("b2");
+        assertThat(meters.counter("projection.outbox.parked").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void falha_do_lote_inteiro_conta_a_tentativa_de_todas_as_linhas() throws Exception {
+        var first = row(1, "a1", 1, 0);
+        var second = row(2, "b2", 1, 0);
+        when(outbox.lockNextBatch(10, 3)).thenReturn(List.of(first, second)).thenReturn(List.of());
+        when(updater.applyAll(anyCollection())).thenThrow(new IllegalStateException("mongo fora"));
+
+        start();
+
+        await().until(() -> meters.counter("projection.outbox.failures").count() == 1.0);
+        verify(outbox).incrementAttempts(List.of(1L, 2L));
+        verify(outbox, never()).deleteAllByIdInBatch(anyIterable());
+        verifyNoInteractions(pipeline);
+    }
+}